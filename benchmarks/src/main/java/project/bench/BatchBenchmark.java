@@ -0,0 +1,73 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Применение пачки из batchSize операций (3/4 вставок, 1/4 удалений, ключи из того же распределения, что и
+ * содержимое дерева) к AVLTree из size ключей: одним проходом через applyBatch против поочередных add/remove.
+ *
+ * Дерево строится заново перед каждым вызовом, как в BulkBenchmark.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+    KeyDistribution distribution;
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    @Param({"64", "1024", "65536"})
+    int batchSize;
+
+    int[] keys;
+    int[] batchKeys;
+    boolean[] inserts;
+    AVLTree.Batch<Integer> batch;
+    AVLTree<Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = distribution.keys(size, random);
+        int[] candidates = distribution.keys(2 * size, random);
+        batchKeys = new int[batchSize];
+        inserts = new boolean[batchSize];
+        batch = new AVLTree.Batch<>();
+        for (int i = 0; i < batchSize; i++) {
+            batchKeys[i] = candidates[random.nextInt(candidates.length)];
+            inserts[i] = random.nextInt(4) > 0;
+            if (inserts[i])
+                batch.add(batchKeys[i]);
+            else
+                batch.remove(batchKeys[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        tree = (AVLTree<Integer>) SetImplementation.AVL_TREE.create(keys);
+    }
+
+    @Benchmark
+    public boolean[] applyBatch() {
+        return tree.applyBatch(batch);
+    }
+
+    @Benchmark
+    public boolean[] oneByOne() {
+        boolean[] results = new boolean[batchSize];
+        for (int i = 0; i < batchSize; i++)
+            results[i] = inserts[i] ? tree.add(batchKeys[i]) : tree.remove(batchKeys[i]);
+        return results;
+    }
+}
@@ -0,0 +1,26 @@
+package project.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа benchmarks.jar. Принимает те же аргументы, что и org.openjdk.jmh.Main, но всегда подключает
+ * GCProfiler, чтобы вместе с пропускной способностью и перцентилями задержки выводилась скорость выделения памяти
+ * (gc.alloc.rate и gc.alloc.rate.norm).
+ *
+ * Пример: java -jar benchmarks.jar SetBenchmark.contains -p size=1000000 -p implementation=AVL_TREE,TREE_SET
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import project.AVLTree;
+import project.BlockedAVLTree;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BlockedAVLTree с разным размером листа, с префиксами ключей и без, против AVLTree с узлом на каждый ключ (blockSize
+ * = 1). Память на ключ для тех же деревьев печатает MemoryFootprint.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class BlockedBenchmark {
+    static final int PROBES = 1 << 16;
+
+    @Param({"1", "16", "64", "256"})
+    int blockSize;
+
+    @Param({"false", "true"})
+    boolean prefix;
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    Set<Integer> set;
+    Integer[] probes;
+    Integer[] absent;
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] keys = KeyDistribution.RANDOM.keys(size, random);
+        if (blockSize == 1)
+            set = new AVLTree<Integer>(null, prefix ? Integer::longValue : null);
+        else
+            set = new BlockedAVLTree<Integer>(blockSize, prefix ? Integer::longValue : null);
+        for (int key: keys)
+            set.add(key);
+        int[] raw = KeyDistribution.RANDOM.probes(keys, PROBES, random);
+        probes = new Integer[PROBES];
+        absent = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = raw[i];
+            absent[i] = raw[i] + 1;
+        }
+    }
+
+    private int next() {
+        return index++ & (PROBES - 1);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(probes[next()]);
+    }
+
+    @Benchmark
+    public boolean addAbsent() {
+        Integer key = absent[next()];
+        return set.add(key) & set.remove(key);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Integer key: set)
+            blackhole.consume(key);
+    }
+}
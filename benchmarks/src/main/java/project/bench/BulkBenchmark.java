@@ -0,0 +1,69 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * addAll/removeAll/retainAll между множеством из size ключей и коллекцией того же размера, половина элементов
+ * которой уже есть в множестве.
+ *
+ * Операции изменяют множество, поэтому перед каждым вызовом оно строится заново (Level.Invocation допустим,
+ * так как сами операции длятся дольше миллисекунды на всех размерах, кроме самого маленького).
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class BulkBenchmark {
+
+    @Param({"AVL_TREE", "TREE_SET", "HASH_SET", "SKIP_LIST"})
+    SetImplementation implementation;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "ASCENDING"})
+    KeyDistribution distribution;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    int[] keys;
+    Set<Integer> other;
+    Set<Integer> set;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = distribution.keys(size, new Random(42));
+        List<Integer> half = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            half.add(i % 2 == 0 ? keys[i] : keys[i] + 1);
+        }
+        other = implementation.create();
+        other.addAll(half);
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        set = implementation.create(keys);
+    }
+
+    @Benchmark
+    public boolean addAll() {
+        return set.addAll(other);
+    }
+
+    @Benchmark
+    public boolean removeAll() {
+        return set.removeAll(other);
+    }
+
+    @Benchmark
+    public boolean retainAll() {
+        return set.retainAll(other);
+    }
+}
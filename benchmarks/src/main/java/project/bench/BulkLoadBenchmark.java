@@ -0,0 +1,72 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка size ключей: AVLTree.fromSorted и addAll в пустое дерево против поэлементного add и TreeSet.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class BulkLoadBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    List<Integer> sorted;
+    List<Integer> unsorted;
+    TreeSet<Integer> sortedSet;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] keys = KeyDistribution.RANDOM.keys(size, random);
+        unsorted = new ArrayList<>(size);
+        for (int key: keys) {
+            unsorted.add(key);
+        }
+        sorted = new ArrayList<>(unsorted);
+        Collections.sort(sorted);
+        sortedSet = new TreeSet<>(sorted);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> fromSorted() {
+        return AVLTree.fromSorted(sorted);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> addAllSortedSet() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        tree.addAll(sortedSet);
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> addAllUnsorted() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        tree.addAll(unsorted);
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> addEachSorted() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (Integer key: sorted) {
+            tree.add(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public TreeSet<Integer> treeSetFromSortedSet() {
+        return new TreeSet<>(sortedSet);
+    }
+}
@@ -0,0 +1,106 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование общего множества по числу потоков: каждый поток выполняет смешанную нагрузку, как в
+ * MixedBenchmark, над одним и тем же множеством. ConcurrentAVLTree сравнивается с ConcurrentSkipListSet и с
+ * AVLTree под общей блокировкой.
+ *
+ * JMH запускает один набор потоков за прогон, поэтому main перебирает 1, 2, 4, ..., 64 потоков сам:
+ * java -cp benchmarks.jar project.bench.ConcurrentBenchmark [максимальное число потоков]
+ * Отдельное значение задается обычным образом: java -jar benchmarks.jar ConcurrentBenchmark -t 16
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Benchmark)
+public class ConcurrentBenchmark {
+    static final int OPERATIONS = 1 << 16;
+
+    @Param({"CONCURRENT_AVL_TREE", "SKIP_LIST", "SYNCHRONIZED_AVL_TREE"})
+    SetImplementation implementation;
+
+    @Param({"RANDOM", "ZIPFIAN"})
+    KeyDistribution distribution;
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    @Param({"50", "90", "100"})
+    int readPercent;
+
+    int[] keys;
+    Set<Integer> set;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = distribution.keys(size, new Random(42));
+        set = implementation.create(keys);
+    }
+
+    /**
+     * Своя последовательность операций у каждого потока, чтобы потоки не обращались к ключам в одном порядке.
+     */
+    @State(Scope.Thread)
+    public static class Operations {
+        Integer[] operands;
+        byte[] operations;
+        int index;
+
+        @Setup(Level.Trial)
+        public void setUp(ConcurrentBenchmark benchmark) {
+            Random random = new Random(ThreadLocalRandom.current().nextLong());
+            int[] probes = benchmark.distribution.probes(benchmark.keys, OPERATIONS, random);
+            operands = new Integer[OPERATIONS];
+            operations = new byte[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                int roll = random.nextInt(100);
+                if (roll < benchmark.readPercent) {
+                    operations[i] = MixedBenchmark.CONTAINS;
+                    operands[i] = probes[i];
+                } else {
+                    operations[i] = roll % 2 == 0 ? MixedBenchmark.ADD : MixedBenchmark.REMOVE;
+                    operands[i] = random.nextBoolean() ? probes[i] : probes[i] + 1;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean mixed(Operations operations) {
+        int i = operations.index++ & (OPERATIONS - 1);
+        switch (operations.operations[i]) {
+            case MixedBenchmark.ADD:
+                return set.add(operations.operands[i]);
+            case MixedBenchmark.REMOVE:
+                return set.remove(operations.operands[i]);
+            default:
+                return set.contains(operations.operands[i]);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(ConcurrentBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTreeMap;
+
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подсчет частот: поток из EVENTS событий по keys различным ключам сворачивается в упорядоченное отображение
+ * ключ -> счетчик. Сравниваются AVLTreeMap и TreeMap на трех способах подсчета: merge, computeIfAbsent с изменяемым
+ * счетчиком и get с последующим put (два спуска на событие).
+ *
+ * Каждый вызов начинает с пустого отображения, поэтому в результат входят и вставки новых ключей, и обновления
+ * существующих; их соотношение задается keys и распределением.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class CounterBenchmark {
+    static final int EVENTS = 1 << 20;
+
+    public enum Implementation {
+        AVL_TREE_MAP,
+        TREE_MAP;
+
+        <V> NavigableMap<Integer, V> create() {
+            return this == AVL_TREE_MAP ? new AVLTreeMap<>() : new TreeMap<>();
+        }
+    }
+
+    @Param({"AVL_TREE_MAP", "TREE_MAP"})
+    Implementation implementation;
+
+    @Param({"RANDOM", "ZIPFIAN"})
+    KeyDistribution distribution;
+
+    @Param({"1000", "100000"})
+    int keys;
+
+    Integer[] events;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] probes = distribution.probes(distribution.keys(keys, random), EVENTS, random);
+        events = new Integer[EVENTS];
+        for (int i = 0; i < EVENTS; i++)
+            events[i] = probes[i];// упаковка заранее, чтобы не измерять Integer.valueOf
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public NavigableMap<Integer, Integer> merge() {
+        NavigableMap<Integer, Integer> counts = implementation.create();
+        for (Integer event : events)
+            counts.merge(event, 1, Integer::sum);
+        return counts;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public NavigableMap<Integer, long[]> computeIfAbsent() {
+        NavigableMap<Integer, long[]> counts = implementation.create();
+        for (Integer event : events)
+            counts.computeIfAbsent(event, k -> new long[1])[0]++;
+        return counts;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public NavigableMap<Integer, Integer> getPut() {
+        NavigableMap<Integer, Integer> counts = implementation.create();
+        for (Integer event : events) {
+            Integer count = counts.get(event);
+            counts.put(event, count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,63 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+import project.AVLTreeFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сохранение AVLTree из size ключей в файл через AVLTreeFile и загрузка обратно, с varint-кодеком и с разностным
+ * кодеком. Размер файла зависит от распределения: у SEQUENTIAL разности соседних ключей равны 2, и разностный
+ * кодек тратит на ключ один байт.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class FileBenchmark {
+
+    @Param({"SEQUENTIAL", "RANDOM"})
+    KeyDistribution distribution;
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    @Param({"INTEGER", "INTEGER_DELTA"})
+    String codecName;
+
+    AVLTreeFile.Codec<Integer> codec;
+    AVLTree<Integer> tree;
+    Path file;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        codec = (AVLTreeFile.Codec<Integer>) AVLTreeFile.class.getField(codecName).get(null);
+        tree = (AVLTree<Integer>) SetImplementation.AVL_TREE.create(distribution.keys(size, new Random(42)));
+        file = Files.createTempFile("avl", ".tree");
+        AVLTreeFile.save(tree, file, codec);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Path save() throws IOException {
+        AVLTreeFile.save(tree, file, codec);
+        return file;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> load() throws IOException {
+        return AVLTreeFile.load(file, codec);
+    }
+}
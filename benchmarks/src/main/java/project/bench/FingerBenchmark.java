@@ -0,0 +1,105 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Потоки упорядоченных и почти упорядоченных ключей (временные метки): загрузка size ключей и последовательный
+ * поиск через AVLTree.Finger против add и contains дерева и TreeSet.
+ *
+ * stream: ASCENDING - строго возрастающие ключи, на которых у пальца работает быстрый путь добавления в конец;
+ * JITTERED - метки 4i со случайной задержкой до 16, то есть ключ чаще всего попадает на несколько позиций левее
+ * максимума.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class FingerBenchmark {
+
+    @Param({"ASCENDING", "JITTERED"})
+    String stream;
+
+    @Param({"100000", "1000000", "10000000"})
+    int size;
+
+    Integer[] keys;
+    AVLTree<Integer> tree;
+    TreeSet<Integer> treeSet;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = stream.equals("ASCENDING") ? i : 4 * i + random.nextInt(16);
+        tree = new AVLTree<>();
+        treeSet = new TreeSet<>();
+        for (Integer key: keys) {
+            tree.add(key);
+            treeSet.add(key);
+        }
+    }
+
+    @Benchmark
+    public AVLTree<Integer> addEach() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (Integer key: keys)
+            tree.add(key);
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> fingerAdd() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        AVLTree<Integer>.Finger finger = tree.finger();
+        for (Integer key: keys)
+            finger.add(key);
+        return tree;
+    }
+
+    @Benchmark
+    public TreeSet<Integer> treeSetAdd() {
+        TreeSet<Integer> treeSet = new TreeSet<>();
+        for (Integer key: keys)
+            treeSet.add(key);
+        return treeSet;
+    }
+
+    @Benchmark
+    public int containsEach() {
+        int found = 0;
+        for (Integer key: keys) {
+            if (tree.contains(key))
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int fingerContains() {
+        AVLTree<Integer>.Finger finger = tree.finger();
+        int found = 0;
+        for (Integer key: keys) {
+            if (finger.contains(key))
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int treeSetContains() {
+        int found = 0;
+        for (Integer key: keys) {
+            if (treeSet.contains(key))
+                found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,132 @@
+package project.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Распределения ключей для бенчмарков.
+ *
+ * keys возвращает n различных четных ключей в порядке добавления, probes - последовательность обращений к этим
+ * ключам. Нечетные ключи (key + 1) гарантированно отсутствуют в наборе и используются для промахов и вставок.
+ */
+public enum KeyDistribution {
+
+    /**
+     * Плотный диапазон 0, 2, ..., 2(n - 1), добавляемый в случайном порядке; обращения идут подряд по возрастанию.
+     */
+    SEQUENTIAL {
+        @Override
+        public int[] keys(int n, Random random) {
+            int[] keys = new int[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = 2 * i;
+            }
+            shuffle(keys, random);
+            return keys;
+        }
+
+        @Override
+        public int[] probes(int[] keys, int count, Random random) {
+            int[] sorted = sorted(keys);
+            int[] probes = new int[count];
+            for (int i = 0; i < count; i++) {
+                probes[i] = sorted[i % sorted.length];
+            }
+            return probes;
+        }
+    },
+
+    /**
+     * Равномерно распределенные ключи во всем диапазоне int и равномерные обращения к ним.
+     */
+    RANDOM {
+        @Override
+        public int[] keys(int n, Random random) {
+            return scattered(n, random);
+        }
+
+        @Override
+        public int[] probes(int[] keys, int count, Random random) {
+            int[] probes = new int[count];
+            for (int i = 0; i < count; i++) {
+                probes[i] = keys[random.nextInt(keys.length)];
+            }
+            return probes;
+        }
+    },
+
+    /**
+     * Случайные ключи, обращения к которым подчиняются закону Ципфа: небольшая часть ключей получает большую часть
+     * запросов. Ранги перемешаны, так что горячие ключи разбросаны по дереву.
+     */
+    ZIPFIAN {
+        @Override
+        public int[] keys(int n, Random random) {
+            return scattered(n, random);
+        }
+
+        @Override
+        public int[] probes(int[] keys, int count, Random random) {
+            ZipfianGenerator zipf = new ZipfianGenerator(keys.length, ZipfianGenerator.DEFAULT_EXPONENT);
+            int[] probes = new int[count];
+            for (int i = 0; i < count; i++) {
+                probes[i] = keys[zipf.next(random)];
+            }
+            return probes;
+        }
+    },
+
+    /**
+     * Худший для АВЛ-дерева порядок: ключи добавляются строго по возрастанию, и каждая вставка идет в правую ветвь,
+     * вызывая каскад поворотов. Обращения также идут по возрастанию.
+     */
+    ASCENDING {
+        @Override
+        public int[] keys(int n, Random random) {
+            return sorted(scattered(n, random));
+        }
+
+        @Override
+        public int[] probes(int[] keys, int count, Random random) {
+            int[] probes = new int[count];
+            for (int i = 0; i < count; i++) {
+                probes[i] = keys[i % keys.length];
+            }
+            return probes;
+        }
+    };
+
+    public abstract int[] keys(int n, Random random);
+
+    public abstract int[] probes(int[] keys, int count, Random random);
+
+    /**
+     * n различных четных ключей, разбросанных по диапазону int. Умножение на нечетное число - биекция по модулю 2^30,
+     * поэтому ключи не повторяются при n <= 2^30.
+     */
+    private static int[] scattered(int n, Random random) {
+        int offset = random.nextInt(1 << 30);
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++) {
+            int x = ((i + offset) * 0x9E3779B1) & ((1 << 30) - 1);
+            keys[i] = 2 * x - (1 << 30);
+        }
+        shuffle(keys, random);
+        return keys;
+    }
+
+    private static int[] sorted(int[] keys) {
+        int[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void shuffle(int[] keys, Random random) {
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = keys[i];
+            keys[i] = keys[j];
+            keys[j] = t;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+import project.LookupCache;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * contains под нагрузкой Ципфа с показателем 1.1 (большая часть запросов приходится на несколько тысяч ключей)
+ * без кэша и с кэшем LookupCache в режимах CLOCK и LRU. p99 времени contains дает режим SampleTime.
+ *
+ * containsWithWrites на каждые 64 запроса удаляет и снова добавляет горячий ключ, так что часть ячеек кэша
+ * исправляется через add и remove.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class LookupCacheBenchmark {
+    static final int PROBES = 1 << 20;
+    static final double EXPONENT = 1.1;
+
+    @Param({"NONE", "CLOCK", "LRU"})
+    String cache;
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    @Param({"4096", "65536"})
+    int cacheSize;
+
+    AVLTree<Integer> tree;
+    Integer[] probes;
+    int index;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] keys = KeyDistribution.RANDOM.keys(size, random);
+        tree = (AVLTree<Integer>) SetImplementation.AVL_TREE.create(keys);
+        if (!cache.equals("NONE"))
+            tree.enableLookupCache(cacheSize, LookupCache.Eviction.valueOf(cache));
+        // ранги Ципфа указывают в перемешанный массив ключей, поэтому горячие ключи разбросаны по дереву;
+        // каждый восьмой запрос - отсутствующий ключ (key + 1)
+        ZipfianGenerator zipf = new ZipfianGenerator(keys.length, EXPONENT);
+        probes = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++)
+            probes[i] = keys[zipf.next(random)] + (i % 8 == 7 ? 1 : 0);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return tree.contains(probes[index++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean containsWithWrites() {
+        Integer key = probes[index++ & (PROBES - 1)];
+        if ((index & 63) == 0 && tree.remove(key))
+            tree.add(key);
+        return tree.contains(key);
+    }
+}
@@ -0,0 +1,92 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.LongAVLTree;
+import project.MappedLongAVLTree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MappedLongAVLTree против LongAVLTree в куче: время готовности после перезапуска (открытие файла против повторного
+ * добавления всех ключей) и задержка поиска.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class MappedBenchmark {
+    static final int PROBES = 1 << 16;
+
+    @Param({"RANDOM", "ASCENDING"})
+    KeyDistribution distribution;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    Path file;
+    int[] keys;
+    int[] probes;
+    MappedLongAVLTree mapped;
+    LongAVLTree heap;
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        keys = distribution.keys(size, random);
+        probes = distribution.probes(keys, PROBES, random);
+        file = Files.createTempFile("avl-bench", ".tree");
+        try (MappedLongAVLTree tree = MappedLongAVLTree.open(file)) {
+            for (int key: keys) {
+                tree.add(key);
+            }
+        }
+        mapped = MappedLongAVLTree.open(file);
+        heap = rebuildOnHeap();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mapped.close();
+        Files.delete(file);
+    }
+
+    private int next() {
+        return index++ & (PROBES - 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public int coldOpen() throws IOException {
+        try (MappedLongAVLTree tree = MappedLongAVLTree.open(file)) {
+            return tree.size();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public LongAVLTree rebuildOnHeap() {
+        LongAVLTree tree = new LongAVLTree();
+        for (int key: keys) {
+            tree.add(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public boolean containsMapped() {
+        return mapped.contains(probes[next()]);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public boolean containsHeap() {
+        return heap.contains(probes[next()]);
+    }
+}
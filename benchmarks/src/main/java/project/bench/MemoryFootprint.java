@@ -0,0 +1,131 @@
+package project.bench;
+
+import project.AVLTree;
+import project.BlockedAVLTree;
+import project.IntAVLTree;
+import project.LongAVLTree;
+import project.PooledAVLTree;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Оценка удерживаемой памяти на элемент: разница занятой кучи после полной сборки мусора до и после построения
+ * структуры из n ключей.
+ *
+ * Для AVLTree также оценивается цена одной версии при снимках (snapshot) через разное число изменений.
+ *
+ * Запуск: java -Xmx12g -cp benchmarks.jar project.bench.MemoryFootprint [n]
+ */
+public class MemoryFootprint {
+    /**
+     * Ссылка на измеряемую структуру, чтобы она не была собрана до второго замера.
+     */
+    static Object sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int[] keys = KeyDistribution.RANDOM.keys(n, new Random(42));
+
+        Map<String, Function<int[], Object>> structures = new LinkedHashMap<>();
+        structures.put("AVLTree<Integer>", k -> {
+            AVLTree<Integer> tree = new AVLTree<>();
+            for (int key: k) tree.add(key);
+            return tree;
+        });
+        structures.put("AVLTree<Long>", k -> {
+            AVLTree<Long> tree = new AVLTree<>();
+            for (int key: k) tree.add((long) key);
+            return tree;
+        });
+        structures.put("PooledAVLTree<Integer>", k -> {
+            PooledAVLTree<Integer> tree = new PooledAVLTree<>();
+            for (int key: k) tree.add(key);
+            return tree;
+        });
+        structures.put("BlockedAVLTree<Integer>", k -> {
+            BlockedAVLTree<Integer> tree = new BlockedAVLTree<>();
+            for (int key: k) tree.add(key);
+            return tree;
+        });
+        structures.put("BlockedAVLTree+prefix", k -> {
+            BlockedAVLTree<Integer> tree = new BlockedAVLTree<Integer>(64, Integer::longValue);
+            for (int key: k) tree.add(key);
+            return tree;
+        });
+        structures.put("IntAVLTree", k -> {
+            IntAVLTree tree = new IntAVLTree();
+            for (int key: k) tree.add(key);
+            return tree;
+        });
+        structures.put("LongAVLTree", k -> {
+            LongAVLTree tree = new LongAVLTree();
+            for (int key: k) tree.add(key);
+            return tree;
+        });
+        structures.put("TreeSet<Integer>", k -> {
+            TreeSet<Integer> set = new TreeSet<>();
+            for (int key: k) set.add(key);
+            return set;
+        });
+
+        for (Map.Entry<String, Function<int[], Object>> entry: structures.entrySet()) {
+            long before = usedMemory();
+            sink = entry.getValue().apply(keys);
+            long after = usedMemory();
+            sink = null;
+            System.out.printf("%-24s %8.2f bytes/entry%n", entry.getKey(), (double) (after - before) / n);
+        }
+
+        for (int updates: new int[]{1, 16, 256}) {
+            snapshotOverhead(keys, updates);
+        }
+    }
+
+    /**
+     * Память, удерживаемая версиями AVLTree: после каждых updates замен (удаление существующего ключа и
+     * добавление отсутствующего) берется снимок, и все снимки удерживаются. Разница занятой кучи, деленная на число
+     * версий, - цена версии, то есть скопированные узлы путей, которые больше не разделяются с деревом.
+     */
+    static void snapshotOverhead(int[] keys, int updates) {
+        int versions = 1000;
+        Random random = new Random(42);
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int key: keys) tree.add(key);
+        List<AVLTree<Integer>> snapshots = new ArrayList<>(versions);
+        sink = tree;
+
+        long before = usedMemory();
+        for (int v = 0; v < versions; v++) {
+            for (int i = 0; i < updates; i++) {
+                int key = keys[random.nextInt(keys.length)];
+                tree.remove(key);
+                tree.add(key + 1);
+            }
+            snapshots.add(tree.snapshot());
+        }
+        long after = usedMemory();
+        sink = snapshots;
+        System.out.printf("AVLTree snapshot every %3d replacements: %10.1f bytes/version, %7.1f bytes/replacement%n",
+                updates, (double) (after - before) / versions, (double) (after - before) / versions / updates);
+        sink = null;
+    }
+
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,59 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена метрик AVLTree (enableMetrics): contains и пара remove/add с выключенными и включенными метриками.
+ * С выключенными метриками результат должен совпадать с SetBenchmark для AVL_TREE.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    static final int PROBES = 1 << 16;
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    @Param({"RANDOM", "ZIPFIAN"})
+    KeyDistribution distribution;
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    AVLTree<Integer> tree;
+    Integer[] probes;
+    int index;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] keys = distribution.keys(size, random);
+        tree = (AVLTree<Integer>) SetImplementation.AVL_TREE.create(keys);
+        if (metrics)
+            tree.enableMetrics();
+        int[] indices = distribution.probes(keys, PROBES, random);
+        probes = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++)
+            probes[i] = indices[i];
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return tree.contains(probes[index++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean removeAdd() {
+        Integer key = probes[index++ & (PROBES - 1)];
+        return tree.remove(key) & tree.add(key);
+    }
+}
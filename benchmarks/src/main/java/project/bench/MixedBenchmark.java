@@ -0,0 +1,75 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Смешанная нагрузка: доля readPercent операций - contains, остальные поровну делятся между add и remove
+ * ключей из того же распределения (ключ и ключ + 1), так что размер множества остается около size.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class MixedBenchmark {
+    static final int OPERATIONS = 1 << 16;
+
+    @Param({"AVL_TREE", "POOLED_AVL_TREE", "BLOCKED_AVL_TREE", "TREE_SET", "HASH_SET", "SKIP_LIST"})
+    SetImplementation implementation;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "ASCENDING"})
+    KeyDistribution distribution;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"50", "90", "99"})
+    int readPercent;
+
+    Integer[] operands;
+    byte[] operations;
+    Set<Integer> set;
+    int index;
+
+    static final byte CONTAINS = 0;
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] keys = distribution.keys(size, random);
+        int[] probes = distribution.probes(keys, OPERATIONS, random);
+        operands = new Integer[OPERATIONS];
+        operations = new byte[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            int roll = random.nextInt(100);
+            if (roll < readPercent) {
+                operations[i] = CONTAINS;
+                operands[i] = probes[i];
+            } else {
+                operations[i] = roll % 2 == 0 ? ADD : REMOVE;
+                operands[i] = random.nextBoolean() ? probes[i] : probes[i] + 1;
+            }
+        }
+        set = implementation.create(keys);
+    }
+
+    @Benchmark
+    public boolean mixed() {
+        int i = index++ & (OPERATIONS - 1);
+        switch (operations[i]) {
+            case ADD:
+                return set.add(operands[i]);
+            case REMOVE:
+                return set.remove(operands[i]);
+            default:
+                return set.contains(operands[i]);
+        }
+    }
+}
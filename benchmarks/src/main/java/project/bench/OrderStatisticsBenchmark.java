@@ -0,0 +1,91 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * get/rank/countInRange на дереве с порядковой статистикой и стоимость ее поддержки при add/remove.
+ * Для сравнения get на обычном дереве проходит итератором.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class OrderStatisticsBenchmark {
+    static final int PROBES = 1 << 16;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    Integer[] probes;
+    Integer[] absent;
+    int[] indices;
+    AVLTree<Integer> counted;
+    AVLTree<Integer> plain;
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] keys = KeyDistribution.RANDOM.keys(size, random);
+        int[] raw = KeyDistribution.RANDOM.probes(keys, PROBES, random);
+        probes = new Integer[PROBES];
+        absent = new Integer[PROBES];
+        indices = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = raw[i];
+            absent[i] = raw[i] + 1;
+            indices[i] = random.nextInt(size);
+        }
+        counted = AVLTree.withOrderStatistics();
+        plain = new AVLTree<>();
+        for (int key: keys) {
+            counted.add(key);
+            plain.add(key);
+        }
+    }
+
+    private int next() {
+        return index++ & (PROBES - 1);
+    }
+
+    @Benchmark
+    public Integer get() {
+        return counted.get(indices[next()]);
+    }
+
+    @Benchmark
+    public Integer getByIteration() {
+        return plain.get(indices[next()]);
+    }
+
+    @Benchmark
+    public int rank() {
+        return counted.rank(probes[next()]);
+    }
+
+    @Benchmark
+    public int countInRange() {
+        int i = next();
+        Integer a = probes[i];
+        Integer b = probes[(i + 1) & (PROBES - 1)];
+        return a <= b ? counted.countInRange(a, b) : counted.countInRange(b, a);
+    }
+
+    @Benchmark
+    public boolean addRemoveCounted() {
+        Integer key = absent[next()];
+        return counted.add(key) & counted.remove(key);
+    }
+
+    @Benchmark
+    public boolean addRemovePlain() {
+        Integer key = absent[next()];
+        return plain.add(key) & plain.remove(key);
+    }
+}
@@ -0,0 +1,110 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Параллельные union/intersection/difference и parallelAddAll на основе join против последовательных
+ * addAll/retainAll/removeAll (слияние). Операции разрушают аргументы, поэтому деревья строятся перед каждым вызовом.
+ *
+ * Масштабирование по ядрам: -Djava.util.concurrent.ForkJoinPool.common.parallelism=N через -jvmArgsAppend.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class ParallelSetBenchmark {
+
+    @Param({"100000", "1000000", "5000000"})
+    int size;
+
+    /**
+     * Размер второго операнда относительно первого, в процентах.
+     */
+    @Param({"20", "100"})
+    int deltaPercent;
+
+    List<Integer> first;
+    List<Integer> second;
+    List<Integer> delta;
+    AVLTree<Integer> a;
+    AVLTree<Integer> b;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] keys = KeyDistribution.RANDOM.keys(size, random);
+        first = new ArrayList<>(size);
+        for (int key: keys) {
+            first.add(key);
+        }
+        int deltaSize = (int) ((long) size * deltaPercent / 100);
+        second = new ArrayList<>(deltaSize);
+        for (int i = 0; i < deltaSize; i++) {
+            second.add(i % 2 == 0 ? keys[i] : keys[i] + 1);
+        }
+        delta = new ArrayList<>(second);
+        first.sort(null);
+        second.sort(null);
+    }
+
+    @Setup(Level.Invocation)
+    public void build() {
+        a = AVLTree.fromSorted(first);
+        b = AVLTree.fromSorted(second);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> parallelUnion() {
+        return AVLTree.union(a, b);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> parallelIntersection() {
+        return AVLTree.intersection(a, b);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> parallelDifference() {
+        return AVLTree.difference(a, b);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> mergeUnion() {
+        a.addAll(b);
+        return a;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> mergeIntersection() {
+        a.retainAll(b);
+        return a;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> mergeDifference() {
+        a.removeAll(b);
+        return a;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> parallelAddAll() {
+        a.parallelAddAll(delta);
+        return a;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> addEach() {
+        for (Integer key: delta) {
+            a.add(key);
+        }
+        return a;
+    }
+}
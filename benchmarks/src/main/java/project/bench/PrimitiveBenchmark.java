@@ -0,0 +1,142 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+import project.IntAVLTree;
+import project.LongAVLTree;
+
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IntAVLTree и LongAVLTree против AVLTree с упакованными ключами на одних и тех же ключах.
+ * Расход памяти на элемент измеряет MemoryFootprint.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class PrimitiveBenchmark {
+    static final int PROBES = 1 << 16;
+
+    @Param({"RANDOM", "ASCENDING"})
+    KeyDistribution distribution;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    int[] keys;
+    int[] probes;
+    Integer[] boxedProbes;
+    Long[] boxedLongProbes;
+
+    AVLTree<Integer> boxed;
+    AVLTree<Long> boxedLong;
+    IntAVLTree ints;
+    LongAVLTree longs;
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = distribution.keys(size, random);
+        probes = distribution.probes(keys, PROBES, random);
+        boxedProbes = new Integer[PROBES];
+        boxedLongProbes = new Long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            boxedProbes[i] = probes[i];
+            boxedLongProbes[i] = (long) probes[i];
+        }
+        boxed = buildBoxed();
+        boxedLong = buildBoxedLong();
+        ints = buildInts();
+        longs = buildLongs();
+    }
+
+    private int next() {
+        return index++ & (PROBES - 1);
+    }
+
+    @Benchmark
+    public AVLTree<Integer> buildBoxed() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int key: keys) {
+            tree.add(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<Long> buildBoxedLong() {
+        AVLTree<Long> tree = new AVLTree<>();
+        for (int key: keys) {
+            tree.add((long) key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public IntAVLTree buildInts() {
+        IntAVLTree tree = new IntAVLTree();
+        for (int key: keys) {
+            tree.add(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public LongAVLTree buildLongs() {
+        LongAVLTree tree = new LongAVLTree();
+        for (int key: keys) {
+            tree.add(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public boolean containsBoxed() {
+        return boxed.contains(boxedProbes[next()]);
+    }
+
+    @Benchmark
+    public boolean containsBoxedLong() {
+        return boxedLong.contains(boxedLongProbes[next()]);
+    }
+
+    @Benchmark
+    public boolean containsInts() {
+        return ints.contains(probes[next()]);
+    }
+
+    @Benchmark
+    public boolean containsLongs() {
+        return longs.contains(probes[next()]);
+    }
+
+    @Benchmark
+    public long iterateBoxed() {
+        long sum = 0;
+        for (int key: boxed) {
+            sum += key;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long iterateInts() {
+        long sum = 0;
+        PrimitiveIterator.OfInt it = ints.iterator();
+        while (it.hasNext()) {
+            sum += it.nextInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int[] toIntArray() {
+        return ints.toIntArray();
+    }
+}
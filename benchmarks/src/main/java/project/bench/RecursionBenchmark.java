@@ -0,0 +1,107 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import project.AVLTree;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекурсивная реализация (RecursiveAVLTree) против текущей AVLTree с циклами и массивом пути на одних и тех же
+ * случайных ключах.
+ *
+ * updateAndHeight и updateAndHash меняют дерево перед вызовом: AVLTree кэширует высоту и хеш до следующего изменения,
+ * а сравнивать нужно сам обход (спуск по балансам против обхода всех узлов для высоты, инкрементный хеш против
+ * рекурсивного Objects.hash по всему дереву).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class RecursionBenchmark {
+    static final int PROBES = 1 << 16;
+
+    @Param({"RECURSIVE", "ITERATIVE"})
+    String implementation;
+
+    @Param({"1000", "1000000", "10000000"})
+    int size;
+
+    Set<Integer> set;
+    RecursiveAVLTree<Integer> recursive;
+    AVLTree<Integer> iterative;
+    Integer[] probes;
+    Integer[] absent;
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int[] keys = KeyDistribution.RANDOM.keys(size, random);
+        if (implementation.equals("RECURSIVE"))
+            set = recursive = new RecursiveAVLTree<>();
+        else
+            set = iterative = new AVLTree<>();
+        for (int key: keys)
+            set.add(key);
+        int[] raw = KeyDistribution.RANDOM.probes(keys, PROBES, random);
+        probes = new Integer[PROBES];
+        absent = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = raw[i];
+            absent[i] = raw[i] + 1;
+        }
+    }
+
+    private int next() {
+        return index++ & (PROBES - 1);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(probes[next()]);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return set.contains(absent[next()]);
+    }
+
+    @Benchmark
+    public boolean addAbsent() {
+        Integer key = absent[next()];
+        return set.add(key) & set.remove(key);
+    }
+
+    @Benchmark
+    public boolean removePresent() {
+        Integer key = probes[next()];
+        return set.remove(key) & set.add(key);
+    }
+
+    @Benchmark
+    public int updateAndHeight() {
+        Integer key = absent[next()];
+        set.add(key);
+        set.remove(key);
+        return recursive != null ? recursive.height() : iterative.height();
+    }
+
+    @Benchmark
+    public int updateAndHash() {
+        Integer key = absent[next()];
+        set.add(key);
+        set.remove(key);
+        return set.hashCode();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Integer key: set)
+            blackhole.consume(key);
+    }
+}
@@ -0,0 +1,347 @@
+package project.bench;
+
+import java.util.*;
+
+/**
+ * Эталонная копия рекурсивной реализации AVLTree, какой она была до замены рекурсии циклами: find, add, remove,
+ * findMin, height и pushToLeft итератора рекурсивны, а hashCode узла рекурсивно обходит все поддерево через
+ * Objects.hash. Нужна только для сравнения с текущей версией в RecursionBenchmark; повороты скопированы без изменений,
+ * так что оба дерева строят одинаковую форму и различаются лишь способом обхода.
+ */
+final class RecursiveAVLTree<T extends Comparable<T>> extends AbstractSet<T> {
+
+    private static final class Node<T> {
+        T value;
+        Node<T> left;
+        Node<T> right;
+        int balance;
+
+        private Node(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Node<?> node = (Node<?>) o;
+            return balance == node.balance &&
+                    value.equals(node.value) &&
+                    Objects.equals(left, node.left) &&
+                    Objects.equals(right, node.right);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(value, left, right, balance);
+        }
+    }
+
+    private Node<T> root = null;
+    private int size = 0;
+
+    private boolean endAdding;
+    private boolean added;
+    private boolean endRemoving;
+    private boolean removed;
+
+    private Node<T> find(Node<T> begin, T value) {
+        int comparison = value.compareTo(begin.value);
+        if (comparison == 0) {
+            return begin;
+        } else if (comparison > 0) {
+            if (begin.right == null)
+                return begin;
+            return find(begin.right, value);
+        } else {
+            if (begin.left == null)
+                return begin;
+            return find(begin.left, value);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        if (root == null)
+            return false;
+        return t.compareTo(find(root, t).value) == 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final Deque<Node<T>> stack = new ArrayDeque<>();
+
+            {
+                pushToLeft(root);
+            }
+
+            private void pushToLeft(Node<T> node) {
+                if (node != null) {
+                    stack.push(node);
+                    pushToLeft(node.left);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Node<T> current = stack.pop();
+                pushToLeft(current.right);
+                return current.value;
+            }
+        };
+    }
+
+    public int height() {
+        return height(root);
+    }
+
+    private int height(Node<T> node) {
+        if (node == null) return 0;
+        return 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    @Override
+    public boolean add(T t) {
+        endAdding = false;
+        added = false;
+        root = addRecursive(root, t);
+        if (!added)
+            return false;
+        size++;
+        return true;
+    }
+
+    private Node<T> addRecursive(Node<T> begin, T value) {
+        if (begin == null) {
+            added = true;
+            return new Node<>(value);
+        }
+
+        int comparison = value.compareTo(begin.value);
+        if (comparison < 0) {
+            begin.left = addRecursive(begin.left, value);
+            if (!endAdding) {
+                begin.balance--;
+                if (Math.abs(begin.balance) == 2)
+                    begin = balance(begin);
+                if (begin.balance == 0)
+                    endAdding = true;
+            }
+        } else if (comparison > 0) {
+            begin.right = addRecursive(begin.right, value);
+            if (!endAdding) {
+                begin.balance++;
+                if (Math.abs(begin.balance) == 2)
+                    begin = balance(begin);
+                if (begin.balance == 0)
+                    endAdding = true;
+            }
+        } else {
+            endAdding = true;
+        }
+
+        return begin;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        endRemoving = false;
+        removed = false;
+        root = removeRecursive(root, t);
+        if (!removed)
+            return false;
+        size--;
+        return true;
+    }
+
+    private Node<T> removeRecursive(Node<T> begin, T value) {
+        if (begin == null) {
+            endRemoving = true;
+            return null;
+        }
+
+        int comparison = value.compareTo(begin.value);
+        if (comparison < 0) {
+            begin.left = removeRecursive(begin.left, value);
+            if (!endRemoving)
+                begin = shrunkLeft(begin);
+        } else if (comparison > 0) {
+            begin.right = removeRecursive(begin.right, value);
+            if (!endRemoving)
+                begin = shrunkRight(begin);
+        } else {
+            removed = true;
+            if (begin.left == null) {
+                return begin.right;
+            }
+            if (begin.right == null) {
+                return begin.left;
+            }
+
+            Node<T> t = begin;
+            Node<T> min = findMin(t.right);
+            t.right = removeMin(t.right);
+            min.left = t.left;
+            min.right = t.right;
+            min.balance = t.balance;
+            begin = min;
+            if (!endRemoving)
+                begin = shrunkRight(begin);
+        }
+
+        return begin;
+    }
+
+    private Node<T> removeMin(Node<T> begin) {
+        if (begin.left == null)
+            return begin.right;
+        begin.left = removeMin(begin.left);
+        if (!endRemoving)
+            begin = shrunkLeft(begin);
+        return begin;
+    }
+
+    private Node<T> shrunkLeft(Node<T> begin) {
+        begin.balance++;
+        begin = balance(begin);
+        if (begin.balance != 0)
+            endRemoving = true;
+        return begin;
+    }
+
+    private Node<T> shrunkRight(Node<T> begin) {
+        begin.balance--;
+        begin = balance(begin);
+        if (begin.balance != 0)
+            endRemoving = true;
+        return begin;
+    }
+
+    private Node<T> findMin(Node<T> node) {
+        return node.left == null ? node : findMin(node.left);
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    private Node<T> balance(Node<T> node) {
+        if (node.balance == -2) {
+            if (node.left.balance <= 0)
+                node = smallRightTurn(node);
+            else
+                node = bigRightTurn(node);
+        } else if (node.balance == 2) {
+            if (node.right.balance >= 0)
+                node = smallLeftTurn(node);
+            else
+                node = bigLeftTurn(node);
+        }
+
+        return node;
+    }
+
+    private Node<T> smallLeftTurn(Node<T> begin) {
+        Node<T> node = begin;
+        begin = begin.right;
+        node.right = begin.left;
+        begin.left = node;
+
+        if (begin.balance == 1) {
+            begin.balance = 0;
+            begin.left.balance = 0;
+        } else {
+            begin.balance = -1;
+            begin.left.balance = 1;
+        }
+        return begin;
+    }
+
+    private Node<T> smallRightTurn(Node<T> begin) {
+        Node<T> node = begin;
+        begin = begin.left;
+        node.left = begin.right;
+        begin.right = node;
+
+        if (begin.balance == -1) {
+            begin.balance = 0;
+            begin.right.balance = 0;
+        } else {
+            begin.balance = 1;
+            begin.right.balance = -1;
+        }
+        return begin;
+    }
+
+    private Node<T> bigLeftTurn(Node<T> begin) {
+        Node<T> left = begin;
+        Node<T> right = begin.right;
+        begin = begin.right.left;
+        left.right = begin.left;
+        right.left = begin.right;
+        begin.left = left;
+        begin.right = right;
+
+        if (begin.balance == 0) {
+            begin.right.balance = 0;
+            begin.left.balance = 0;
+        } else if (begin.balance == -1) {
+            begin.balance = 0;
+            begin.right.balance = 1;
+            begin.left.balance = 0;
+        } else {
+            begin.balance = 0;
+            begin.right.balance = 0;
+            begin.left.balance = -1;
+        }
+        return begin;
+    }
+
+    private Node<T> bigRightTurn(Node<T> begin) {
+        Node<T> right = begin;
+        Node<T> left = begin.left;
+        begin = begin.left.right;
+        right.left = begin.right;
+        left.right = begin.left;
+        begin.left = left;
+        begin.right = right;
+
+        if (begin.balance == 0) {
+            begin.right.balance = 0;
+            begin.left.balance = 0;
+        } else if (begin.balance == 1) {
+            begin.balance = 0;
+            begin.right.balance = 0;
+            begin.left.balance = -1;
+        } else {
+            begin.balance = 0;
+            begin.right.balance = 1;
+            begin.left.balance = 0;
+        }
+        return begin;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(root, size);
+    }
+}
@@ -0,0 +1,119 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одиночные операции над заполненным множеством из size ключей.
+ *
+ * addAbsent и removePresent сразу возвращают множество в исходное состояние (удаляют добавленный ключ или добавляют
+ * удаленный обратно), чтобы размер не менялся в течение итерации.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class SetBenchmark {
+    static final int PROBES = 1 << 16;
+
+    @Param({"AVL_TREE", "POOLED_AVL_TREE", "BLOCKED_AVL_TREE", "TREE_SET", "HASH_SET", "SKIP_LIST"})
+    SetImplementation implementation;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "ASCENDING"})
+    KeyDistribution distribution;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    int[] keys;
+    Integer[] probes;
+    Integer[] absent;
+    Set<Integer> set;
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = distribution.keys(size, random);
+        int[] raw = distribution.probes(keys, PROBES, random);
+        probes = new Integer[PROBES];
+        absent = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = raw[i];
+            absent[i] = raw[i] + 1;
+        }
+        set = implementation.create(keys);
+    }
+
+    private int next() {
+        return index++ & (PROBES - 1);
+    }
+
+    @Benchmark
+    public Set<Integer> build() {
+        return implementation.create(keys);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(probes[next()]);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return set.contains(absent[next()]);
+    }
+
+    @Benchmark
+    public boolean addAbsent() {
+        Integer key = absent[next()];
+        return set.add(key) & set.remove(key);
+    }
+
+    @Benchmark
+    public boolean removePresent() {
+        Integer key = probes[next()];
+        return set.remove(key) & set.add(key);
+    }
+
+    /**
+     * Изменение с последующим hashCode, как в циклах мониторинга и дедупликации.
+     */
+    @Benchmark
+    public int updateAndHash() {
+        Integer key = probes[next()];
+        set.remove(key);
+        set.add(key);
+        return set.hashCode();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        Iterator<Integer> it = set.iterator();
+        while (it.hasNext()) {
+            blackhole.consume(it.next());
+        }
+    }
+
+    @Benchmark
+    public Object[] toArray() {
+        return set.toArray();
+    }
+
+    @Benchmark
+    public void forEach(Blackhole blackhole) {
+        set.forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public String asString() {
+        return set.toString();
+    }
+}
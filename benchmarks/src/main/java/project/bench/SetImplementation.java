@@ -0,0 +1,82 @@
+package project.bench;
+
+import project.AVLTree;
+import project.BlockedAVLTree;
+import project.ConcurrentAVLTree;
+import project.PooledAVLTree;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Сравниваемые реализации множества.
+ */
+public enum SetImplementation {
+    AVL_TREE {
+        @Override
+        public Set<Integer> create() {
+            return new AVLTree<>();
+        }
+    },
+    POOLED_AVL_TREE {
+        @Override
+        public Set<Integer> create() {
+            return new PooledAVLTree<>();
+        }
+    },
+    /**
+     * Листья по 64 ключа с префиксами: для Integer префикс - само значение, и поиск читает только найденный ключ.
+     */
+    BLOCKED_AVL_TREE {
+        @Override
+        public Set<Integer> create() {
+            return new BlockedAVLTree<Integer>(64, Integer::longValue);
+        }
+    },
+    TREE_SET {
+        @Override
+        public Set<Integer> create() {
+            return new TreeSet<>();
+        }
+    },
+    HASH_SET {
+        @Override
+        public Set<Integer> create() {
+            return new HashSet<>();
+        }
+    },
+    SKIP_LIST {
+        @Override
+        public Set<Integer> create() {
+            return new ConcurrentSkipListSet<>();
+        }
+    },
+    CONCURRENT_AVL_TREE {
+        @Override
+        public Set<Integer> create() {
+            return new ConcurrentAVLTree<>();
+        }
+    },
+    /**
+     * AVLTree под одной общей блокировкой - то, чем приходится пользоваться без потокобезопасного дерева.
+     */
+    SYNCHRONIZED_AVL_TREE {
+        @Override
+        public Set<Integer> create() {
+            return Collections.synchronizedSet(new AVLTree<Integer>());
+        }
+    };
+
+    public abstract Set<Integer> create();
+
+    public Set<Integer> create(int[] keys) {
+        Set<Integer> set = create();
+        for (int key: keys) {
+            set.add(key);
+        }
+        return set;
+    }
+}
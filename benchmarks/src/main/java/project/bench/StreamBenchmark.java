@@ -0,0 +1,50 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Агрегации через stream() и parallelStream(): сумма всех ключей и число ключей, прошедших фильтр. Для AVLTree
+ * параллельный поток делится сплитератором по корням поддеревьев, для TreeSet - его собственным сплитератором.
+ *
+ * Масштабирование по ядрам: -Djava.util.concurrent.ForkJoinPool.common.parallelism=N через -jvmArgsAppend.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Benchmark)
+public class StreamBenchmark {
+
+    @Param({"AVL_TREE", "TREE_SET", "SKIP_LIST"})
+    SetImplementation implementation;
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    Set<Integer> set;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        set = implementation.create(KeyDistribution.RANDOM.keys(size, new Random(42)));
+    }
+
+    @Benchmark
+    public long sequentialSum() {
+        return set.stream().mapToLong(Integer::longValue).sum();
+    }
+
+    @Benchmark
+    public long parallelSum() {
+        return set.parallelStream().mapToLong(Integer::longValue).sum();
+    }
+
+    @Benchmark
+    public long parallelFilterCount() {
+        return set.parallelStream().filter(key -> (key & 7) == 0).count();
+    }
+}
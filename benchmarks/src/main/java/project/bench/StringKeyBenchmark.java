@@ -0,0 +1,102 @@
+package project.bench;
+
+import org.openjdk.jmh.annotations.*;
+import project.AVLTree;
+
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск и добавление длинных строковых ключей вида "host.domain.com/section/item/12345": AVLTree с полным
+ * сравнением строк, AVLTree с кэшированным префиксом (AVLTree.stringPrefix) и TreeSet.
+ *
+ * Ключи различаются уже в первых символах (имя хоста), как у адресов без схемы. Если у всех ключей общее начало
+ * (например, "https://"), префикс нужно брать после него, иначе все сравнения префиксов окажутся равными.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+@State(Scope.Thread)
+public class StringKeyBenchmark {
+    static final int PROBES = 1 << 16;
+    static final String[] DOMAINS = {"example", "cdn-static", "shop", "news", "mail", "api"};
+    static final String[] SECTIONS = {"catalog", "articles", "users", "images", "download"};
+
+    public enum Implementation {
+        AVL_TREE,
+        AVL_TREE_PREFIX,
+        TREE_SET;
+
+        NavigableSet<String> create() {
+            switch (this) {
+                case AVL_TREE:
+                    return new AVLTree<>();
+                case AVL_TREE_PREFIX:
+                    return new AVLTree<String>(null, AVLTree::stringPrefix);
+                default:
+                    return new TreeSet<>();
+            }
+        }
+    }
+
+    @Param({"AVL_TREE", "AVL_TREE_PREFIX", "TREE_SET"})
+    Implementation implementation;
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    String[] probes;
+    String[] absent;
+    NavigableSet<String> set;
+    int index;
+
+    static String url(Random random) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 3 + random.nextInt(8); i > 0; i--)
+            key.append((char) ('a' + random.nextInt(26)));
+        key.append('.').append(DOMAINS[random.nextInt(DOMAINS.length)]).append(".com/")
+                .append(SECTIONS[random.nextInt(SECTIONS.length)]).append("/item/").append(random.nextInt(1000000));
+        return key.toString();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        set = implementation.create();
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = url(random);
+            set.add(keys[i]);
+        }
+        probes = new String[PROBES];
+        absent = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = new String(keys[random.nextInt(size)]);// копия, чтобы equals не срабатывал по ссылке
+            absent[i] = probes[i] + "/";
+        }
+    }
+
+    private int next() {
+        return index++ & (PROBES - 1);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(probes[next()]);
+    }
+
+    @Benchmark
+    public boolean addAbsent() {
+        String key = absent[next()];
+        return set.add(key) & set.remove(key);
+    }
+
+    @Benchmark
+    public String ceiling() {
+        return set.ceiling(absent[next()]);
+    }
+}
@@ -0,0 +1,78 @@
+package project.bench;
+
+import java.util.Random;
+
+/**
+ * Генератор рангов 0..n-1 по закону Ципфа: вероятность ранга k пропорциональна 1 / (k + 1)^exponent.
+ *
+ * Используется метод rejection-inversion, который работает для любого exponent > 0 и не требует таблиц размера n.
+ * Источник: W. Hörmann, G. Derflinger "Rejection-inversion to generate variates from monotone discrete
+ * distributions", ACM TOMACS, 1996.
+ */
+public class ZipfianGenerator {
+    public static final double DEFAULT_EXPONENT = 0.99;
+
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    public ZipfianGenerator(int n, double exponent) {
+        if (n <= 0 || exponent <= 0)
+            throw new IllegalArgumentException();
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    public int next(Random random) {
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1)
+                k = 1;
+            else if (k > n)
+                k = n;
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k))
+                return k - 1;
+        }
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1)
+            t = -1;
+        return Math.exp(helper1(t) * x);
+    }
+
+    /**
+     * log(1 + x) / x с устойчивым вычислением около нуля.
+     */
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8)
+            return Math.log1p(x) / x;
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * (exp(x) - 1) / x с устойчивым вычислением около нуля.
+     */
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8)
+            return Math.expm1(x) / x;
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
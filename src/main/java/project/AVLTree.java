@@ -2,330 +2,2557 @@ package project;
 
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
-public class AVLTree<T extends Comparable<T>> implements Set<T> {
+public class AVLTree<T extends Comparable<T>> implements NavigableSet<T> {
 
-    private static class Node<T> {
+    /**
+     * Узел дерева. Доступен в пакете, чтобы AVLTreeMap использовала те же узлы и повороты.
+     */
+    static class Node<T> {
         T value;
         Node<T> left;
         Node<T> right;
         int balance;
+        int count;
 
-        private Node(T value) {
+        Node(T value) {
             this.value = value;
             left = null;
             right = null;
             balance = 0;// значение баланса показывает, на сколько правое поддерево узла больше левого
+            count = 1;// число узлов в поддереве; поддерживается, только если включена порядковая статистика
+        }
+    }
+
+    /**
+     * Узел с кэшированным префиксом ключа (см. AVLTree(Comparator, ToLongFunction)). Из-за префикса узел занимает
+     * 40 байт вместо 32, поэтому такие узлы создаются только в деревьях с префиксами, и там - все узлы.
+     */
+    private static final class PrefixNode<T> extends Node<T> {
+        long prefix;
+
+        private PrefixNode(T value, long prefix) {
+            super(value);
+            this.prefix = prefix;
+        }
+    }
+
+    private Node<T> root = null;
+    private int size = 0;// -1, если размер неизвестен (после join и split) и будет посчитан при вызове size()
+    private final Comparator<? super T> comparator;// null - естественный порядок (compareTo)
+    private final ToLongFunction<? super T> sortPrefix;// null - префиксы ключей не кэшируются
+    private final boolean orderStatistics;
+    private final boolean readOnly;// снимок, созданный snapshot()
+    private boolean shared = false;// узлы могут принадлежать и снимку, поэтому изменяются только их копии
+    private int modCount = 0;// число структурных изменений, по которому итераторы обнаруживают изменение дерева
+    private int height = 0;// кэш height(), действителен, если heightModCount == modCount
+    private int heightModCount = 0;
+    private int hash = 0;// сумма hashCode элементов, действительна, если hashModCount == modCount
+    private int hashModCount = 0;
+    private AVLTreeMetrics metrics = null;// null - метрики выключены
+    private LookupCache lookupCache = null;// null - contains всегда спускается по дереву
+
+    public AVLTree() {
+        this(null, null, false, false);
+    }
+
+    /**
+     * Дерево, упорядоченное comparator вместо естественного порядка (null - естественный порядок).
+     */
+    public AVLTree(Comparator<? super T> comparator) {
+        this(comparator, null, false, false);
+    }
+
+    /**
+     * Дерево, в каждом узле которого хранится префикс ключа sortPrefix(key) - число, по которому сравнение ключей
+     * решается без обращения к самому ключу. При спуске сначала сравниваются префиксы искомого ключа и узла, и только
+     * при их равенстве вызывается compareTo (или comparator). Для длинных строк и составных ключей это заменяет
+     * большинство полных сравнений, каждое из которых требует перехода по ссылке к ключу, одним сравнением long
+     * внутри узла. Цена - 8 байт на узел.
+     *
+     * Префикс должен быть согласован с порядком дерева: из compare(a, b) < 0 следует
+     * sortPrefix(a) <= sortPrefix(b) (сравнение long со знаком). Для строк в естественном порядке подходит
+     * stringPrefix.
+     */
+    public AVLTree(Comparator<? super T> comparator, ToLongFunction<? super T> sortPrefix) {
+        this(comparator, sortPrefix, false, false);
+    }
+
+    private AVLTree(Comparator<? super T> comparator, ToLongFunction<? super T> sortPrefix,
+                    boolean orderStatistics, boolean readOnly) {
+        this.comparator = comparator;
+        this.sortPrefix = sortPrefix;
+        this.orderStatistics = orderStatistics;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Дерево, в узлах которого хранятся размеры поддеревьев. Это позволяет выполнять get(index), rank и
+     * countInRange за O(log n) ценой обновления счетчиков на всем пути при каждом добавлении и удалении.
+     * Памяти счетчик не требует: поле помещается в выравнивание объекта Node.
+     */
+    public static <T extends Comparable<T>> AVLTree<T> withOrderStatistics() {
+        return new AVLTree<>(null, null, true, false);
+    }
+
+    /**
+     * Префикс строки для AVLTree(Comparator, ToLongFunction) при естественном порядке строк: первые 4 символа
+     * (8 байт) старшим символом вперед, недостающие символы - нули. Знаковый бит инвертирован, чтобы сравнение
+     * префиксов со знаком совпадало с беззнаковым сравнением символов в String.compareTo.
+     */
+    public static long stringPrefix(String s) {
+        long prefix = 0;
+        for (int i = 0; i < 4; i++)
+            prefix = prefix << 16 | (i < s.length() ? s.charAt(i) : 0);
+        return prefix ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Неизменяемый снимок текущего состояния дерева за O(1).
+     *
+     * Снимок разделяет узлы с деревом. После первого снимка дерево становится персистентным: add и remove не меняют
+     * существующие узлы, а копируют O(log n) узлов пути поиска (и узлы, затронутые поворотами) и получают новый
+     * корень, поэтому поддеревья, которых изменение не коснулось, остаются общими для всех версий. Копирование
+     * продолжается, пока дерево не будет построено заново (clear, addAll с перестроением, retainAll, removeAll).
+     * Операции на основе join (split, join, union, intersection, difference, parallelAddAll) разрушают узлы
+     * аргументов, поэтому перед ними дерево со снимками один раз копируется целиком за O(n).
+     *
+     * Изменение снимка бросает UnsupportedOperationException.
+     */
+    public AVLTree<T> snapshot() {
+        if (readOnly)
+            return this;
+        shared = true;
+        AVLTree<T> snapshot = new AVLTree<>(comparator, sortPrefix, orderStatistics, true);
+        snapshot.root = root;
+        snapshot.size = size;
+        snapshot.height = height();
+        snapshot.hash = hash;
+        snapshot.hashModCount = hashModCount == modCount ? 0 : -1;
+        return snapshot;
+    }
+
+    private void checkWritable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("Snapshot is read-only");
+    }
+
+    private static <T> Node<T> copy(Node<T> node) {
+        Node<T> copy = node instanceof PrefixNode
+                ? new PrefixNode<>(node.value, ((PrefixNode<T>) node).prefix) : new Node<>(node.value);
+        copy.left = node.left;
+        copy.right = node.right;
+        copy.balance = node.balance;
+        copy.count = node.count;
+        return copy;
+    }
+
+    /**
+     * Замена узлов path[0..depth) их копиями, связанными друг с другом; корнем становится копия path[0].
+     */
+    private void copyPath(Node<T>[] path, int depth) {
+        for (int i = 0; i < depth; i++) {
+            Node<T> copy = copy(path[i]);
+            if (i == 0)
+                root = copy;
+            else if (path[i - 1].left == path[i])
+                path[i - 1].left = copy;
+            else
+                path[i - 1].right = copy;
+            path[i] = copy;
+        }
+    }
+
+    /**
+     * При удалении поворот затрагивает более высокое поддерево, которое лежит вне пути поиска: его корень (и
+     * внутренний внук при большом повороте) копируются перед балансировкой node.
+     */
+    private static <T> void copyForRotation(Node<T> node) {
+        if (node.balance < 0) {
+            node.left = copy(node.left);
+            if (node.left.balance > 0)
+                node.left.right = copy(node.left.right);
+        } else {
+            node.right = copy(node.right);
+            if (node.right.balance < 0)
+                node.right.left = copy(node.right.left);
+        }
+    }
+
+    private static int count(Node<?> node) {
+        return node == null ? 0 : node.count;
+    }
+
+    private static void updateCount(Node<?> node) {
+        node.count = 1 + count(node.left) + count(node.right);
+    }
+
+    /**
+     * Наибольшая высота АВЛ-дерева из не более чем Integer.MAX_VALUE узлов: h < 1.4405 * log2(n + 2) - 0.3277 < 45.
+     * Массивы такого размера используются вместо рекурсии для хранения пути от корня.
+     */
+    static final int MAX_HEIGHT = 46;
+
+    @SuppressWarnings("unchecked")
+    static <T> Node<T>[] newPath() {
+        return (Node<T>[]) new Node<?>[MAX_HEIGHT];
+    }
+
+    private Node<T> newNode(T value) {
+        return sortPrefix == null ? new Node<>(value) : new PrefixNode<>(value, sortPrefix.applyAsLong(value));
+    }
+
+    /**
+     * Сравнение в порядке дерева: comparator или, если его нет, compareTo.
+     */
+    @SuppressWarnings("unchecked")
+    static int compare(Comparator<?> comparator, Object a, Object b) {
+        return comparator == null ? ((Comparable<Object>) a).compareTo(b) : ((Comparator<Object>) comparator).compare(a, b);
+    }
+
+    private int compare(Object a, Object b) {
+        return compare(comparator, a, b);
+    }
+
+    private long prefix(T value) {
+        return sortPrefix == null ? 0 : sortPrefix.applyAsLong(value);
+    }
+
+    /**
+     * Сравнение value (с префиксом prefix) с ключом узла: сначала по префиксам, полное сравнение - только при их
+     * равенстве.
+     */
+    private int compareToNode(T value, long prefix, Node<T> node) {
+        if (sortPrefix != null) {
+            long nodePrefix = ((PrefixNode<T>) node).prefix;
+            if (prefix != nodePrefix)
+                return prefix < nodePrefix ? -1 : 1;
+        }
+        return compare(value, node.value);
+    }
+
+    private Node<T> find(T value) {
+        long prefix = prefix(value);
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = compareToNode(value, prefix, node);
+            if (comparison == 0)
+                return node;
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            int count = 0;
+            for (Iterator<T> it = iterator(); it.hasNext(); it.next())
+                count++;
+            size = count;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        if (lookupCache != null)
+            return cachedContains(t, lookupCache);
+        if (metrics != null)
+            return measuredContains(t, metrics);
+        return find(t) != null;
+    }
+
+    /**
+     * contains через кэш: спуск по дереву только для ключей, которых нет в кэше. Ответ из кэша попадает в метрики
+     * с глубиной 0.
+     */
+    private boolean cachedContains(T value, LookupCache cache) {
+        if (cache.modCount != modCount)
+            cache.clear(modCount);
+        AVLTreeMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        int known = cache.lookup(value);
+        if (known != LookupCache.UNKNOWN) {
+            if (metrics != null)
+                metrics.contains(start, 0);
+            return known == LookupCache.PRESENT;
+        }
+        boolean present = metrics != null ? measuredContains(value, metrics) : find(value) != null;
+        cache.put(value, present);
+        return present;
+    }
+
+    /**
+     * contains с записью глубины спуска и времени в metrics; спуск тот же, что в find.
+     */
+    private boolean measuredContains(T value, AVLTreeMetrics metrics) {
+        long start = System.nanoTime();
+        long prefix = prefix(value);
+        int depth = 0;
+        Node<T> node = root;
+        while (node != null) {
+            depth++;
+            int comparison = compareToNode(value, prefix, node);
+            if (comparison == 0)
+                break;
+            node = comparison < 0 ? node.left : node.right;
+        }
+        metrics.contains(start, depth);
+        return node != null;
+    }
+
+    /**
+     * Включение метрик (повороты, глубина спуска, время add, remove и contains); повторный вызов возвращает те же
+     * метрики. Пока метрики выключены, операции проверяют только, что поле metrics равно null.
+     */
+    public AVLTreeMetrics enableMetrics() {
+        if (metrics == null)
+            metrics = new AVLTreeMetrics();
+        return metrics;
+    }
+
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Метрики дерева или null, если они выключены.
+     */
+    public AVLTreeMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Включение кэша результатов contains (см. LookupCache) примерно на capacity ключей: емкость округляется вниз до
+     * степени двойки, не меньшей LookupCache.WAYS. Новый кэш заменяет прежний. У дерева с компаратором кэш
+     * очищается целиком после каждого add и remove: равные по компаратору ключи могут быть различны по equals.
+     */
+    public LookupCache enableLookupCache(int capacity, LookupCache.Eviction eviction) {
+        lookupCache = new LookupCache(capacity, eviction, modCount);
+        return lookupCache;
+    }
+
+    public void disableLookupCache() {
+        lookupCache = null;
+    }
+
+    /**
+     * Кэш contains или null, если он выключен.
+     */
+    public LookupCache lookupCache() {
+        return lookupCache;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new AVLTreeIterator(null, false);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new AVLTreeIterator(null, true);
+    }
+
+    /**
+     * Итератор по всему дереву или по диапазону range в прямом или обратном порядке.
+     *
+     * Стек строится одним спуском от корня к первому элементу диапазона, поэтому начало обхода стоит O(log n)
+     * независимо от того, сколько элементов лежит до диапазона. Обход останавливается на первом элементе за
+     * верхней границей.
+     *
+     * Стек - массив высотой MAX_HEIGHT, выделяемый один раз при создании итератора, поэтому сам обход памяти не
+     * выделяет. Изменение дерева в обход итератора обнаруживается по modCount: следующий вызов next или remove
+     * бросает ConcurrentModificationException.
+     */
+    public class AVLTreeIterator implements Iterator<T> {
+        private final Node<T>[] stack = newPath();
+        private int depth = 0;
+        private final SubSet range;// null - обход всего дерева
+        private final boolean descending;
+        private T last;// последний возвращенный элемент, null - удалять нечего
+        private int expectedModCount = modCount;
+
+        AVLTreeIterator(SubSet range, boolean descending) {
+            this.range = range;
+            this.descending = descending;
+            seek(null, true);
+        }
+
+        /**
+         * Спуск от корня: в стек попадают узлы, начиная с которых продолжается обход, то есть элементы не раньше from
+         * (строго после from, если inclusive == false) и не раньше начала диапазона.
+         */
+        private void seek(T from, boolean inclusive) {
+            depth = 0;
+            Node<T> node = root;
+            while (node != null) {
+                if (skipped(node.value, from, inclusive)) {
+                    node = descending ? node.left : node.right;
+                } else {
+                    stack[depth++] = node;
+                    node = descending ? node.right : node.left;
+                }
+            }
+        }
+
+        private boolean skipped(T value, T from, boolean inclusive) {
+            if (from != null) {
+                int comparison = compare(value, from);
+                if (descending ? comparison > 0 || comparison == 0 && !inclusive
+                        : comparison < 0 || comparison == 0 && !inclusive)
+                    return true;
+            }
+            return range != null && (descending ? range.tooHigh(value) : range.tooLow(value));
+        }
+
+        private void push(Node<T> node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = descending ? node.right : node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (depth == 0)
+                return false;
+            if (range == null)
+                return true;
+            T next = stack[depth - 1].value;
+            return descending ? !range.tooLow(next) : !range.tooHigh(next);
         }
 
         @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Node<?> node = (Node<?>) o;
-            return balance == node.balance &&
-                    value.equals(node.value) &&
-                    Objects.equals(left, node.left) &&
-                    Objects.equals(right, node.right);
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node<T> node = stack[--depth];
+            push(descending ? node.left : node.right);
+            last = node.value;
+            return last;
         }
 
+        /**
+         * Удаление может перенести значение в другой узел и перестроить путь поворотами, поэтому после него стек
+         * строится заново спуском к первому элементу после удаленного.
+         *
+         * Сложность: O(log n).
+         */
         @Override
-        public int hashCode() {
-            return Objects.hash(value, left, right, balance);
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            AVLTree.this.remove(last);
+            expectedModCount = modCount;
+            seek(last, false);
+            last = null;
         }
     }
 
-    private Node<T> root = null;
-    private int size = 0;
+    @Override
+    public Spliterator<T> spliterator() {
+        return new AVLTreeSpliterator();
+    }
 
-    private Node<T> find(T value) {
-        if (root == null) return null;
-        return find(root, value);
-    }
-
-    private Node<T> find(Node<T> begin, T value) {
-        int comparison = value.compareTo(begin.value);
-        if (comparison == 0) {
-            return begin;
-        } else if (comparison > 0) {
-            if (begin.right == null)
-                return begin;
-            return find(begin.right, value);
+    /**
+     * Сплитератор, который делится по корням поддеревьев.
+     *
+     * Состояние - такой же стек, как у итератора: каждый узел стека означает сам узел и его правое поддерево.
+     * trySplit отдает префикс обхода, а себе оставляет правое поддерево самого нижнего узла стека, у которого оно
+     * есть, поэтому первое деление проходит по корню дерева, следующие - по корням его поддеревьев, и части
+     * получаются примерно равными. Флаг cut означает, что правое поддерево нижнего узла стека уже отдано
+     * другой части.
+     *
+     * Размер известен точно только с порядковой статистикой (тогда и у всех частей, SUBSIZED), без нее точен только
+     * размер неразделенного сплитератора, а частям достается половина оценки. Привязка к дереву откладывается до
+     * первого обхода или деления; изменение дерева после привязки обнаруживается по modCount.
+     */
+    final class AVLTreeSpliterator implements Spliterator<T> {
+        private Node<T>[] stack;// null, пока сплитератор не привязан к дереву
+        private int depth;
+        private boolean cut;
+        private long estimate;
+        private boolean exact;
+        private int expectedModCount;
+
+        AVLTreeSpliterator() {
+        }
+
+        private AVLTreeSpliterator(Node<T>[] stack, int depth, long estimate, boolean exact, int expectedModCount) {
+            this.stack = stack;
+            this.depth = depth;
+            this.cut = true;
+            this.estimate = estimate;
+            this.exact = exact;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private void bind() {
+            if (stack == null) {
+                stack = newPath();
+                push(root);
+                estimate = size();
+                exact = true;
+                expectedModCount = modCount;
+            }
+        }
+
+        private void push(Node<T> node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left;
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            bind();
+            int k = cut ? 1 : 0;
+            while (k < depth && stack[k].right == null)
+                k++;
+            if (k >= depth)
+                return null;
+
+            Node<T>[] prefix = newPath();
+            System.arraycopy(stack, k, prefix, 0, depth - k);
+            boolean prefixExact = exact && orderStatistics;
+            long prefixSize = estimate >>> 1;
+            if (prefixExact) {
+                prefixSize = depth - k;
+                for (int i = k + 1; i < depth; i++)
+                    prefixSize += count(stack[i].right);
+            }
+            Node<T> right = stack[k].right;
+            AVLTreeSpliterator result = new AVLTreeSpliterator(prefix, depth - k, prefixSize, prefixExact,
+                    expectedModCount);
+            depth = k;
+            push(right);
+            estimate -= prefixSize;
+            exact = prefixExact;
+            return result;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null)
+                throw new NullPointerException();
+            bind();
+            if (depth == 0)
+                return false;
+            Node<T> node = stack[--depth];
+            if (depth > 0 || !cut)
+                push(node.right);
+            if (estimate > 0)
+                estimate--;
+            action.accept(node.value);
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (action == null)
+                throw new NullPointerException();
+            bind();
+            Node<T>[] stack = this.stack;
+            int depth = this.depth;
+            while (depth > 0) {
+                Node<T> node = stack[--depth];
+                if (depth > 0 || !cut) {
+                    for (Node<T> next = node.right; next != null; next = next.left)
+                        stack[depth++] = next;
+                }
+                action.accept(node.value);
+            }
+            this.depth = 0;
+            estimate = 0;
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public long estimateSize() {
+            bind();
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            int characteristics = ORDERED | SORTED | DISTINCT | NONNULL;
+            if (stack == null || exact)
+                characteristics |= SIZED;
+            if (orderStatistics)
+                characteristics |= SUBSIZED;
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator();
+        }
+    }
+
+    /**
+     * Обход поддерева в порядке возрастания с записью значений в dest начиная с index. Возвращает индекс за последним
+     * записанным значением.
+     *
+     * Глубина рекурсии ограничена высотой дерева (по правым поддеревьям обход идет циклом), поэтому ни итератора,
+     * ни стека обход не выделяет.
+     */
+    private static int copyTo(Node<?> node, Object[] dest, int index) {
+        while (node != null) {
+            index = copyTo(node.left, dest, index);
+            dest[index++] = node.value;
+            node = node.right;
+        }
+        return index;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[size()];
+        copyTo(root, result, 0);
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T1> T1[] toArray(T1[] a) {
+        if (a == null) throw new NullPointerException();
+        int size = size();
+        if (a.length < size)
+            a = (T1[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        copyTo(root, a, 0);
+        if (a.length > size)
+            a[size] = null;
+
+        return a;
+    }
+
+    /**
+     * То же, что toArray(T1[]), но массив нужного размера сразу создается генератором, без отражения и без
+     * промежуточного пустого массива, который создает реализация по умолчанию (Collection.toArray(IntFunction),
+     * Java 11).
+     */
+    public <T1> T1[] toArray(IntFunction<T1[]> generator) {
+        return toArray(generator.apply(size()));
+    }
+
+    /**
+     * Обход без итератора. Изменение дерева из action обнаруживается после каждого элемента.
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        if (action == null) throw new NullPointerException();
+        forEach(root, action, modCount);
+    }
+
+    private void forEach(Node<T> node, Consumer<? super T> action, int expectedModCount) {
+        while (node != null) {
+            forEach(node.left, action, expectedModCount);
+            action.accept(node.value);
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            node = node.right;
+        }
+    }
+
+    /**
+     * Элементы копируются в массив и разделяются на оставшиеся (в начале массива, в прежнем порядке) и удаляемые.
+     * Если удаляемых много (по тому же правилу, что и в mergeIsCheaper), дерево строится заново из оставшихся за
+     * O(n), иначе удаляемые удаляются по одному за O(k log n). Пока проверяются все элементы, дерево не меняется,
+     * поэтому исключение из filter оставляет его нетронутым.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        if (filter == null) throw new NullPointerException();
+        checkWritable();
+        int expectedModCount = modCount;
+        Object[] values = toArray();
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            @SuppressWarnings("unchecked")
+            T value = (T) values[i];
+            if (!filter.test(value)) {
+                values[i] = values[count];
+                values[count++] = value;
+            }
+        }
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        int removed = values.length - count;
+        if (removed == 0)
+            return false;
+        if ((long) removed * height() >= values.length) {
+            build(values, count);
         } else {
-            if (begin.left == null)
-                return begin;
-            return find(begin.left, value);
+            for (int i = count; i < values.length; i++)
+                remove(values[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Высота хранится в дереве: add и remove меняют ее на 1, если подъем с корректировкой балансов дошел до корня.
+     * После остальных изменений (построение, join, split, applyBatch и т.п.) она один раз считается заново спуском по
+     * более высокому поддереву, которое определяется по значению баланса.
+     *
+     * Сложность: O(1) после add и remove, иначе O(log n).
+     */
+    public int height() {
+        if (heightModCount != modCount) {
+            int height = 0;
+            for (Node<T> node = root; node != null; node = node.balance < 0 ? node.left : node.right)
+                height++;
+            this.height = height;
+            heightModCount = modCount;
+        }
+        return height;
+    }
+
+    /**
+     * Элемент с заданным порядковым номером (с нуля) в порядке возрастания.
+     *
+     * Сложность: O(log n) с порядковой статистикой (см. withOrderStatistics), иначе O(n).
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        if (!orderStatistics) {
+            Iterator<T> it = iterator();
+            for (int i = 0; i < index; i++)
+                it.next();
+            return it.next();
+        }
+
+        Node<T> node = root;
+        while (true) {
+            int left = count(node.left);
+            if (index == left)
+                return node.value;
+            if (index < left) {
+                node = node.left;
+            } else {
+                index -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Число элементов, меньших value (оно же порядковый номер value, если он есть в дереве).
+     *
+     * Сложность: O(log n) с порядковой статистикой, иначе O(n).
+     */
+    public int rank(T value) {
+        if (value == null) throw new NullPointerException();
+        if (!orderStatistics) {
+            int rank = 0;
+            for (T el: this) {
+                if (compare(el, value) >= 0)
+                    break;
+                rank++;
+            }
+            return rank;
+        }
+
+        int rank = 0;
+        long prefix = prefix(value);
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = compareToNode(value, prefix, node);
+            if (comparison <= 0) {
+                if (comparison == 0)
+                    return rank + count(node.left);
+                node = node.left;
+            } else {
+                rank += count(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Число элементов x, для которых from <= x < to.
+     *
+     * Сложность: O(log n) с порядковой статистикой, иначе O(n).
+     */
+    public int countInRange(T from, T to) {
+        if (compare(from, to) > 0)
+            throw new IllegalArgumentException("from > to: " + from + ", " + to);
+        return rank(to) - rank(from);
+    }
+
+    private Node<T> firstNode() {
+        Node<T> node = root;
+        if (node != null)
+            while (node.left != null)
+                node = node.left;
+        return node;
+    }
+
+    private Node<T> lastNode() {
+        Node<T> node = root;
+        if (node != null)
+            while (node.right != null)
+                node = node.right;
+        return node;
+    }
+
+    /**
+     * Наименьший узел, не меньший value (строго больший, если inclusive == false), или null.
+     *
+     * Сложность: O(log n).
+     */
+    private Node<T> ceilingNode(T value, boolean inclusive) {
+        Node<T> result = null;
+        long prefix = prefix(value);
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = compareToNode(value, prefix, node);
+            if (comparison == 0 && inclusive)
+                return node;
+            if (comparison < 0) {
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Наибольший узел, не больший value (строго меньший, если inclusive == false), или null.
+     *
+     * Сложность: O(log n).
+     */
+    private Node<T> floorNode(T value, boolean inclusive) {
+        Node<T> result = null;
+        long prefix = prefix(value);
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = compareToNode(value, prefix, node);
+            if (comparison == 0 && inclusive)
+                return node;
+            if (comparison > 0) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    private static <T> T value(Node<T> node) {
+        return node == null ? null : node.value;
+    }
+
+    private static <T> T valueOrThrow(Node<T> node) {
+        if (node == null)
+            throw new NoSuchElementException();
+        return node.value;
+    }
+
+    @Override
+    public T lower(T t) {
+        return value(floorNode(t, false));
+    }
+
+    @Override
+    public T floor(T t) {
+        return value(floorNode(t, true));
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return value(ceilingNode(t, true));
+    }
+
+    @Override
+    public T higher(T t) {
+        return value(ceilingNode(t, false));
+    }
+
+    @Override
+    public T first() {
+        return valueOrThrow(firstNode());
+    }
+
+    @Override
+    public T last() {
+        return valueOrThrow(lastNode());
+    }
+
+    @Override
+    public T pollFirst() {
+        T first = value(firstNode());
+        if (first != null)
+            remove(first);
+        return first;
+    }
+
+    @Override
+    public T pollLast() {
+        T last = value(lastNode());
+        if (last != null)
+            remove(last);
+        return last;
+    }
+
+    /**
+     * null, если элементы упорядочены естественным порядком (compareTo).
+     */
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return new SubSet(null, false, true, null, false, true, true);
+    }
+
+    /**
+     * Представления диапазонов не копируют элементы: они хранят только границы и работают с самим деревом, поэтому
+     * изменения видны в обе стороны. Создание представления стоит O(1), поиск первого элемента - O(log n).
+     */
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0)
+            throw new IllegalArgumentException("fromElement > toElement: " + fromElement + ", " + toElement);
+        return new SubSet(fromElement, fromInclusive, false, toElement, toInclusive, false, false);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        if (toElement == null) throw new NullPointerException();
+        return new SubSet(null, false, true, toElement, inclusive, false, false);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        if (fromElement == null) throw new NullPointerException();
+        return new SubSet(fromElement, inclusive, false, null, false, true, false);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Представление диапазона дерева. Границы lo и hi всегда заданы в естественном порядке, а descending только
+     * меняет направление обхода и смысл методов навигации, как в TreeMap.
+     */
+    private class SubSet extends AbstractSet<T> implements NavigableSet<T> {
+        private final T lo;
+        private final boolean loInclusive;
+        private final boolean fromStart;// нижней границы нет
+        private final T hi;
+        private final boolean hiInclusive;
+        private final boolean toEnd;// верхней границы нет
+        private final boolean descending;
+
+        SubSet(T lo, boolean loInclusive, boolean fromStart, T hi, boolean hiInclusive, boolean toEnd,
+               boolean descending) {
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.fromStart = fromStart;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.toEnd = toEnd;
+            this.descending = descending;
+        }
+
+        boolean tooLow(T value) {
+            if (fromStart)
+                return false;
+            int comparison = compare(value, lo);
+            return comparison < 0 || comparison == 0 && !loInclusive;
+        }
+
+        boolean tooHigh(T value) {
+            if (toEnd)
+                return false;
+            int comparison = compare(value, hi);
+            return comparison > 0 || comparison == 0 && !hiInclusive;
+        }
+
+        private boolean inRange(T value) {
+            return !tooLow(value) && !tooHigh(value);
+        }
+
+        /**
+         * Новая граница представления должна лежать внутри текущего диапазона; граница, совпадающая с исключенной
+         * границей текущего диапазона, допускается, только если она тоже исключена.
+         */
+        private boolean inRange(T value, boolean inclusive) {
+            if (inclusive)
+                return inRange(value);
+            return (fromStart || compare(value, lo) >= 0) && (toEnd || compare(value, hi) <= 0);
+        }
+
+        private T lowest() {
+            Node<T> node = fromStart ? firstNode() : ceilingNode(lo, loInclusive);
+            return node == null || tooHigh(node.value) ? null : node.value;
+        }
+
+        private T highest() {
+            Node<T> node = toEnd ? lastNode() : floorNode(hi, hiInclusive);
+            return node == null || tooLow(node.value) ? null : node.value;
+        }
+
+        private T ceilingInRange(T value, boolean inclusive) {
+            if (tooLow(value))
+                return lowest();
+            Node<T> node = ceilingNode(value, inclusive);
+            return node == null || tooHigh(node.value) ? null : node.value;
+        }
+
+        private T floorInRange(T value, boolean inclusive) {
+            if (tooHigh(value))
+                return highest();
+            Node<T> node = floorNode(value, inclusive);
+            return node == null || tooLow(node.value) ? null : node.value;
+        }
+
+        /**
+         * Сложность: O(log n) с порядковой статистикой, иначе O(k), где k - число элементов в диапазоне.
+         */
+        @Override
+        public int size() {
+            if (!orderStatistics) {
+                int count = 0;
+                for (Iterator<T> it = iterator(); it.hasNext(); it.next())
+                    count++;
+                return count;
+            }
+            int from = fromStart ? 0 : rank(lo) + (loInclusive || find(lo) == null ? 0 : 1);
+            int to = toEnd ? AVLTree.this.size() : rank(hi) + (hiInclusive && find(hi) != null ? 1 : 0);
+            return Math.max(0, to - from);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            @SuppressWarnings("unchecked")
+            T t = (T) o;
+            return inRange(t) && find(t) != null;
+        }
+
+        @Override
+        public boolean add(T t) {
+            if (!inRange(t))
+                throw new IllegalArgumentException("key out of range: " + t);
+            return AVLTree.this.add(t);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            @SuppressWarnings("unchecked")
+            T t = (T) o;
+            return inRange(t) && AVLTree.this.remove(t);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new AVLTreeIterator(this, descending);
+        }
+
+        @Override
+        public Iterator<T> descendingIterator() {
+            return new AVLTreeIterator(this, !descending);
+        }
+
+        @Override
+        public Comparator<? super T> comparator() {
+            return descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        @Override
+        public T lower(T t) {
+            return descending ? ceilingInRange(t, false) : floorInRange(t, false);
+        }
+
+        @Override
+        public T floor(T t) {
+            return descending ? ceilingInRange(t, true) : floorInRange(t, true);
+        }
+
+        @Override
+        public T ceiling(T t) {
+            return descending ? floorInRange(t, true) : ceilingInRange(t, true);
+        }
+
+        @Override
+        public T higher(T t) {
+            return descending ? floorInRange(t, false) : ceilingInRange(t, false);
+        }
+
+        @Override
+        public T first() {
+            T first = descending ? highest() : lowest();
+            if (first == null)
+                throw new NoSuchElementException();
+            return first;
+        }
+
+        @Override
+        public T last() {
+            T last = descending ? lowest() : highest();
+            if (last == null)
+                throw new NoSuchElementException();
+            return last;
+        }
+
+        @Override
+        public T pollFirst() {
+            T first = descending ? highest() : lowest();
+            if (first != null)
+                AVLTree.this.remove(first);
+            return first;
+        }
+
+        @Override
+        public T pollLast() {
+            T last = descending ? lowest() : highest();
+            if (last != null)
+                AVLTree.this.remove(last);
+            return last;
+        }
+
+        @Override
+        public NavigableSet<T> descendingSet() {
+            return new SubSet(lo, loInclusive, fromStart, hi, hiInclusive, toEnd, !descending);
+        }
+
+        /**
+         * Поддиапазон в естественном порядке; в обратном представлении границы меняются местами.
+         */
+        private NavigableSet<T> range(T from, boolean fromInclusive, boolean newFromStart,
+                                      T to, boolean toInclusive, boolean newToEnd) {
+            if (!newFromStart && !inRange(from, fromInclusive))
+                throw new IllegalArgumentException("fromElement out of range: " + from);
+            if (!newToEnd && !inRange(to, toInclusive))
+                throw new IllegalArgumentException("toElement out of range: " + to);
+            if (newFromStart)
+                return new SubSet(lo, loInclusive, fromStart, to, toInclusive, false, descending);
+            if (newToEnd)
+                return new SubSet(from, fromInclusive, false, hi, hiInclusive, toEnd, descending);
+            return new SubSet(from, fromInclusive, false, to, toInclusive, false, descending);
+        }
+
+        @Override
+        public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+            int comparison = compare(fromElement, toElement);
+            if (descending ? comparison < 0 : comparison > 0)
+                throw new IllegalArgumentException("fromElement > toElement: " + fromElement + ", " + toElement);
+            return descending
+                    ? range(toElement, toInclusive, false, fromElement, fromInclusive, false)
+                    : range(fromElement, fromInclusive, false, toElement, toInclusive, false);
+        }
+
+        @Override
+        public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+            if (toElement == null) throw new NullPointerException();
+            return descending
+                    ? range(toElement, inclusive, false, null, false, true)
+                    : range(null, false, true, toElement, inclusive, false);
+        }
+
+        @Override
+        public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+            if (fromElement == null) throw new NullPointerException();
+            return descending
+                    ? range(null, false, true, fromElement, inclusive, false)
+                    : range(fromElement, inclusive, false, null, false, true);
+        }
+
+        @Override
+        public SortedSet<T> subSet(T fromElement, T toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> headSet(T toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> tailSet(T fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    /**
+     * Использованные источники:
+     *      https://neerc.ifmo.ru/wiki/index.php?title=%D0%90%D0%92%D0%9B-%D0%B4%D0%B5%D1%80%D0%B5%D0%B2%D0%BE#.D0.91.D0.B0.D0.BB.D0.B0.D0.BD.D1.81.D0.B8.D1.80.D0.BE.D0.B2.D0.BA.D0.B0_2
+     *      https://ru.wikipedia.org/wiki/%D0%90%D0%92%D0%9B-%D0%B4%D0%B5%D1%80%D0%B5%D0%B2%D0%BE
+     *
+     * Добавление узла.
+     *
+     * Добавление происходит за один спуск без рекурсии: пройденные узлы запоминаются в массиве path. Если по пути
+     * встречается равный элемент, дерево не меняется и метод возвращает false, поэтому предварительный вызов contains
+     * не нужен. После добавления происходит обход вверх по пути поиска и корректировка
+     * значений балансов узлов. Если подъем идет из левого поддерева, то значение баланса уменьшается на 1, иначе -
+     * увеличивается. Если значение баланса какого либо узла стало равно 0, корректировка заканчивается. Если баланс
+     * стал равен -1 или 1, значит обход и корректировка продолжаются. При значении баланса 2 или -2 требуется
+     * балансировка.
+     *
+     * Сложность: O(log n).
+     */
+
+    @Override
+    public boolean add(T t) {
+        checkWritable();
+        if (t == null) throw new NullPointerException();
+        AVLTreeMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        Node<T>[] path = newPath();
+        int depth = 0;
+        int comparison = 0;
+        long prefix = prefix(t);
+        Node<T> node = root;
+        while (node != null) {
+            comparison = compareToNode(t, prefix, node);
+            if (comparison == 0) {
+                if (metrics != null)
+                    metrics.add(start, depth + 1);
+                return false;
+            }
+            path[depth++] = node;
+            node = comparison < 0 ? node.left : node.right;
+        }
+        insert(t, path, depth, comparison, metrics, start, depth);
+        return true;
+    }
+
+    /**
+     * Вставка t после спуска, который его не нашел: новый узел становится левым (comparison < 0) или правым сыном
+     * path[depth - 1], после чего идет подъем с балансировкой. Возвращает длину действительной части пути: без
+     * поворотов это path[0..depth], где path[depth] - новый узел, а после поворота на уровне i путь заканчивается
+     * новым корнем поддерева path[i].
+     */
+    private int insert(T t, Node<T>[] path, int depth, int comparison, AVLTreeMetrics metrics, long start,
+                       int comparisons) {
+        if (shared)
+            copyPath(path, depth);
+        Node<T> child = newNode(t);
+        path[depth] = child;
+        if (depth == 0)
+            root = child;
+        else if (comparison < 0)
+            path[depth - 1].left = child;
+        else
+            path[depth - 1].right = child;
+        if (size >= 0)
+            size++;
+        if (hashModCount == modCount) {
+            hash += t.hashCode();
+            hashModCount++;
+        }
+        if (lookupCache != null && comparator == null && lookupCache.modCount == modCount) {
+            lookupCache.update(t, true);
+            lookupCache.modCount++;
+        }
+        boolean heightKnown = heightModCount == modCount;
+        modCount++;
+        if (orderStatistics) {
+            for (int i = 0; i < depth; i++)
+                path[i].count++;
+        }
+
+        int valid = retraceInsert(path, depth, metrics);
+        root = path[0];
+        boolean grown = valid < 0;// подъем дошел до корня без остановки: высота дерева выросла на 1
+        if (heightKnown) {
+            if (grown)
+                height++;
+            heightModCount = modCount;
+        }
+        if (metrics != null)
+            metrics.add(start, comparisons);
+        return grown ? -valid - 1 : valid;
+    }
+
+    /**
+     * Подъем с корректировкой балансов после того, как поддерево path[depth] (новый узел или другое поддерево,
+     * уже подвешенное к path[depth - 1]) выросло на 1; path[0..depth) - путь к нему от корня. Если подъем идет из
+     * левого поддерева, баланс уменьшается на 1, иначе - увеличивается; на балансе 0 подъем заканчивается, на 2 или -2
+     * узел балансируется поворотом, после которого высота поддерева прежняя.
+     *
+     * Общий для AVLTree, AVLTreeMap и BlockedAVLTree. Повернутое поддерево подвешивается к path[i - 1] и записывается
+     * в path[i], так что после вызова path[0] - корень дерева, который вызывающий записывает в свое поле root.
+     * Возвращает длину действительной части пути (path[0..depth] без поворота, path[0..i] после поворота на уровне i);
+     * если подъем дошел до корня и высота дерева выросла, возвращается -(длина) - 1, как у Arrays.binarySearch.
+     */
+    static <T> int retraceInsert(Node<T>[] path, int depth, AVLTreeMetrics metrics) {
+        Node<T> child = path[depth];
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<T> begin = path[i];
+            if (begin.left == child)
+                begin.balance--;
+            else
+                begin.balance++;
+            if (begin.balance == 0)
+                return depth + 1;
+            if (Math.abs(begin.balance) == 2) {
+                if (metrics != null)
+                    metrics.rotation(begin);
+                link(path, i, balance(begin));
+                return i + 1;
+            }
+            child = begin;
+        }
+        return -(depth + 1) - 1;
+    }
+
+    /**
+     * Подъем после того, как поддерево path[depth - 1] со стороны fromLeft (сам удаленный узел или другое поддерево,
+     * уже замененное) стало ниже на 1. На балансе -1 или 1 подъем заканчивается, на 2 или -2 узел балансируется, и
+     * подъем продолжается, если высота повернутого поддерева уменьшилась. copy - копировать перед поворотом узлы вне
+     * пути, общие со снимками (см. copyForRotation).
+     *
+     * Как и retraceInsert, записывает повернутые поддеревья в path, так что path[0] после вызова - корень дерева
+     * (при depth > 0), и возвращает длину действительной части пути: depth или i + 1 для самого верхнего поворота
+     * на уровне i; если высота всего дерева уменьшилась - -(длина) - 1.
+     */
+    static <T> int retraceDelete(Node<T>[] path, int depth, boolean fromLeft, boolean copy, AVLTreeMetrics metrics) {
+        int valid = depth;
+        Node<T> child = null;
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<T> begin = path[i];
+            if (i < depth - 1)
+                fromLeft = begin.left == child;
+            begin.balance += fromLeft ? 1 : -1;
+            child = begin;
+            if (Math.abs(begin.balance) == 2) {
+                if (copy)
+                    copyForRotation(begin);
+                if (metrics != null)
+                    metrics.rotation(begin);
+                child = balance(begin);
+                link(path, i, child);
+                valid = i + 1;
+            }
+            if (child.balance != 0)
+                return valid;
+        }
+        return -valid - 1;
+    }
+
+    /**
+     * Замена поддерева с корнем path[i] на node в его родителе path[i - 1] и в самом пути; корень (i == 0) вызывающий
+     * берет из path[0].
+     */
+    private static <T> void link(Node<T>[] path, int i, Node<T> node) {
+        if (i > 0) {
+            if (path[i - 1].left == path[i])
+                path[i - 1].left = node;
+            else
+                path[i - 1].right = node;
+        }
+        path[i] = node;
+    }
+
+    /**
+     * Удаление узла.
+     *
+     * Удаление также происходит за один спуск с запоминанием пути: если элемент не найден, дерево не меняется и метод
+     * возвращает false. Если данное значение является листом, мы просто удаляем его.
+     * Если у узла только одно поддерево, мы просто меняем узел на его поддерево. Иначе нужно найти наименьший узел
+     * в правом поддереве (спускаясь только влево, без сравнений), перенести его значение в удаляемый узел, а сам
+     * наименьший узел вырезать.
+     * Далее идет обход вверх по дереву и корректировка балансов. Если поднимаемся из левого поддерева, значение баланса
+     * увеличивается на 1, иначе - уменьшается. Если в какой то вершине значение баланса стало -1 или 1 - корректировка
+     * останавливается. При значении баланса -2 или 2 происходит балансировка.
+     *
+     */
+
+    @Override
+    public boolean remove(Object o) {
+        checkWritable();
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        AVLTreeMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        Node<T>[] path = newPath();
+        int depth = 0;
+        long prefix = prefix(t);
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = compareToNode(t, prefix, node);
+            if (comparison == 0)
+                break;
+            path[depth++] = node;
+            node = comparison < 0 ? node.left : node.right;
+        }
+        if (node == null) {
+            if (metrics != null)
+                metrics.remove(start, depth);
+            return false;
+        }
+        delete(path, depth, node, metrics, start, depth + 1);
+        return true;
+    }
+
+    /**
+     * Удаление найденного узла node, path[0..depth) - путь к нему от корня, и подъем с балансировкой. Возвращает
+     * длину действительной части пути: без поворотов это весь путь до родителя вырезанного узла, а после поворота
+     * на уровне i путь заканчивается новым корнем поддерева path[i].
+     */
+    private int delete(Node<T>[] path, int depth, Node<T> node, AVLTreeMetrics metrics, long start,
+                       int comparisons) {
+        T removed = node.value;
+        int target = -1;
+        if (node.left != null && node.right != null) {
+            target = depth;
+            path[depth++] = node;
+            node = node.right;
+            while (node.left != null) {
+                path[depth++] = node;
+                node = node.left;
+            }
+        }
+        if (shared)
+            copyPath(path, depth);
+        if (target >= 0) {
+            path[target].value = node.value;
+            if (sortPrefix != null)
+                ((PrefixNode<T>) path[target]).prefix = ((PrefixNode<T>) node).prefix;
+        }
+
+        Node<T> child = node.left != null ? node.left : node.right;
+        boolean fromLeft = depth > 0 && path[depth - 1].left == node;
+        if (depth == 0)
+            root = child;
+        else if (fromLeft)
+            path[depth - 1].left = child;
+        else
+            path[depth - 1].right = child;
+        if (size >= 0)
+            size--;
+        if (hashModCount == modCount) {
+            hash -= removed.hashCode();
+            hashModCount++;
+        }
+        if (lookupCache != null && comparator == null && lookupCache.modCount == modCount) {
+            lookupCache.update(removed, false);
+            lookupCache.modCount++;
+        }
+        boolean heightKnown = heightModCount == modCount;
+        modCount++;
+        if (orderStatistics) {
+            for (int i = 0; i < depth; i++)
+                path[i].count--;
+        }
+
+        int valid = retraceDelete(path, depth, fromLeft, shared, metrics);
+        if (depth > 0)
+            root = path[0];
+        boolean shrunk = valid < 0;// подъем дошел до корня без остановки: высота дерева уменьшилась на 1
+        if (heightKnown) {
+            if (shrunk)
+                height--;
+            heightModCount = modCount;
+        }
+        if (metrics != null)
+            metrics.remove(start, comparisons);
+        return shrunk ? -valid - 1 : valid;
+    }
+
+    /**
+     * Новый палец для потока близких ключей (см. Finger). Пальцев у дерева может быть несколько, например по одному
+     * на каждый поток событий.
+     */
+    public Finger finger() {
+        return new Finger();
+    }
+
+    /**
+     * Палец: путь от корня к узлу последней операции, с которого начинается поиск следующего ключа.
+     *
+     * Вместо спуска от корня поиск поднимается по сохраненному пути до ближайшего поддерева, в границах которого
+     * лежит ключ, и спускается уже от него. Границы поддерева path[i] - ближайшие предки, в которых путь повернул
+     * направо (нижняя граница) и налево (верхняя); более далекие предки с той же стороны дают более слабые границы,
+     * поэтому при подъеме ключ сравнивается только с узлами поворотов и только пока не выполнены обе границы.
+     * Для ключа на расстоянии d от предыдущего (d - число элементов между ними) это амортизированно O(log d)
+     * сравнений вместо O(log n), так что упорядоченные и почти упорядоченные потоки add, remove и contains не
+     * платят за спуск от корня.
+     *
+     * У add есть быстрый путь добавления в конец: если путь пальца лежит на правой границе дерева, ключ сравнивается
+     * только с максимумом и, если он больше, сразу становится его правым сыном. Повороты после вставки те же, что
+     * у add (при добавлении по возрастанию - в среднем O(1) малых левых поворотов на вставку), и поворот обрезает
+     * путь пальца до нового корня повернутого поддерева.
+     *
+     * Изменение дерева в обход пальца (другим пальцем, add, clear и т.п.) обнаруживается по modCount, и следующая
+     * операция пальца начинается от корня. Результаты, метрики и поддержка кэша contains те же, что у операций
+     * дерева, но contains пальца кэш не использует. Палец, как и итератор, не потокобезопасен.
+     */
+    public class Finger {
+        private final Node<T>[] path = newPath();
+        private int depth = 0;// path[0..depth) - путь от корня к узлу последней операции
+        private int spine = 0;// path[0..spine) лежит на правой границе дерева
+        private int expectedModCount = modCount;
+        private int lastComparison;// результат последнего сравнения при спуске
+        private int comparisons;// число сравнений текущей операции, для метрик
+
+        Finger() {
+        }
+
+        private void sync() {
+            if (expectedModCount != modCount) {
+                depth = 0;
+                spine = 0;
+                expectedModCount = modCount;
+            }
+            comparisons = 0;
+        }
+
+        private void truncate(int length) {
+            depth = length;
+            spine = Math.min(spine, length);
+        }
+
+        private void push(Node<T> node) {
+            if (spine == depth && (depth == 0 || path[depth - 1].right == node))
+                spine++;
+            path[depth++] = node;
+        }
+
+        /**
+         * Подъем по пути до поддерева, в границах которого лежит value. Возвращает индекс его корня, до которого
+         * обрезается путь, или -1, если value равен ключу одного из узлов пути (путь заканчивается на этом узле).
+         */
+        private int climb(T value, long prefix) {
+            if (depth == 0)
+                return 0;
+            int i = depth - 1;
+            boolean lowOk = false;// value больше нижней границы поддерева path[i]
+            boolean highOk = false;// value меньше верхней границы поддерева path[i]
+            for (int j = i - 1; j >= 0 && !(lowOk && highOk); j--) {
+                boolean right = path[j].right == path[j + 1];
+                if (right ? lowOk : highOk)
+                    continue;
+                int comparison = compareToNode(value, prefix, path[j]);
+                comparisons++;
+                if (comparison == 0) {
+                    truncate(j + 1);
+                    return -1;
+                }
+                if (right == comparison > 0) {
+                    if (right)
+                        lowOk = true;
+                    else
+                        highOk = true;
+                } else {
+                    // value лежит по другую сторону от path[j], поэтому вторая граница поддерева path[j] выполнена
+                    i = j;
+                    lowOk = !right;
+                    highOk = right;
+                }
+            }
+            truncate(i);
+            return i;
+        }
+
+        /**
+         * Поиск value: подъем, затем спуск. Путь заканчивается на найденном узле или на последнем пройденном узле,
+         * результат последнего сравнения при спуске - в lastComparison.
+         */
+        private Node<T> find(T value, long prefix) {
+            if (climb(value, prefix) < 0)
+                return path[depth - 1];
+            lastComparison = 0;
+            Node<T> node = depth == 0 ? root : path[depth];
+            while (node != null) {
+                lastComparison = compareToNode(value, prefix, node);
+                comparisons++;
+                push(node);
+                if (lastComparison == 0)
+                    return node;
+                node = lastComparison < 0 ? node.left : node.right;
+            }
+            return null;
+        }
+
+        public boolean contains(Object o) {
+            @SuppressWarnings("unchecked")
+            T t = (T) o;
+            AVLTreeMetrics metrics = AVLTree.this.metrics;
+            long start = metrics != null ? System.nanoTime() : 0;
+            sync();
+            Node<T> node = find(t, prefix(t));
+            if (metrics != null)
+                metrics.contains(start, comparisons);
+            return node != null;
+        }
+
+        public boolean add(T t) {
+            checkWritable();
+            if (t == null) throw new NullPointerException();
+            AVLTreeMetrics metrics = AVLTree.this.metrics;
+            long start = metrics != null ? System.nanoTime() : 0;
+            long prefix = prefix(t);
+            sync();
+            boolean found;
+            if (depth > 0 && spine == depth) {
+                // быстрый путь: спуск без сравнений к максимуму и одно сравнение с ним
+                Node<T> last = path[depth - 1];
+                while (last.right != null)
+                    push(last = last.right);
+                lastComparison = compareToNode(t, prefix, last);
+                comparisons++;
+                found = lastComparison == 0 || lastComparison < 0 && find(t, prefix) != null;
+            } else {
+                found = find(t, prefix) != null;
+            }
+            if (found) {
+                if (metrics != null)
+                    metrics.add(start, comparisons);
+                return false;
+            }
+            int valid = insert(t, path, depth, lastComparison, metrics, start, comparisons);
+            spine = spine == depth && (depth == 0 || lastComparison > 0) ? valid : Math.min(spine, valid);
+            depth = valid;
+            expectedModCount = modCount;
+            return true;
+        }
+
+        public boolean remove(Object o) {
+            checkWritable();
+            @SuppressWarnings("unchecked")
+            T t = (T) o;
+            AVLTreeMetrics metrics = AVLTree.this.metrics;
+            long start = metrics != null ? System.nanoTime() : 0;
+            sync();
+            Node<T> node = find(t, prefix(t));
+            if (node == null) {
+                if (metrics != null)
+                    metrics.remove(start, comparisons);
+                return false;
+            }
+            truncate(depth - 1);
+            truncate(delete(path, depth, node, metrics, start, comparisons));
+            expectedModCount = modCount;
+            return true;
+        }
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object el: c) {
+            if (!this.contains(el)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * В пустое дерево коллекция загружается целиком, как в fromSorted; неупорядоченная коллекция предварительно
+     * сортируется параллельно. Если коллекция сравнима по размеру с деревом, элементы дерева и коллекции сливаются
+     * как две упорядоченные последовательности, и дерево строится заново (см. merge). Иначе элементы добавляются
+     * по одному.
+     *
+     * Сложность: O(n + m) для упорядоченной коллекции (AVLTree или SortedSet с естественным порядком),
+     * O(n + m log m) для неупорядоченной, O(m log(n + m)) при добавлении небольшой коллекции.
+     */
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        checkWritable();
+        if (root == null) {
+            if (c.isEmpty())
+                return false;
+            Object[] values = sortedArray(c);
+            build(values, values.length);
+            return true;
+        }
+        if (mergeIsCheaper(c))
+            return merge(sortedArray(c), UNION);
+
+        boolean changed = false;
+        for (T el: c) {
+            changed |= this.add(el);
+        }
+        return changed;
+    }
+
+    /**
+     * Построение дерева из коллекции, упорядоченной по возрастанию. Равные соседние элементы считаются одним.
+     *
+     * Дерево строится снизу вверх за O(n) без поворотов: средний элемент становится корнем, левая и правая половины -
+     * поддеревьями. Размеры поддеревьев отличаются не более чем на 1, поэтому баланс каждого узла известен заранее
+     * и записывается напрямую.
+     *
+     * @throws IllegalArgumentException если элементы не упорядочены по возрастанию
+     */
+    public static <T extends Comparable<T>> AVLTree<T> fromSorted(Collection<? extends T> sorted) {
+        AVLTree<T> tree = new AVLTree<>();
+        Comparable<?>[] values = sorted.toArray(new Comparable<?>[0]);
+        tree.build(values, distinct(values, null));
+        return tree;
+    }
+
+    /**
+     * Построение дерева из первых count элементов итератора, строго возрастающих в порядке comparator (null -
+     * естественный порядок), без промежуточного массива. Поддеревья строятся в симметричном порядке: сначала левое,
+     * затем узел, затем правое, поэтому каждый элемент читается ровно один раз и сразу становится узлом. Форма и
+     * балансы - те же, что у fromSorted(Collection). Используется для загрузки из потока (AVLTreeFile), когда все
+     * элементы сразу в памяти не нужны.
+     *
+     * Сложность: O(n), дополнительная память - O(log n).
+     *
+     * @throws IllegalArgumentException если элементы не возрастают строго
+     * @throws NoSuchElementException если в итераторе меньше count элементов
+     */
+    public static <T extends Comparable<T>> AVLTree<T> fromSorted(Iterator<? extends T> sorted, int count,
+                                                                  Comparator<? super T> comparator) {
+        if (count < 0)
+            throw new IllegalArgumentException("Illegal count: " + count);
+        AVLTree<T> tree = new AVLTree<T>(comparator);
+        tree.root = tree.build(sorted, count, new Object[1]);
+        tree.size = count;
+        tree.modCount++;
+        return tree;
+    }
+
+    /**
+     * Поддерево из count очередных элементов; last[0] - последний прочитанный элемент для проверки порядка.
+     */
+    private Node<T> build(Iterator<? extends T> sorted, int count, Object[] last) {
+        if (count == 0)
+            return null;
+        int leftCount = count / 2;
+        Node<T> left = build(sorted, leftCount, last);
+        T value = sorted.next();
+        if (value == null)
+            throw new NullPointerException();
+        if (last[0] != null && compare(last[0], value) >= 0)
+            throw new IllegalArgumentException("Elements are not sorted: " + last[0] + ", " + value);
+        last[0] = value;
+        Node<T> node = newNode(value);
+        node.left = left;
+        node.right = build(sorted, count - leftCount - 1, last);
+        node.balance = perfectHeight(count - leftCount - 1) - perfectHeight(leftCount);
+        node.count = count;
+        return node;
+    }
+
+    /**
+     * Коллекция уже упорядочена в порядке этого дерева.
+     */
+    private boolean isSortedLikeThis(Collection<?> c) {
+        return c instanceof SortedSet && Objects.equals(((SortedSet<?>) c).comparator(), comparator);
+    }
+
+    /**
+     * Параллельная сортировка массива элементов.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void sort(Comparable<?>[] values, Comparator<?> comparator) {
+        if (comparator == null)
+            Arrays.parallelSort((Comparable[]) values);
+        else
+            Arrays.parallelSort(values, (Comparator) comparator);
+    }
+
+    /**
+     * Удаление повторов из упорядоченного массива; возвращает число оставшихся элементов.
+     */
+    private static int distinct(Comparable<?>[] values, Comparator<?> comparator) {
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null)
+                throw new NullPointerException();
+            if (count > 0) {
+                int comparison = compare(comparator, values[count - 1], values[i]);
+                if (comparison > 0)
+                    throw new IllegalArgumentException("Elements are not sorted: " + values[count - 1] + ", " + values[i]);
+                if (comparison == 0)
+                    continue;
+            }
+            values[count++] = values[i];
         }
+        return count;
     }
 
+    private void build(Object[] values, int count) {
+        root = build(values, 0, count);
+        size = count;
+        shared = false;
+        modCount++;
+    }
 
-    @Override
-    public int size() {
-        return size;
+    @SuppressWarnings("unchecked")
+    private Node<T> build(Object[] values, int from, int to) {
+        if (from >= to)
+            return null;
+        int middle = (from + to) >>> 1;
+        Node<T> node = newNode((T) values[middle]);
+        node.left = build(values, from, middle);
+        node.right = build(values, middle + 1, to);
+        node.balance = perfectHeight(to - middle - 1) - perfectHeight(middle - from);
+        node.count = to - from;
+        return node;
     }
 
-    @Override
-    public boolean isEmpty() {
-        return root == null;
+    /**
+     * Высота дерева из n узлов, построенного методом build.
+     */
+    private static int perfectHeight(int n) {
+        return 32 - Integer.numberOfLeadingZeros(n);
     }
 
+    /**
+     * Для множества с быстрым contains (например, HashSet) элементы дерева просто фильтруются, для остальных
+     * коллекций используется слияние. Оставшиеся элементы уже упорядочены, и дерево строится из них заново
+     * за линейное время вместо поэлементного удаления. Коллекция с элементами, которые нельзя сравнить с элементами
+     * дерева (null или объекты другого типа), тоже обрабатывается фильтрацией.
+     *
+     * Сложность: O(n + m) для упорядоченной коллекции и HashSet, O(n + m log m) для остальных.
+     */
     @Override
-    public boolean contains(Object o) {
-        @SuppressWarnings("unchecked")
-        T t = (T) o;
-        Node<T> closest = find(t);
-        return closest != null && t.compareTo(closest.value) == 0;
+    public boolean retainAll(Collection<?> c) {
+        checkWritable();
+        if (root == null)
+            return false;
+        if (c instanceof Set && !isSortedLikeThis(c) || !comparable(c))
+            return filter(c, true);
+        return merge(sortedArray(c), INTERSECTION);
     }
 
+    /**
+     * Если коллекция сравнима по размеру с деревом, используется слияние, иначе элементы удаляются по одному.
+     * Коллекция с элементами, которые нельзя сравнить с элементами дерева, обрабатывается фильтрацией, как в
+     * retainAll.
+     *
+     * Сложность: O(n + m) для упорядоченной коллекции, O(n + m log m) для неупорядоченной,
+     * O(m log n) при удалении небольшой коллекции.
+     */
     @Override
-    public Iterator<T> iterator() {
-        return new AVLTreeIterator();
+    public boolean removeAll(Collection<?> c) {
+        checkWritable();
+        if (root == null)
+            return false;
+        if (!comparable(c))
+            return filter(c, false);
+        if (mergeIsCheaper(c))
+            return merge(sortedArray(c), DIFFERENCE);
+
+        boolean changed = false;
+        for (Object el: c) {
+            changed |= this.remove(el);
+        }
+        return changed;
     }
 
-    public class AVLTreeIterator implements Iterator<T> {
-        Deque<Node<T>> stack = new ArrayDeque<>();
-        Node<T> current;
-        Node<T> prev;
+    private static final int UNION = 0;
+    private static final int INTERSECTION = 1;
+    private static final int DIFFERENCE = 2;
 
-        AVLTreeIterator() {
-            pushToLeft(root);
+    /**
+     * Слияние упорядоченной последовательности элементов дерева с упорядоченным массивом без повторов other
+     * и построение дерева из результата (см. fromSorted). Возвращает true, если множество изменилось.
+     *
+     * Сложность: O(n + m).
+     */
+    @SuppressWarnings("unchecked")
+    private boolean merge(Object[] other, int operation) {
+        int size = size();
+        Object[] result = new Object[operation == UNION ? size + other.length : size];
+        int count = 0;
+        int j = 0;
+        for (T el: this) {
+            while (j < other.length && compare(el, other[j]) > 0) {
+                if (operation == UNION)
+                    result[count++] = other[j];
+                j++;
+            }
+            boolean found = j < other.length && compare(el, other[j]) == 0;
+            if (found)
+                j++;
+            if (found ? operation != DIFFERENCE : operation != INTERSECTION)
+                result[count++] = el;
         }
+        if (operation == UNION) {
+            while (j < other.length)
+                result[count++] = other[j++];
+        }
+
+        if (count == size)
+            return false;
+        build(result, count);
+        return true;
+    }
+
+    /**
+     * Слияние выгоднее поэлементных операций, если m log n не меньше n.
+     */
+    private boolean mergeIsCheaper(Collection<?> c) {
+        return (long) c.size() * height() >= size();
+    }
 
-        private void pushToLeft(Node<T> node) {
-            if (node != null) {
-                stack.push(node);
-                pushToLeft(node.left);
+    /**
+     * Можно ли сравнить каждый элемент коллекции с элементами дерева: retainAll и removeAll принимают коллекции любых
+     * объектов, а слияние и поэлементное удаление требуют сравнения, которое бросает ClassCastException или
+     * NullPointerException. Вызывается для непустого дерева.
+     */
+    private boolean comparable(Collection<?> c) {
+        T sample = root.value;
+        for (Object el: c) {
+            if (!(el instanceof Comparable))
+                return false;
+            try {
+                compare(el, sample);
+            } catch (ClassCastException e) {
+                return false;
             }
         }
+        return true;
+    }
 
-        @Override
-        public boolean hasNext() {
-            return !stack.isEmpty();
+    /**
+     * Оставляет элементы дерева, для которых c.contains возвращает retain, и строит дерево из них заново.
+     */
+    private boolean filter(Collection<?> c, boolean retain) {
+        int size = size();
+        Object[] result = new Object[size];
+        int count = 0;
+        for (T el: this) {
+            if (c.contains(el) == retain)
+                result[count++] = el;
         }
+        if (count == size)
+            return false;
+        build(result, count);
+        return true;
+    }
 
-        @Override
-        public T next() {
-            if (!hasNext())
-                throw new NoSuchElementException();
-            prev = current;
-            current = stack.pop();
-            pushToLeft(current.right);
-            return current.value;
-        }
+    /**
+     * Элементы коллекции в виде упорядоченного массива без повторов.
+     */
+    private Object[] sortedArray(Collection<?> c) {
+        Comparable<?>[] values = c.toArray(new Comparable<?>[0]);
+        if (!isSortedLikeThis(c))
+            sort(values, comparator);
+        int count = distinct(values, comparator);
+        return count == values.length ? values : Arrays.copyOf(values, count);
     }
 
-    @Override
-    public Object[] toArray() {
-        Object[] result = new Object[size];
-        Iterator<T> it = this.iterator();
-        for (int i = 0; i < size; i++) {
-            result[i] = it.next();
+    /**
+     * Поддерево вместе с его высотой. Алгоритмы join и split передают высоты явно, чтобы не пересчитывать их.
+     */
+    private static final class Subtree<T> {
+        final Node<T> root;
+        final int height;
+
+        Subtree(Node<T> root, int height) {
+            this.root = root;
+            this.height = height;
         }
-        return result;
     }
 
-    @Override
-    public <T1> T1[] toArray(T1[] a) {
-        if (a == null) throw new NullPointerException();
-        if (a.length < size) {
-            return (T1[]) this.toArray();
-        } else {
-            Iterator<T> it = this.iterator();
-            for (int i = 0; i < size; i++) {
-                a[i] = (T1) it.next();
-            }
+    /**
+     * Результат split: элементы меньше ключа, узел с ключом (или null) и элементы больше ключа.
+     */
+    private static final class Split<T> {
+        final Subtree<T> left;
+        final Node<T> found;
+        final Subtree<T> right;
+
+        Split(Subtree<T> left, Node<T> found, Subtree<T> right) {
+            this.left = left;
+            this.found = found;
+            this.right = right;
         }
+    }
 
-        return a;
+    private static int leftHeight(Node<?> node, int height) {
+        return node.balance <= 0 ? height - 1 : height - 2;
     }
 
-    public int height() {
-        return height(root);
+    private static int rightHeight(Node<?> node, int height) {
+        return node.balance >= 0 ? height - 1 : height - 2;
     }
 
-    private int height(Node<T> node) {
-        if (node == null) return 0;
-        return 1 + Math.max(height(node.left), height(node.right));
+    private Subtree<T> detach() {
+        checkWritable();
+        if (shared) {
+            Object[] values = toArray();
+            build(values, values.length);
+        }
+        Subtree<T> subtree = new Subtree<>(root, height());
+        clear();
+        return subtree;
     }
 
     /**
-     * Использованные источники:
-     *      https://neerc.ifmo.ru/wiki/index.php?title=%D0%90%D0%92%D0%9B-%D0%B4%D0%B5%D1%80%D0%B5%D0%B2%D0%BE#.D0.91.D0.B0.D0.BB.D0.B0.D0.BD.D1.81.D0.B8.D1.80.D0.BE.D0.B2.D0.BA.D0.B0_2
-     *      https://ru.wikipedia.org/wiki/%D0%90%D0%92%D0%9B-%D0%B4%D0%B5%D1%80%D0%B5%D0%B2%D0%BE
+     * Дерево с тем же порядком и префиксами, что и это, из готового поддерева.
+     */
+    private AVLTree<T> of(Subtree<T> subtree, int size, boolean orderStatistics) {
+        AVLTree<T> tree = new AVLTree<>(comparator, sortPrefix, orderStatistics, false);
+        tree.root = subtree.root;
+        tree.size = orderStatistics ? count(subtree.root) : size;
+        tree.height = subtree.height;
+        tree.hashModCount = -1;
+        return tree;
+    }
+
+    /**
+     * Объединение деревьев left и right через ключ key: все элементы left должны быть меньше key, а все элементы
+     * right - больше. Узлы обоих деревьев переиспользуются, поэтому после вызова они становятся пустыми.
      *
-     * Добавление узла.
+     * Если высоты отличаются не более чем на 1, key просто становится корнем. Иначе спускаемся по правой ветви более
+     * высокого левого дерева (или по левой ветви правого) до поддерева c, высота которого отличается от высоты
+     * другого дерева не более чем на 1, и заменяем c узлом key с детьми c и другим деревом. Высота поддерева на этом
+     * месте выросла на 1, поэтому дальше идет такой же подъем с корректировкой балансов и поворотами, как при
+     * добавлении.
      *
-     * Добавление происходит рекурсивно. После добавления происходит обход вверх по пути поиска и корректировка
-     * значений балансов узлов. Если подъем идет из левого поддерева, то значение баланса уменьшается на 1, иначе -
-     * увеличивается. Если значение баланса какого либо узла стало равно 0, корректировка заканчивается. Если баланс
-     * стал равен -1 или 1, значит обход и корректировка продолжаются. При значении баланса 2 или -2 требуется
-     * балансировка.
+     * Источник: G. Blelloch, D. Ferizovic, Y. Sun "Just Join for Parallel Ordered Sets", SPAA 2016.
      *
      * Сложность: O(log n).
+     *
+     * @throws IllegalArgumentException если элементы деревьев не разделены ключом, деревья упорядочены по-разному
+     *                                  или left и right - одно и то же дерево
+     * @throws UnsupportedOperationException если одно из деревьев - снимок
      */
+    public static <T extends Comparable<T>> AVLTree<T> join(AVLTree<T> left, T key, AVLTree<T> right) {
+        if (key == null) throw new NullPointerException();
+        checkOperands(left, right);
+        if (left.root != null && left.compare(last(left.root).value, key) >= 0 ||
+                right.root != null && left.compare(first(right.root).value, key) <= 0)
+            throw new IllegalArgumentException("Trees are not separated by " + key);
+        int size = left.size < 0 || right.size < 0 ? -1 : left.size + right.size + 1;
+        boolean orderStatistics = left.orderStatistics && right.orderStatistics;
+        return left.of(join(left.detach(), left.newNode(key), right.detach()), size, orderStatistics);
+    }
 
-    @Override
-    public boolean add(T t) {
-        if (contains(t))
-            return false;
-        endAdding = false;
-        root = addRecursive(root, t);
-        size++;
-        return true;
+    /**
+     * Операции на основе join переносят узлы из одного дерева в другое, поэтому порядок (и префиксы) деревьев
+     * должны совпадать. Все проверки идут до того, как узлы первого аргумента будут отсоединены: иначе исключение на
+     * втором аргументе оставило бы первый пустым, а то же дерево во втором аргументе было бы уже очищено.
+     */
+    private static void checkOperands(AVLTree<?> a, AVLTree<?> b) {
+        if (!Objects.equals(a.comparator, b.comparator) || a.sortPrefix != b.sortPrefix)
+            throw new IllegalArgumentException("Trees are ordered differently");
+        if (a == b)
+            throw new IllegalArgumentException("The same tree is passed as both operands");
+        a.checkWritable();
+        b.checkWritable();
     }
 
-    private Node<T> addRecursive(Node<T> begin, T value) {
-        if (begin == null)
-            return new Node<>(value);
+    private static <T> Node<T> first(Node<T> node) {
+        while (node.left != null)
+            node = node.left;
+        return node;
+    }
 
-        int comparison = value.compareTo(begin.value);
-        if (comparison < 0) {
-            begin.left = addRecursive(begin.left, value);
-            if (!endAdding) {
-                begin.balance--;
-                if (Math.abs(begin.balance) == 2)
-                    begin = balance(begin);
-                if (begin.balance == 0)
-                    endAdding = true;
-            }
-        } else if (comparison > 0) {
-            begin.right = addRecursive(begin.right, value);
-            if (!endAdding) {
-                begin.balance++;
-                if (Math.abs(begin.balance) == 2)
-                    begin = balance(begin);
-                if (begin.balance == 0)
-                    endAdding = true;
+    private static <T> Node<T> last(Node<T> node) {
+        while (node.right != null)
+            node = node.right;
+        return node;
+    }
+
+    private static <T> Subtree<T> join(Subtree<T> left, Node<T> key, Subtree<T> right) {
+        if (left.height > right.height + 1)
+            return joinRight(left, key, right);
+        if (right.height > left.height + 1)
+            return joinLeft(left, key, right);
+        key.left = left.root;
+        key.right = right.root;
+        key.balance = right.height - left.height;
+        updateCount(key);
+        return new Subtree<>(key, Math.max(left.height, right.height) + 1);
+    }
+
+    /**
+     * join для случая, когда левое дерево выше правого более чем на 1.
+     */
+    private static <T> Subtree<T> joinRight(Subtree<T> left, Node<T> key, Subtree<T> right) {
+        Node<T>[] path = newPath();
+        int depth = 0;
+        Node<T> node = left.root;
+        int height = left.height;
+        while (height > right.height + 1) {
+            path[depth++] = node;
+            height = rightHeight(node, height);
+            node = node.right;
+        }
+        key.left = node;
+        key.right = right.root;
+        key.balance = right.height - height;
+        updateCount(key);
+        path[depth - 1].right = key;
+        for (int i = depth - 1; i >= 0; i--)
+            updateCount(path[i]);
+
+        Node<T> top = left.root;
+        boolean grew = true;
+        for (int i = depth - 1; i >= 0 && grew; i--) {
+            Node<T> begin = path[i];
+            begin.balance++;
+            if (begin.balance == 2) {
+                Node<T> rotated = balance(begin);
+                if (i == 0)
+                    top = rotated;
+                else
+                    path[i - 1].right = rotated;
+                grew = rotated.balance != 0;
+            } else {
+                grew = begin.balance != 0;
             }
         }
+        return new Subtree<>(top, grew ? left.height + 1 : left.height);
+    }
+
+    /**
+     * join для случая, когда правое дерево выше левого более чем на 1.
+     */
+    private static <T> Subtree<T> joinLeft(Subtree<T> left, Node<T> key, Subtree<T> right) {
+        Node<T>[] path = newPath();
+        int depth = 0;
+        Node<T> node = right.root;
+        int height = right.height;
+        while (height > left.height + 1) {
+            path[depth++] = node;
+            height = leftHeight(node, height);
+            node = node.left;
+        }
+        key.left = left.root;
+        key.right = node;
+        key.balance = height - left.height;
+        updateCount(key);
+        path[depth - 1].left = key;
+        for (int i = depth - 1; i >= 0; i--)
+            updateCount(path[i]);
 
-        return begin;
+        Node<T> top = right.root;
+        boolean grew = true;
+        for (int i = depth - 1; i >= 0 && grew; i--) {
+            Node<T> begin = path[i];
+            begin.balance--;
+            if (begin.balance == -2) {
+                Node<T> rotated = balance(begin);
+                if (i == 0)
+                    top = rotated;
+                else
+                    path[i - 1].left = rotated;
+                grew = rotated.balance != 0;
+            } else {
+                grew = begin.balance != 0;
+            }
+        }
+        return new Subtree<>(top, grew ? right.height + 1 : right.height);
     }
 
-    private boolean endAdding;
+    /**
+     * Объединение двух деревьев без разделяющего ключа: им становится наибольший элемент левого дерева.
+     */
+    private static <T> Subtree<T> join2(Subtree<T> left, Subtree<T> right) {
+        if (left.root == null)
+            return right;
+        if (right.root == null)
+            return left;
+
+        Node<T>[] path = newPath();
+        int depth = 0;
+        Node<T> node = left.root;
+        while (node.right != null) {
+            path[depth++] = node;
+            node = node.right;
+        }
+        Node<T> top = left.root;
+        boolean shrunk = true;
+        if (depth == 0) {
+            top = node.left;
+        } else {
+            path[depth - 1].right = node.left;
+            for (int i = depth - 1; i >= 0; i--)
+                updateCount(path[i]);
+            for (int i = depth - 1; i >= 0 && shrunk; i--) {
+                Node<T> begin = path[i];
+                begin.balance--;
+                if (begin.balance == -2) {
+                    Node<T> rotated = balance(begin);
+                    if (i == 0)
+                        top = rotated;
+                    else
+                        path[i - 1].right = rotated;
+                    shrunk = rotated.balance == 0;
+                } else {
+                    shrunk = begin.balance == 0;
+                }
+            }
+        }
+        return join(new Subtree<>(top, shrunk ? left.height - 1 : left.height), node, right);
+    }
 
     /**
-     * Удаление узла.
+     * Разделение дерева по ключу: в этом дереве остаются элементы, меньшие key, а элементы, большие или равные key,
+     * переносятся в возвращаемое дерево.
      *
-     * Удаление также происходит рекурсивно. Если данное значение является листом, мы просто удаляем его.
-     * Если у узла только одно поддерево, мы просто меняем узел на его поддерево. Иначе нужно найти наименьший узел
-     * в правом поддереве и заменить удаляемый узел на него, уменьшив значение баланса на 1, а сам узел удалить.
-     * Далее идет обход вверх по дереву и корректировка балансов. Если поднимаемся из левого поддерева, значение баланса
-     * увеличивается на 1, иначе - уменьшается. Если в какой то вершине значение баланса стало -1 или 1 - корректировка
-     * останавливается. При значении баланса -2 или 2 происходит балансировка.
+     * Спуск идет от корня к ключу, а на обратном пути поддеревья, оставшиеся слева и справа от пути, собираются
+     * с помощью join. Суммарная стоимость всех join телескопируется в O(log n).
      *
+     * Сложность: O(log n); размеры обоих деревьев будут посчитаны при первом вызове size().
      */
+    public AVLTree<T> split(T key) {
+        if (key == null) throw new NullPointerException();
+        Split<T> split = split(detach(), key, comparator);
+        Subtree<T> right = split.right;
+        if (split.found != null)
+            right = join(new Subtree<>(null, 0), split.found, right);
+        root = split.left.root;
+        size = orderStatistics ? count(root) : -1;
+        return of(right, -1, orderStatistics);
+    }
 
-    @Override
-    public boolean remove(Object o) {
-        if (!contains(o)) {
-            return false;
+    private static <T extends Comparable<T>> Split<T> split(Subtree<T> tree, T key, Comparator<? super T> comparator) {
+        Node<T> node = tree.root;
+        if (node == null)
+            return new Split<>(tree, null, tree);
+        Subtree<T> left = new Subtree<>(node.left, leftHeight(node, tree.height));
+        Subtree<T> right = new Subtree<>(node.right, rightHeight(node, tree.height));
+        int comparison = compare(comparator, key, node.value);
+        if (comparison == 0)
+            return new Split<>(left, node, right);
+        if (comparison < 0) {
+            Split<T> split = split(left, key, comparator);
+            return new Split<>(split.left, split.found, join(split.right, node, right));
         }
-        @SuppressWarnings("unchecked")
-        T t = (T) o;
-        endRemoving = false;
-        root = removeRecursive(root, t);
-        size--;
-        return true;
+        Split<T> split = split(right, key, comparator);
+        return new Split<>(join(left, node, split.left), split.found, split.right);
     }
 
-    private Node<T> removeRecursive(Node<T> begin, T value) {
-        if (begin == null)
-            return null;
+    /**
+     * Объединение, пересечение и разность деревьев алгоритмами на основе join: корень одного дерева разделяет другое
+     * дерево через split, и две независимые половины обрабатываются параллельно в ForkJoinPool.commonPool().
+     * Узлы аргументов переиспользуются в результате, поэтому оба дерева после вызова становятся пустыми. Аргументы
+     * должны быть разными изменяемыми деревьями (не снимками), иначе бросается исключение, как у join, и оба дерева
+     * остаются нетронутыми.
+     *
+     * Сложность: O(m log(n / m + 1)) работы и O(log n log m) глубины параллелизма для m <= n.
+     */
+    public static <T extends Comparable<T>> AVLTree<T> union(AVLTree<T> a, AVLTree<T> b) {
+        boolean orderStatistics = a.orderStatistics && b.orderStatistics;
+        checkOperands(a, b);
+        return a.of(ForkJoinPool.commonPool().invoke(new SetOperation<>(UNION, a.detach(), b.detach(), a.comparator)),
+                -1, orderStatistics);
+    }
 
-        int comparison = value.compareTo(begin.value);
-        if (comparison < 0) {
-            begin.left = removeRecursive(begin.left, value);
-            if (!endRemoving) {
-                begin.balance++;
-                begin = balance(begin);
-                if (begin.balance != 0)
-                    endRemoving = true;
-            }
-        } else if (comparison > 0) {
-            begin.right = removeRecursive(begin.right, value);
-            if (!endRemoving) {
-                begin.balance--;
-                begin = balance(begin);
-                if (begin.balance != 0)
-                    endRemoving = true;
-            }
-        } else {
-            if (begin.left == null && begin.right == null) {
-                return null;
-            }
-            if (begin.left == null) {
-                return begin.right;
-            }
-            if (begin.right == null) {
-                return begin.left;
+    public static <T extends Comparable<T>> AVLTree<T> intersection(AVLTree<T> a, AVLTree<T> b) {
+        boolean orderStatistics = a.orderStatistics && b.orderStatistics;
+        checkOperands(a, b);
+        return a.of(ForkJoinPool.commonPool().invoke(new SetOperation<>(INTERSECTION, a.detach(), b.detach(), a.comparator)),
+                -1, orderStatistics);
+    }
+
+    public static <T extends Comparable<T>> AVLTree<T> difference(AVLTree<T> a, AVLTree<T> b) {
+        boolean orderStatistics = a.orderStatistics && b.orderStatistics;
+        checkOperands(a, b);
+        return a.of(ForkJoinPool.commonPool().invoke(new SetOperation<>(DIFFERENCE, a.detach(), b.detach(), a.comparator)),
+                -1, orderStatistics);
+    }
+
+    /**
+     * Параллельное добавление коллекции: она сортируется параллельно, из нее строится дерево (см. fromSorted),
+     * которое затем объединяется с этим деревом через union.
+     */
+    public void parallelAddAll(Collection<? extends T> c) {
+        checkWritable();
+        if (c.isEmpty())
+            return;
+        Object[] values = sortedArray(c);
+        AVLTree<T> other = new AVLTree<>(comparator, sortPrefix, false, false);
+        other.build(values, values.length);
+        Subtree<T> result = ForkJoinPool.commonPool().invoke(
+                new SetOperation<>(UNION, detach(), other.detach(), comparator));
+        root = result.root;
+        size = orderStatistics ? count(root) : -1;
+    }
+
+    /**
+     * Буфер изменений для applyBatch: добавления и удаления в порядке записи. Один ключ может встречаться
+     * несколько раз.
+     */
+    public static final class Batch<T extends Comparable<T>> {
+        private Object[] keys = new Object[16];
+        private boolean[] inserts = new boolean[16];
+        private int size = 0;
+
+        public void add(T key) {
+            record(key, true);
+        }
+
+        public void remove(T key) {
+            record(key, false);
+        }
+
+        private void record(T key, boolean insert) {
+            if (key == null) throw new NullPointerException();
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                inserts = Arrays.copyOf(inserts, size * 2);
             }
+            keys[size] = key;
+            inserts[size++] = insert;
+        }
 
-            Node<T> t = begin;
-            begin = findMin(begin.right);
-            begin.right = removeRecursive(t.right, begin.value);
-            begin.left = t.left;
-            begin.balance = t.balance - 1;
+        public int size() {
+            return size;
         }
 
-        return begin;
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void clear() {
+            Arrays.fill(keys, 0, size, null);
+            size = 0;
+        }
     }
 
-    private boolean endRemoving;
+    /**
+     * Применение буфера изменений за один проход по дереву.
+     *
+     * Операции сортируются по ключу (устойчиво, поэтому для каждого ключа сохраняется порядок записи), и для
+     * каждого ключа остается только последняя операция. Затем дерево обходится рекурсивно сверху вниз, как в union:
+     * ключ узла делит упорядоченный буфер на две части, которые применяются к левому и правому поддеревьям, а
+     * результаты соединяются через join. Общие части путей к ключам проходятся один раз, поддеревья без изменений
+     * не посещаются, а балансировка выполняется один раз на каждое соединение вместо поворотов после каждой
+     * операции. Отсутствующие ключи, попавшие в пустое поддерево, собираются из буфера за линейное время.
+     *
+     * Результаты такие же, как при поочередном вызове add и remove в порядке записи: results[i] - то, что вернула бы
+     * i-я операция. Буфер не очищается.
+     *
+     * Сложность: O(m log m + m log(n / m + 1)) для буфера из m операций. У дерева со снимками (см. snapshot)
+     * операции применяются по одной с копированием путей.
+     */
+    public boolean[] applyBatch(Batch<T> batch) {
+        checkWritable();
+        int n = batch.size;
+        boolean[] results = new boolean[n];
+        if (n == 0)
+            return results;
+        int[] order = sortedOrder(batch.keys, n);
 
-    private Node<T> findMin(Node<T> node) {
-        return node.left == null ? node : findMin(node.left);
-    }
+        // последняя операция для каждого ключа
+        Object[] keys = new Object[n];
+        boolean[] inserts = new boolean[n];
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            Object key = batch.keys[order[i]];
+            if (distinct == 0 || compare(keys[distinct - 1], key) != 0)
+                keys[distinct++] = key;
+            inserts[distinct - 1] = batch.inserts[order[i]];
+        }
 
-    @Override
-    public boolean containsAll(Collection<?> c) {
-        for (Object el: c) {
-            if (!this.contains(el)) {
-                return false;
+        boolean[] present = new boolean[distinct];// был ли ключ в дереве до применения буфера
+        if (shared) {
+            for (int j = 0; j < distinct; j++) {
+                @SuppressWarnings("unchecked")
+                T key = (T) keys[j];
+                present[j] = inserts[j] ? !add(key) : remove(key);
             }
+        } else {
+            int size = this.size;
+            Subtree<T> result = applyBatch(detach(), keys, inserts, present, 0, distinct, new Object[distinct]);
+            root = result.root;
+            if (size >= 0) {
+                for (int j = 0; j < distinct; j++)
+                    size += (inserts[j] ? 1 : 0) - (present[j] ? 1 : 0);
+            }
+            this.size = size;
         }
 
-        return true;
+        // повторение операций каждого ключа в порядке записи, начиная с исходного наличия ключа
+        for (int i = 0, j = -1; i < n; i++) {
+            if (i == 0 || compare(batch.keys[order[i - 1]], batch.keys[order[i]]) != 0)
+                j++;
+            results[order[i]] = batch.inserts[order[i]] != present[j];
+            present[j] = batch.inserts[order[i]];
+        }
+        return results;
     }
 
-    @Override
-    public boolean addAll(Collection<? extends T> c) {
-        if (this.containsAll(c))
-            return false;
-        for (T el: c) {
-            this.add(el);
+    /**
+     * Индексы keys[0..n) в порядке возрастания ключей; сортировка слиянием снизу вверх устойчива.
+     */
+    private int[] sortedOrder(Object[] keys, int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        int[] buffer = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int from = 0; from < n; from += 2 * width) {
+                int middle = Math.min(from + width, n);
+                int to = Math.min(from + 2 * width, n);
+                int i = from;
+                int j = middle;
+                int k = from;
+                while (i < middle && j < to)
+                    buffer[k++] = compare(keys[order[j]], keys[order[i]]) < 0 ? order[j++] : order[i++];
+                while (i < middle)
+                    buffer[k++] = order[i++];
+                while (j < to)
+                    buffer[k++] = order[j++];
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
         }
-
-        return true;
+        return order;
     }
 
-    @Override
-    public boolean retainAll(Collection<?> c) {
-        if (c.containsAll(this))
-            return false;
-        List<T> control = new ArrayList<>(this);
-        for (T el: control) {
-            if (!c.contains(el))
-                this.remove(el);
+    /**
+     * Применение операций keys[from..to) к поддереву tree. В present отмечаются ключи, найденные в дереве.
+     * scratch - общий буфер для построения новых поддеревьев из добавляемых ключей.
+     */
+    private Subtree<T> applyBatch(Subtree<T> tree, Object[] keys, boolean[] inserts, boolean[] present, int from,
+                                  int to, Object[] scratch) {
+        if (from == to)
+            return tree;
+        Node<T> node = tree.root;
+        if (node == null) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (inserts[i])
+                    scratch[count++] = keys[i];
+            }
+            return new Subtree<>(build(scratch, 0, count), perfectHeight(count));
         }
-        return true;
+
+        // первый ключ буфера, не меньший ключа узла
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(keys[middle], node.value) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        boolean found = low < to && compare(keys[low], node.value) == 0;
+
+        Subtree<T> left = applyBatch(new Subtree<>(node.left, leftHeight(node, tree.height)),
+                keys, inserts, present, from, low, scratch);
+        Subtree<T> right = applyBatch(new Subtree<>(node.right, rightHeight(node, tree.height)),
+                keys, inserts, present, found ? low + 1 : low, to, scratch);
+        if (found) {
+            present[low] = true;
+            if (!inserts[low])
+                return join2(left, right);
+        }
+        return join(left, node, right);
     }
 
-    @Override
-    public boolean removeAll(Collection<?> c) {
-        if (!this.containsAll(c))
-            return false;
-        for (Object el: c) {
-            this.remove(el);
+    /**
+     * Поддеревья ниже этой высоты (не менее fib(PARALLEL_HEIGHT) ~ 600 узлов) обрабатываются последовательно.
+     */
+    private static final int PARALLEL_HEIGHT = 14;
+
+    private static final class SetOperation<T extends Comparable<T>> extends RecursiveTask<Subtree<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int operation;
+        private final Subtree<T> a;
+        private final Subtree<T> b;
+        private final Comparator<? super T> comparator;
+
+        SetOperation(int operation, Subtree<T> a, Subtree<T> b, Comparator<? super T> comparator) {
+            this.operation = operation;
+            this.a = a;
+            this.b = b;
+            this.comparator = comparator;
         }
 
-        return true;
+        @Override
+        protected Subtree<T> compute() {
+            if (a.root == null)
+                return operation == UNION ? b : a;
+            if (b.root == null)
+                return operation == INTERSECTION ? b : a;
+
+            // для объединения и пересечения b разделяется корнем a, для разности - a корнем b
+            Subtree<T> pivotTree = operation == DIFFERENCE ? b : a;
+            Node<T> pivot = pivotTree.root;
+            Subtree<T> pivotLeft = new Subtree<>(pivot.left, leftHeight(pivot, pivotTree.height));
+            Subtree<T> pivotRight = new Subtree<>(pivot.right, rightHeight(pivot, pivotTree.height));
+            Split<T> split = split(operation == DIFFERENCE ? a : b, pivot.value, comparator);
+
+            SetOperation<T> leftTask;
+            SetOperation<T> rightTask;
+            if (operation == DIFFERENCE) {
+                leftTask = new SetOperation<>(operation, split.left, pivotLeft, comparator);
+                rightTask = new SetOperation<>(operation, split.right, pivotRight, comparator);
+            } else {
+                leftTask = new SetOperation<>(operation, pivotLeft, split.left, comparator);
+                rightTask = new SetOperation<>(operation, pivotRight, split.right, comparator);
+            }
+
+            Subtree<T> left;
+            Subtree<T> right;
+            if (Math.max(a.height, b.height) > PARALLEL_HEIGHT) {
+                leftTask.fork();
+                right = rightTask.compute();
+                left = leftTask.join();
+            } else {
+                left = leftTask.compute();
+                right = rightTask.compute();
+            }
+
+            if (operation == UNION || operation == INTERSECTION && split.found != null)
+                return AVLTree.join(left, pivot, right);
+            return join2(left, right);
+        }
     }
 
     @Override
     public void clear() {
+        checkWritable();
         root = null;
         size = 0;
+        shared = false;
+        modCount++;
     }
 
     /**
@@ -333,7 +2560,7 @@ public class AVLTree<T extends Comparable<T>> implements Set<T> {
      *
      */
 
-    private Node<T> balance(Node<T> node) {
+    static <T> Node<T> balance(Node<T> node) {
         if (node.balance == -2) {
             if (node.left.balance <= 0)
                 node = smallRightTurn(node);
@@ -355,11 +2582,13 @@ public class AVLTree<T extends Comparable<T>> implements Set<T> {
      *
      */
 
-    private Node<T> smallLeftTurn(Node<T> begin) {
+    private static <T> Node<T> smallLeftTurn(Node<T> begin) {
         Node<T> node = begin;
         begin = begin.right;
         node.right = begin.left;
         begin.left = node;
+        updateCount(node);
+        updateCount(begin);
 
         if (begin.balance == 1) {
             begin.balance = 0;
@@ -371,11 +2600,13 @@ public class AVLTree<T extends Comparable<T>> implements Set<T> {
         return begin;
     }
 
-    private Node<T> smallRightTurn(Node<T> begin) {
+    private static <T> Node<T> smallRightTurn(Node<T> begin) {
         Node<T> node = begin;
         begin = begin.left;
         node.left = begin.right;
         begin.right = node;
+        updateCount(node);
+        updateCount(begin);
 
         if (begin.balance == -1) {
             begin.balance = 0;
@@ -387,7 +2618,7 @@ public class AVLTree<T extends Comparable<T>> implements Set<T> {
         return begin;
     }
 
-    private Node<T> bigLeftTurn(Node<T> begin) {
+    private static <T> Node<T> bigLeftTurn(Node<T> begin) {
         Node<T> left = begin;
         Node<T> right = begin.right;
         begin = begin.right.left;
@@ -395,6 +2626,9 @@ public class AVLTree<T extends Comparable<T>> implements Set<T> {
         right.left = begin.right;
         begin.left = left;
         begin.right = right;
+        updateCount(left);
+        updateCount(right);
+        updateCount(begin);
 
         if (begin.balance == 0) {
             begin.right.balance = 0;
@@ -411,7 +2645,7 @@ public class AVLTree<T extends Comparable<T>> implements Set<T> {
         return begin;
     }
 
-    private Node<T> bigRightTurn(Node<T> begin) {
+    private static <T> Node<T> bigRightTurn(Node<T> begin) {
         Node<T> right = begin;
         Node<T> left = begin.left;
         begin = begin.left.right;
@@ -419,6 +2653,9 @@ public class AVLTree<T extends Comparable<T>> implements Set<T> {
         left.right = begin.left;
         begin.left = left;
         begin.right = right;
+        updateCount(left);
+        updateCount(right);
+        updateCount(begin);
 
         if (begin.balance == 0) {
             begin.right.balance = 0;
@@ -438,26 +2675,72 @@ public class AVLTree<T extends Comparable<T>> implements Set<T> {
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder("[");
-        Iterator<T> it = this.iterator();
-        while (it.hasNext()) {
-            result.append(it.next());
-            if (it.hasNext()) result.append(", ");
+        appendTo(root, result);
+        if (root != null)
+            result.setLength(result.length() - 2);// последний разделитель
+        return result.append(']').toString();
+    }
+
+    private static void appendTo(Node<?> node, StringBuilder result) {
+        while (node != null) {
+            appendTo(node.left, result);
+            result.append(node.value).append(", ");
+            node = node.right;
         }
-        result.append("]");
-        return result.toString();
     }
 
+    /**
+     * Равенство по контракту Set: множества равны, если состоят из одних и тех же элементов, независимо от формы
+     * деревьев. Разные размеры или известные разные суммы hashCode дают ответ за O(1). Для множества с тем же порядком
+     * (SortedSet с тем же comparator) элементы сравниваются попарно за один проход обоими итераторами, без рекурсии;
+     * для остальных множеств - через containsAll.
+     *
+     * Сложность: O(n) для множества с тем же порядком, иначе O(n log n).
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        AVLTree<?> avlTree = (AVLTree<?>) o;
-        return size == avlTree.size &&
-                Objects.equals(root, avlTree.root);
+        if (!(o instanceof Set)) return false;
+        Set<?> set = (Set<?>) o;
+        if (size() != set.size())
+            return false;
+        if (o instanceof AVLTree) {
+            AVLTree<?> other = (AVLTree<?>) o;
+            if (hashModCount == modCount && other.hashModCount == other.modCount && hash != other.hash)
+                return false;
+        }
+        try {
+            if (!isSortedLikeThis(set))
+                return containsAll(set);
+            Iterator<?> it = set.iterator();
+            for (T value : this) {
+                if (!it.hasNext() || compare(value, it.next()) != 0)
+                    return false;
+            }
+            return !it.hasNext();
+        } catch (ClassCastException | NullPointerException e) {
+            return false;
+        }
     }
 
+    /**
+     * Хеш по контракту Set - сумма hashCode элементов. Сумма хранится в дереве и обновляется при add и remove;
+     * после остальных изменений она один раз считается обходом за O(n). Снимки хранят сумму, только если она была
+     * известна при создании снимка, иначе считают ее при каждом вызове, чтобы не изменять общий для потоков объект.
+     *
+     * Сложность: O(1) после add и remove, иначе O(n).
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(root, size);
+        if (hashModCount == modCount)
+            return hash;
+        int hash = 0;
+        for (T value : this)
+            hash += value.hashCode();
+        if (!readOnly) {
+            this.hash = hash;
+            hashModCount = modCount;
+        }
+        return hash;
     }
 }
@@ -0,0 +1,390 @@
+package project;
+
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Компактный двоичный формат AVLTree: ключи записываются в порядке дерева, поэтому загрузка строит сбалансированное
+ * дерево за линейное время (AVLTree.fromSorted(Iterator, int, Comparator)) без вызовов add и без поворотов.
+ *
+ * Заголовок - сигнатура, версия, номер кодека и число ключей; далее ключи, каждый в кодировке кодека. Кодеки для
+ * целых чисел пишут varint, а *_DELTA - разность с предыдущим ключом (в упорядоченном множестве она обычно мала
+ * и занимает 1-2 байта); строки записываются как длина в байтах UTF-8 и сами байты.
+ *
+ * Запись и чтение идут через буфер фиксированного размера BUFFER_SIZE, поэтому ни при сохранении, ни при загрузке
+ * полная копия данных в памяти не создается: при сохранении ключи берутся прямо из дерева, при загрузке сразу
+ * становятся узлами.
+ */
+public final class AVLTreeFile {
+    private static final int MAGIC = 0x41564C53;// "AVLS"
+    private static final int VERSION = 1;
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private AVLTreeFile() {
+    }
+
+    /**
+     * Кодирование ключей. previous - предыдущий ключ в порядке дерева или null для первого ключа; кодеки, которые
+     * его не используют, просто игнорируют этот аргумент.
+     */
+    public interface Codec<T> {
+        /**
+         * Номер кодека, записываемый в заголовок: файл нельзя прочитать кодеком с другим номером.
+         */
+        int id();
+
+        void write(T key, T previous, Output out) throws IOException;
+
+        T read(T previous, Input in) throws IOException;
+    }
+
+    public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public int id() {
+            return 1;
+        }
+
+        @Override
+        public void write(Integer key, Integer previous, Output out) throws IOException {
+            out.writeVarLong(zigZag(key));
+        }
+
+        @Override
+        public Integer read(Integer previous, Input in) throws IOException {
+            return (int) unZigZag(in.readVarLong());
+        }
+    };
+
+    public static final Codec<Integer> INTEGER_DELTA = new Codec<Integer>() {
+        @Override
+        public int id() {
+            return 2;
+        }
+
+        @Override
+        public void write(Integer key, Integer previous, Output out) throws IOException {
+            out.writeVarLong(zigZag((long) key - (previous == null ? 0 : previous)));
+        }
+
+        @Override
+        public Integer read(Integer previous, Input in) throws IOException {
+            return (int) ((previous == null ? 0 : previous) + unZigZag(in.readVarLong()));
+        }
+    };
+
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public int id() {
+            return 3;
+        }
+
+        @Override
+        public void write(Long key, Long previous, Output out) throws IOException {
+            out.writeVarLong(zigZag(key));
+        }
+
+        @Override
+        public Long read(Long previous, Input in) throws IOException {
+            return unZigZag(in.readVarLong());
+        }
+    };
+
+    /**
+     * Разность соседних long может переполниться, но сложение при чтении переполняется так же, поэтому ключ
+     * восстанавливается точно.
+     */
+    public static final Codec<Long> LONG_DELTA = new Codec<Long>() {
+        @Override
+        public int id() {
+            return 4;
+        }
+
+        @Override
+        public void write(Long key, Long previous, Output out) throws IOException {
+            out.writeVarLong(zigZag(key - (previous == null ? 0 : previous)));
+        }
+
+        @Override
+        public Long read(Long previous, Input in) throws IOException {
+            return (previous == null ? 0 : previous) + unZigZag(in.readVarLong());
+        }
+    };
+
+    public static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public int id() {
+            return 5;
+        }
+
+        @Override
+        public void write(String key, String previous, Output out) throws IOException {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            out.writeVarLong(bytes.length);
+            out.writeBytes(bytes);
+        }
+
+        @Override
+        public String read(String previous, Input in) throws IOException {
+            long length = in.readVarLong();
+            if (length < 0 || length > Integer.MAX_VALUE)
+                throw new IOException("Corrupted string length: " + length);
+            return new String(in.readBytes((int) length), StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Отображение знаковых чисел в беззнаковые (0, -1, 1, -2, ... -> 0, 1, 2, 3, ...), чтобы небольшие по модулю
+     * отрицательные числа (разности в дереве с обратным порядком) тоже занимали мало байт в varint.
+     */
+    private static long zigZag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unZigZag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Буферизованная запись в канал. Буфер сбрасывается в канал, когда очередное значение в него не помещается.
+     */
+    public static final class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        public void writeByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        public void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        /**
+         * Запись по 7 бит, младшие разряды первыми; старший бит байта означает, что за ним есть еще байты.
+         */
+        public void writeVarLong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        public void writeBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                if (!buffer.hasRemaining())
+                    flush();
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Буферизованное чтение из канала. Конец канала посреди значения - EOFException.
+     */
+    public static final class Input {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        /**
+         * Дочитывание, пока в буфере не окажется хотя бы bytes байт; false - канал закончился раньше.
+         */
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes)
+                return true;
+            buffer.compact();
+            try {
+                while (buffer.position() < bytes) {
+                    if (channel.read(buffer) < 0)
+                        return false;
+                }
+                return true;
+            } finally {
+                buffer.flip();
+            }
+        }
+
+        private void require(int bytes) throws IOException {
+            if (!fill(bytes))
+                throw new EOFException();
+        }
+
+        public int readByte() throws IOException {
+            require(1);
+            return buffer.get() & 0xFF;
+        }
+
+        public int readInt() throws IOException {
+            require(4);
+            return buffer.getInt();
+        }
+
+        public long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Corrupted varint");
+        }
+
+        public byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            for (int offset = 0; offset < length; ) {
+                require(1);
+                int chunk = Math.min(buffer.remaining(), length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return bytes;
+        }
+
+        boolean atEnd() throws IOException {
+            return !fill(1);
+        }
+    }
+
+    /**
+     * Сохранение дерева в файл (существующий файл перезаписывается).
+     *
+     * Сложность: O(n), память - буфер BUFFER_SIZE.
+     */
+    public static <T extends Comparable<T>> void save(AVLTree<T> tree, Path file, Codec<? super T> codec)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(tree, channel, codec);
+        }
+    }
+
+    /**
+     * Запись дерева в канал. Дерево не должно изменяться во время записи.
+     */
+    public static <T extends Comparable<T>> void write(AVLTree<T> tree, WritableByteChannel channel,
+                                                       Codec<? super T> codec) throws IOException {
+        Output out = new Output(channel);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(codec.id());
+        out.writeInt(tree.size());
+        T previous = null;
+        for (T key : tree) {
+            codec.write(key, previous, out);
+            previous = key;
+        }
+        out.flush();
+    }
+
+    /**
+     * Загрузка дерева с естественным порядком ключей.
+     *
+     * Сложность: O(n), память сверх узлов дерева - буфер BUFFER_SIZE и стек глубиной O(log n).
+     *
+     * @throws IOException если файл поврежден, записан другим кодеком или ключи в нем не упорядочены
+     */
+    public static <T extends Comparable<T>> AVLTree<T> load(Path file, Codec<T> codec) throws IOException {
+        return load(file, codec, null);
+    }
+
+    /**
+     * Загрузка дерева, упорядоченного comparator; файл должен быть записан деревом с тем же порядком.
+     */
+    public static <T extends Comparable<T>> AVLTree<T> load(Path file, Codec<T> codec,
+                                                            Comparator<? super T> comparator) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            AVLTree<T> tree = read(in, codec, comparator);
+            if (!in.atEnd())
+                throw new IOException("Unexpected data after " + tree.size() + " keys");
+            return tree;
+        }
+    }
+
+    /**
+     * Чтение дерева из канала. Чтение идет блоками по BUFFER_SIZE, поэтому из канала может быть прочитано больше,
+     * чем занимает само дерево.
+     */
+    public static <T extends Comparable<T>> AVLTree<T> read(ReadableByteChannel channel, Codec<T> codec,
+                                                            Comparator<? super T> comparator) throws IOException {
+        return read(new Input(channel), codec, comparator);
+    }
+
+    private static <T extends Comparable<T>> AVLTree<T> read(Input in, Codec<T> codec,
+                                                             Comparator<? super T> comparator) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not an AVL tree file");
+        if (in.readByte() != VERSION)
+            throw new IOException("Unsupported version");
+        int id = in.readByte();
+        if (id != codec.id())
+            throw new IOException("File was written with codec " + id + ", not " + codec.id());
+        int count = in.readInt();
+        if (count < 0)
+            throw new IOException("Corrupted key count: " + count);
+
+        Iterator<T> keys = new Iterator<T>() {
+            private T previous = null;
+
+            @Override
+            public boolean hasNext() {
+                return true;// число ключей задает count
+            }
+
+            @Override
+            public T next() {
+                try {
+                    previous = codec.read(previous, in);
+                    return previous;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        try {
+            return AVLTree.fromSorted(keys, count, comparator);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Corrupted AVL tree file", e);
+        }
+    }
+}
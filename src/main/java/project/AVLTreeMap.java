@@ -0,0 +1,1162 @@
+package project;
+
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Отображение на основе АВЛ-дерева. Узлы - те же узлы AVLTree с добавленным значением, балансировка после вставки
+ * и удаления - тот же код AVLTree (retraceInsert и retraceDelete), поэтому форма и высота дерева ключей такие же,
+ * как у AVLTree.
+ *
+ * put, putIfAbsent, computeIfAbsent, compute и merge проходят от корня один раз: пройденный путь запоминается, как
+ * в AVLTree.add, и если ключа нет, новый узел вставляется и балансируется по этому же пути, без отдельного
+ * containsKey или get перед вставкой. Если compute или merge возвращают null, узел удаляется по тому же пути.
+ * Для подсчета (merge(key, 1, Integer::sum)) это один спуск на операцию вместо двух у get и put.
+ *
+ * Итераторы, как в AVLTree, хранят путь в массиве и обнаруживают изменение отображения по modCount. Методы навигации
+ * (firstEntry, ceilingEntry и т.п.) возвращают неизменяемые копии пар, а элементы entrySet - сами узлы, значение
+ * которых можно менять через setValue.
+ */
+public class AVLTreeMap<K extends Comparable<K>, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    /**
+     * Узел отображения: ключ хранится в поле value узла AVLTree, значение - в поле mapped.
+     */
+    static final class MapNode<K, V> extends AVLTree.Node<K> implements Map.Entry<K, V> {
+        V mapped;
+
+        MapNode(K key, V mapped) {
+            super(key);
+            this.mapped = mapped;
+        }
+
+        @Override
+        public K getKey() {
+            return value;
+        }
+
+        @Override
+        public V getValue() {
+            return mapped;
+        }
+
+        @Override
+        public V setValue(V mapped) {
+            V old = this.mapped;
+            this.mapped = mapped;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(value, e.getKey()) && Objects.equals(mapped, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(value) ^ Objects.hashCode(mapped);
+        }
+
+        @Override
+        public String toString() {
+            return value + "=" + mapped;
+        }
+    }
+
+    /**
+     * Путь, пройденный при поиске ключа: nodes[0..depth) - предки места, где ключ находится или должен быть вставлен,
+     * comparison - результат сравнения ключа с nodes[depth - 1].
+     */
+    private static final class Path<K> {
+        final AVLTree.Node<K>[] nodes = AVLTree.newPath();
+        int depth;
+        int comparison;
+    }
+
+    private AVLTree.Node<K> root = null;
+    private int size = 0;
+    private int modCount = 0;// число структурных изменений (вставок и удалений узлов)
+    private final Comparator<? super K> comparator;// null - естественный порядок (compareTo)
+
+    public AVLTreeMap() {
+        this(null);
+    }
+
+    /**
+     * Отображение, ключи которого упорядочены comparator (null - естественный порядок).
+     */
+    public AVLTreeMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> MapNode<K, V> entry(AVLTree.Node<K> node) {
+        return (MapNode<K, V>) node;
+    }
+
+    private int compare(Object a, Object b) {
+        return AVLTree.compare(comparator, a, b);
+    }
+
+    private MapNode<K, V> getEntry(Object key) {
+        if (key == null) throw new NullPointerException();
+        AVLTree.Node<K> node = root;
+        while (node != null) {
+            int comparison = compare(key, node.value);
+            if (comparison == 0)
+                return entry(node);
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Спуск от корня к key с запоминанием пройденных узлов в path. Возвращает узел ключа или null; во втором случае
+     * path указывает место вставки для insert.
+     */
+    private MapNode<K, V> descend(Object key, Path<K> path) {
+        if (key == null) throw new NullPointerException();
+        path.depth = 0;
+        AVLTree.Node<K> node = root;
+        while (node != null) {
+            int comparison = compare(key, node.value);
+            if (comparison == 0)
+                return entry(node);
+            path.nodes[path.depth++] = node;
+            path.comparison = comparison;
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Вставка нового узла в место, найденное descend, и подъем по пути с корректировкой балансов - тот же
+     * AVLTree.retraceInsert, что и у AVLTree.add.
+     */
+    private MapNode<K, V> insert(Path<K> path, K key, V value) {
+        AVLTree.Node<K>[] nodes = path.nodes;
+        int depth = path.depth;
+        MapNode<K, V> entry = new MapNode<>(key, value);
+        if (depth == 0)
+            root = entry;
+        else if (path.comparison < 0)
+            nodes[depth - 1].left = entry;
+        else
+            nodes[depth - 1].right = entry;
+        size++;
+        modCount++;
+
+        nodes[depth] = entry;
+        AVLTree.retraceInsert(nodes, depth, null);
+        root = nodes[0];
+        return entry;
+    }
+
+    /**
+     * Удаление узла node, путь к которому (без него самого) лежит в path, как в AVLTree.remove: узел с двумя детьми
+     * получает ключ и значение наименьшего узла правого поддерева, а вырезается этот наименьший узел. Подъем -
+     * AVLTree.retraceDelete.
+     */
+    private void delete(Path<K> path, AVLTree.Node<K> node) {
+        AVLTree.Node<K>[] nodes = path.nodes;
+        int depth = path.depth;
+        if (node.left != null && node.right != null) {
+            MapNode<K, V> target = entry(node);
+            nodes[depth++] = node;
+            node = node.right;
+            while (node.left != null) {
+                nodes[depth++] = node;
+                node = node.left;
+            }
+            target.value = node.value;
+            target.mapped = AVLTreeMap.<K, V>entry(node).mapped;
+        }
+
+        AVLTree.Node<K> child = node.left != null ? node.left : node.right;
+        boolean fromLeft = depth > 0 && nodes[depth - 1].left == node;
+        if (depth == 0)
+            root = child;
+        else if (fromLeft)
+            nodes[depth - 1].left = child;
+        else
+            nodes[depth - 1].right = child;
+        size--;
+        modCount++;
+
+        AVLTree.retraceDelete(nodes, depth, fromLeft, false, null);
+        if (depth > 0)
+            root = nodes[0];
+    }
+
+    private MapNode<K, V> deleteKey(Object key) {
+        Path<K> path = new Path<>();
+        MapNode<K, V> entry = descend(key, path);
+        if (entry != null) {
+            MapNode<K, V> removed = new MapNode<>(entry.value, entry.mapped);
+            delete(path, entry);
+            return removed;
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Высота, как в AVLTree.height: спуск по более высокому поддереву.
+     *
+     * Сложность: O(log n).
+     */
+    public int height() {
+        int height = 0;
+        for (AVLTree.Node<K> node = root; node != null; node = node.balance < 0 ? node.left : node.right)
+            height++;
+        return height;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getEntry(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        MapNode<K, V> entry = getEntry(key);
+        return entry == null ? null : entry.mapped;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        MapNode<K, V> entry = getEntry(key);
+        return entry == null ? defaultValue : entry.mapped;
+    }
+
+    /**
+     * Сложность: O(log n), один спуск.
+     */
+    @Override
+    public V put(K key, V value) {
+        Path<K> path = new Path<>();
+        MapNode<K, V> entry = descend(key, path);
+        if (entry != null)
+            return entry.setValue(value);
+        insert(path, key, value);
+        return null;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Path<K> path = new Path<>();
+        MapNode<K, V> entry = descend(key, path);
+        if (entry == null) {
+            insert(path, key, value);
+            return null;
+        }
+        V old = entry.mapped;
+        if (old == null)
+            entry.mapped = value;
+        return old;
+    }
+
+    @Override
+    public V remove(Object key) {
+        MapNode<K, V> removed = deleteKey(key);
+        return removed == null ? null : removed.mapped;
+    }
+
+    /**
+     * Сложность: O(log n), один спуск. Изменение отображения из mappingFunction обнаруживается и приводит к
+     * ConcurrentModificationException, так как запомненный путь становится недействительным.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (mappingFunction == null) throw new NullPointerException();
+        Path<K> path = new Path<>();
+        MapNode<K, V> entry = descend(key, path);
+        if (entry != null && entry.mapped != null)
+            return entry.mapped;
+        int expectedModCount = modCount;
+        V value = mappingFunction.apply(key);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        if (value == null)
+            return null;
+        if (entry != null)
+            entry.mapped = value;
+        else
+            insert(path, key, value);
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null) throw new NullPointerException();
+        Path<K> path = new Path<>();
+        MapNode<K, V> entry = descend(key, path);
+        if (entry == null || entry.mapped == null)
+            return null;
+        return remap(path, entry, key, entry.mapped, remappingFunction);
+    }
+
+    /**
+     * Сложность: O(log n), один спуск; вставка или удаление идут по тому же пути.
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null) throw new NullPointerException();
+        Path<K> path = new Path<>();
+        MapNode<K, V> entry = descend(key, path);
+        return remap(path, entry, key, entry == null ? null : entry.mapped, remappingFunction);
+    }
+
+    /**
+     * Сложность: O(log n), один спуск; вставка или удаление идут по тому же пути.
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (value == null || remappingFunction == null) throw new NullPointerException();
+        Path<K> path = new Path<>();
+        MapNode<K, V> entry = descend(key, path);
+        if (entry == null) {
+            insert(path, key, value);
+            return value;
+        }
+        if (entry.mapped == null) {
+            entry.mapped = value;
+            return value;
+        }
+        return remap(path, entry, null, entry.mapped, (k, old) -> remappingFunction.apply(old, value));
+    }
+
+    /**
+     * Общая часть compute и merge: новое значение записывается в узел, вставляется по пути или (если оно null)
+     * удаляет узел.
+     */
+    private V remap(Path<K> path, MapNode<K, V> entry, K key, V old,
+                    BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        int expectedModCount = modCount;
+        V value = remappingFunction.apply(key, old);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        if (entry == null) {
+            if (value != null)
+                insert(path, key, value);
+        } else if (value != null) {
+            entry.mapped = value;
+        } else {
+            delete(path, entry);
+        }
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    private MapNode<K, V> firstNode() {
+        AVLTree.Node<K> node = root;
+        if (node != null)
+            while (node.left != null)
+                node = node.left;
+        return entry(node);
+    }
+
+    private MapNode<K, V> lastNode() {
+        AVLTree.Node<K> node = root;
+        if (node != null)
+            while (node.right != null)
+                node = node.right;
+        return entry(node);
+    }
+
+    /**
+     * Наименьший узел с ключом, не меньшим key (строго большим, если inclusive == false), или null.
+     */
+    private MapNode<K, V> ceilingNode(Object key, boolean inclusive) {
+        if (key == null) throw new NullPointerException();
+        AVLTree.Node<K> result = null;
+        AVLTree.Node<K> node = root;
+        while (node != null) {
+            int comparison = compare(key, node.value);
+            if (comparison == 0 && inclusive)
+                return entry(node);
+            if (comparison < 0) {
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return entry(result);
+    }
+
+    /**
+     * Наибольший узел с ключом, не большим key (строго меньшим, если inclusive == false), или null.
+     */
+    private MapNode<K, V> floorNode(Object key, boolean inclusive) {
+        if (key == null) throw new NullPointerException();
+        AVLTree.Node<K> result = null;
+        AVLTree.Node<K> node = root;
+        while (node != null) {
+            int comparison = compare(key, node.value);
+            if (comparison == 0 && inclusive)
+                return entry(node);
+            if (comparison > 0) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return entry(result);
+    }
+
+    private static <K, V> Map.Entry<K, V> export(MapNode<K, V> entry) {
+        return entry == null ? null : new SimpleImmutableEntry<>(entry.value, entry.mapped);
+    }
+
+    private static <K> K keyOrNull(MapNode<K, ?> entry) {
+        return entry == null ? null : entry.value;
+    }
+
+    private static <K> K keyOrThrow(MapNode<K, ?> entry) {
+        if (entry == null)
+            throw new NoSuchElementException();
+        return entry.value;
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return export(floorNode(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(floorNode(key, false));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return export(floorNode(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorNode(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return export(ceilingNode(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingNode(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return export(ceilingNode(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(ceilingNode(key, false));
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return export(firstNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return export(lastNode());
+    }
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(firstNode());
+    }
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(lastNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        MapNode<K, V> first = firstNode();
+        return first == null ? null : deleteKey(first.value);
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        MapNode<K, V> last = lastNode();
+        return last == null ? null : deleteKey(last.value);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet(null, false);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet(this, null, false);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SubMap(null, false, true, null, false, true, true);
+    }
+
+    /**
+     * Представления диапазонов, как и в AVLTree, не копируют узлы: они хранят только границы и работают с самим
+     * отображением.
+     */
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (compare(fromKey, toKey) > 0)
+            throw new IllegalArgumentException("fromKey > toKey: " + fromKey + ", " + toKey);
+        return new SubMap(fromKey, fromInclusive, false, toKey, toInclusive, false, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        if (toKey == null) throw new NullPointerException();
+        return new SubMap(null, false, true, toKey, inclusive, false, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        if (fromKey == null) throw new NullPointerException();
+        return new SubMap(fromKey, inclusive, false, null, false, true, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * Обход узлов всего отображения или диапазона range, как AVLTree.AVLTreeIterator: стек строится одним спуском,
+     * удаление строит его заново спуском к следующему ключу.
+     */
+    private abstract class NodeIterator<T> implements Iterator<T> {
+        private final AVLTree.Node<K>[] stack = AVLTree.newPath();
+        private int depth = 0;
+        private final SubMap range;// null - обход всего отображения
+        private final boolean descending;
+        private K last;// ключ последнего возвращенного узла, null - удалять нечего
+        private int expectedModCount = modCount;
+
+        NodeIterator(SubMap range, boolean descending) {
+            this.range = range;
+            this.descending = descending;
+            seek(null, true);
+        }
+
+        private void seek(K from, boolean inclusive) {
+            depth = 0;
+            AVLTree.Node<K> node = root;
+            while (node != null) {
+                if (skipped(node.value, from, inclusive)) {
+                    node = descending ? node.left : node.right;
+                } else {
+                    stack[depth++] = node;
+                    node = descending ? node.right : node.left;
+                }
+            }
+        }
+
+        private boolean skipped(K key, K from, boolean inclusive) {
+            if (from != null) {
+                int comparison = compare(key, from);
+                if (descending ? comparison > 0 || comparison == 0 && !inclusive
+                        : comparison < 0 || comparison == 0 && !inclusive)
+                    return true;
+            }
+            return range != null && (descending ? range.tooHigh(key) : range.tooLow(key));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (depth == 0)
+                return false;
+            if (range == null)
+                return true;
+            K next = stack[depth - 1].value;
+            return descending ? !range.tooLow(next) : !range.tooHigh(next);
+        }
+
+        MapNode<K, V> nextEntry() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            AVLTree.Node<K> node = stack[--depth];
+            for (AVLTree.Node<K> next = descending ? node.left : node.right; next != null;
+                 next = descending ? next.right : next.left)
+                stack[depth++] = next;
+            last = node.value;
+            return entry(node);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            deleteKey(last);
+            expectedModCount = modCount;
+            seek(last, false);
+            last = null;
+        }
+    }
+
+    private final class EntryIterator extends NodeIterator<Map.Entry<K, V>> {
+        EntryIterator(SubMap range, boolean descending) {
+            super(range, descending);
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            return nextEntry();
+        }
+    }
+
+    private final class KeyIterator extends NodeIterator<K> {
+        KeyIterator(SubMap range, boolean descending) {
+            super(range, descending);
+        }
+
+        @Override
+        public K next() {
+            return nextEntry().value;
+        }
+    }
+
+    /**
+     * Пары отображения или диапазона range.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        private final SubMap range;
+        private final boolean descending;
+
+        EntrySet(SubMap range, boolean descending) {
+            this.range = range;
+            this.descending = descending;
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator(range, descending);
+        }
+
+        @Override
+        public int size() {
+            return range == null ? size : range.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return range == null ? size == 0 : range.isEmpty();
+        }
+
+        private MapNode<K, V> find(Object o) {
+            if (!(o instanceof Map.Entry))
+                return null;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            if (key == null || range != null && !range.inRange(key))
+                return null;
+            MapNode<K, V> entry = getEntry(key);
+            return entry != null && Objects.equals(entry.mapped, e.getValue()) ? entry : null;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return find(o) != null;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            MapNode<K, V> entry = find(o);
+            if (entry == null)
+                return false;
+            deleteKey(entry.value);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            if (range == null)
+                AVLTreeMap.this.clear();
+            else
+                super.clear();
+        }
+    }
+
+    /**
+     * Ключи отображения или его представления map. Навигация делегируется map, обход и удаление идут по дереву
+     * с границами range.
+     */
+    private final class KeySet extends AbstractSet<K> implements NavigableSet<K> {
+        private final NavigableMap<K, V> map;
+        private final SubMap range;
+        private final boolean descending;
+
+        KeySet(NavigableMap<K, V> map, SubMap range, boolean descending) {
+            this.map = map;
+            this.range = range;
+            this.descending = descending;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator(range, descending);
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return new KeyIterator(range, !descending);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (o == null || range != null && !range.inRange(o))
+                return false;
+            return deleteKey(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public K lower(K k) {
+            return map.lowerKey(k);
+        }
+
+        @Override
+        public K floor(K k) {
+            return map.floorKey(k);
+        }
+
+        @Override
+        public K ceiling(K k) {
+            return map.ceilingKey(k);
+        }
+
+        @Override
+        public K higher(K k) {
+            return map.higherKey(k);
+        }
+
+        @Override
+        public K first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public K pollFirst() {
+            Map.Entry<K, V> first = map.pollFirstEntry();
+            return first == null ? null : first.getKey();
+        }
+
+        @Override
+        public K pollLast() {
+            Map.Entry<K, V> last = map.pollLastEntry();
+            return last == null ? null : last.getKey();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return map.descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return map.subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return map.headMap(toElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return map.tailMap(fromElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    /**
+     * Представление диапазона, как AVLTree.SubSet: границы lo и hi заданы в порядке отображения, а descending только
+     * меняет направление обхода и смысл методов навигации.
+     */
+    private final class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+        private final K lo;
+        private final boolean loInclusive;
+        private final boolean fromStart;// нижней границы нет
+        private final K hi;
+        private final boolean hiInclusive;
+        private final boolean toEnd;// верхней границы нет
+        private final boolean descending;
+
+        SubMap(K lo, boolean loInclusive, boolean fromStart, K hi, boolean hiInclusive, boolean toEnd,
+               boolean descending) {
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.fromStart = fromStart;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.toEnd = toEnd;
+            this.descending = descending;
+        }
+
+        boolean tooLow(Object key) {
+            if (fromStart)
+                return false;
+            int comparison = compare(key, lo);
+            return comparison < 0 || comparison == 0 && !loInclusive;
+        }
+
+        boolean tooHigh(Object key) {
+            if (toEnd)
+                return false;
+            int comparison = compare(key, hi);
+            return comparison > 0 || comparison == 0 && !hiInclusive;
+        }
+
+        boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        /**
+         * Новая граница представления должна лежать внутри текущего диапазона; граница, совпадающая с исключенной
+         * границей текущего диапазона, допускается, только если она тоже исключена.
+         */
+        private boolean inRange(K key, boolean inclusive) {
+            if (inclusive)
+                return inRange(key);
+            return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(key, hi) <= 0);
+        }
+
+        private MapNode<K, V> lowest() {
+            MapNode<K, V> entry = fromStart ? firstNode() : ceilingNode(lo, loInclusive);
+            return entry == null || tooHigh(entry.value) ? null : entry;
+        }
+
+        private MapNode<K, V> highest() {
+            MapNode<K, V> entry = toEnd ? lastNode() : floorNode(hi, hiInclusive);
+            return entry == null || tooLow(entry.value) ? null : entry;
+        }
+
+        private MapNode<K, V> ceilingInRange(K key, boolean inclusive) {
+            if (tooLow(key))
+                return lowest();
+            MapNode<K, V> entry = ceilingNode(key, inclusive);
+            return entry == null || tooHigh(entry.value) ? null : entry;
+        }
+
+        private MapNode<K, V> floorInRange(K key, boolean inclusive) {
+            if (tooHigh(key))
+                return highest();
+            MapNode<K, V> entry = floorNode(key, inclusive);
+            return entry == null || tooLow(entry.value) ? null : entry;
+        }
+
+        private MapNode<K, V> lowerInView(K key, boolean inclusive) {
+            return descending ? ceilingInRange(key, inclusive) : floorInRange(key, inclusive);
+        }
+
+        private MapNode<K, V> higherInView(K key, boolean inclusive) {
+            return descending ? floorInRange(key, inclusive) : ceilingInRange(key, inclusive);
+        }
+
+        private MapNode<K, V> firstInView() {
+            return descending ? highest() : lowest();
+        }
+
+        private MapNode<K, V> lastInView() {
+            return descending ? lowest() : highest();
+        }
+
+        /**
+         * Сложность: O(k), где k - число пар в диапазоне.
+         */
+        @Override
+        public int size() {
+            int count = 0;
+            for (Iterator<Map.Entry<K, V>> it = new EntryIterator(this, false); it.hasNext(); it.next())
+                count++;
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && getEntry(key) != null;
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? AVLTreeMap.this.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!inRange(key))
+                throw new IllegalArgumentException("key out of range: " + key);
+            return AVLTreeMap.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? AVLTreeMap.this.remove(key) : null;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new EntrySet(this, descending);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new KeySet(this, this, descending);
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return export(lowerInView(key, false));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyOrNull(lowerInView(key, false));
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K key) {
+            return export(lowerInView(key, true));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyOrNull(lowerInView(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return export(higherInView(key, true));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyOrNull(higherInView(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K key) {
+            return export(higherInView(key, false));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyOrNull(higherInView(key, false));
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return export(firstInView());
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return export(lastInView());
+        }
+
+        @Override
+        public K firstKey() {
+            return keyOrThrow(firstInView());
+        }
+
+        @Override
+        public K lastKey() {
+            return keyOrThrow(lastInView());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            MapNode<K, V> first = firstInView();
+            return first == null ? null : deleteKey(first.value);
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            MapNode<K, V> last = lastInView();
+            return last == null ? null : deleteKey(last.value);
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new SubMap(lo, loInclusive, fromStart, hi, hiInclusive, toEnd, !descending);
+        }
+
+        /**
+         * Поддиапазон в порядке отображения; в обратном представлении границы меняются местами.
+         */
+        private NavigableMap<K, V> range(K from, boolean fromInclusive, boolean newFromStart,
+                                         K to, boolean toInclusive, boolean newToEnd) {
+            if (!newFromStart && !inRange(from, fromInclusive))
+                throw new IllegalArgumentException("fromKey out of range: " + from);
+            if (!newToEnd && !inRange(to, toInclusive))
+                throw new IllegalArgumentException("toKey out of range: " + to);
+            if (newFromStart)
+                return new SubMap(lo, loInclusive, fromStart, to, toInclusive, false, descending);
+            if (newToEnd)
+                return new SubMap(from, fromInclusive, false, hi, hiInclusive, toEnd, descending);
+            return new SubMap(from, fromInclusive, false, to, toInclusive, false, descending);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            int comparison = compare(fromKey, toKey);
+            if (descending ? comparison < 0 : comparison > 0)
+                throw new IllegalArgumentException("fromKey > toKey: " + fromKey + ", " + toKey);
+            return descending
+                    ? range(toKey, toInclusive, false, fromKey, fromInclusive, false)
+                    : range(fromKey, fromInclusive, false, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            if (toKey == null) throw new NullPointerException();
+            return descending
+                    ? range(toKey, inclusive, false, null, false, true)
+                    : range(null, false, true, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if (fromKey == null) throw new NullPointerException();
+            return descending
+                    ? range(null, false, true, fromKey, inclusive, false)
+                    : range(fromKey, inclusive, false, null, false, true);
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+}
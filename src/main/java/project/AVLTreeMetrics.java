@@ -0,0 +1,265 @@
+package project;
+
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Метрики AVLTree: число поворотов каждого вида, число операций, глубина спуска и время add, remove и contains.
+ * Включаются вызовом AVLTree.enableMetrics(); у дерева без метрик каждая операция платит только одной проверкой
+ * поля на null.
+ *
+ * Глубина операции - число узлов, с ключами которых сравнивался искомый ключ; TotalDepth и MeanDepth - сумма
+ * и среднее глубин по всем операциям. Вызовы compareTo (или comparator) отдельно не считаются, чтобы не добавлять
+ * счетчик в каждое сравнение, и глубина служит их оценкой: у дерева без префиксов ключей она с ними совпадает, а у
+ * дерева с префиксами (AVLTree(Comparator, ToLongFunction)) это оценка сверху - compareTo вызывается только при
+ * равных префиксах. Ответ из кэша contains (AVLTree.enableLookupCache) записывается с глубиной 0, а у операций через
+ * AVLTree.Finger в глубину входят и сравнения при подъеме по пути (значения больше MAX_HEIGHT попадают в последнюю
+ * ячейку гистограммы). Время измеряется System.nanoTime и попадает в гистограмму
+ * со степенями двойки в качестве границ. Повороты считаются при add и remove; повороты операций на основе join
+ * (split, union, applyBatch и т.п.) не учитываются.
+ *
+ * Счетчики пишет только поток, изменяющий дерево (AVLTree не потокобезопасно), а читать их можно из любого потока,
+ * в том числе через JMX (register). Все значения лежат в AtomicLongArray: единственный писатель увеличивает ячейку
+ * через get и lazySet (упорядоченная запись без CAS и без полного барьера), поэтому читатель видит каждую запись,
+ * пусть и с задержкой, а long не рвется на половины даже на 32-битной JVM. Каждое прочитанное значение - реально
+ * достигнутое, но разные счетчики читаются не одновременно, так что в показаниях MBean и в snapshot() они могут
+ * относиться к немного разным моментам (например, сумма гистограммы времени может на несколько операций расходиться
+ * с числом операций). snapshot() дает копию для программного анализа, например для сравнения двух моментов времени.
+ */
+public class AVLTreeMetrics implements AVLTreeMetricsMBean {
+    private static final int LATENCY_BUCKETS = 65;
+
+    private static final int SMALL_LEFT_TURNS = 0;
+    private static final int SMALL_RIGHT_TURNS = 1;
+    private static final int BIG_LEFT_TURNS = 2;
+    private static final int BIG_RIGHT_TURNS = 3;
+    private static final int ADDS = 4;
+    private static final int REMOVES = 5;
+    private static final int CONTAINS = 6;
+    private static final int TOTAL_DEPTH = 7;
+
+    private final AtomicLongArray counters = new AtomicLongArray(8);
+    private final AtomicLongArray depths = new AtomicLongArray(AVLTree.MAX_HEIGHT + 1);
+    private final AtomicLongArray addLatencies = new AtomicLongArray(LATENCY_BUCKETS);
+    private final AtomicLongArray removeLatencies = new AtomicLongArray(LATENCY_BUCKETS);
+    private final AtomicLongArray containsLatencies = new AtomicLongArray(LATENCY_BUCKETS);
+    private ObjectName name;
+
+    AVLTreeMetrics() {
+    }
+
+    /**
+     * Поворот, который выполнит AVLTree.balance(node), - тот же выбор, что и в balance.
+     */
+    void rotation(AVLTree.Node<?> node) {
+        if (node.balance < 0) {
+            if (node.left.balance <= 0)
+                increment(counters, SMALL_RIGHT_TURNS, 1);
+            else
+                increment(counters, BIG_RIGHT_TURNS, 1);
+        } else {
+            if (node.right.balance >= 0)
+                increment(counters, SMALL_LEFT_TURNS, 1);
+            else
+                increment(counters, BIG_LEFT_TURNS, 1);
+        }
+    }
+
+    void add(long start, int depth) {
+        increment(counters, ADDS, 1);
+        operation(addLatencies, start, depth);
+    }
+
+    void remove(long start, int depth) {
+        increment(counters, REMOVES, 1);
+        operation(removeLatencies, start, depth);
+    }
+
+    void contains(long start, int depth) {
+        increment(counters, CONTAINS, 1);
+        operation(containsLatencies, start, depth);
+    }
+
+    private void operation(AtomicLongArray latencies, long start, int depth) {
+        increment(latencies, 64 - Long.numberOfLeadingZeros(Math.max(0, System.nanoTime() - start)), 1);
+        increment(counters, TOTAL_DEPTH, depth);
+        increment(depths, Math.min(depth, depths.length() - 1), 1);
+    }
+
+    /**
+     * Увеличение ячейки единственным писателем: без CAS, запись упорядочена, но не ждет полного барьера.
+     */
+    private static void increment(AtomicLongArray array, int i, long delta) {
+        array.lazySet(i, array.get(i) + delta);
+    }
+
+    private static void copy(AtomicLongArray from, AtomicLongArray to) {
+        for (int i = 0; i < from.length(); i++)
+            to.lazySet(i, from.get(i));
+    }
+
+    private static long[] toArray(AtomicLongArray array) {
+        long[] result = new long[array.length()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = array.get(i);
+        return result;
+    }
+
+    private static void clear(AtomicLongArray array) {
+        for (int i = 0; i < array.length(); i++)
+            array.set(i, 0);
+    }
+
+    /**
+     * Регистрация в платформенном MBeanServer под именем project:type=AVLTree,name=name.
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        unregister();
+        ObjectName objectName = new ObjectName("project:type=AVLTree,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.name = objectName;
+        return objectName;
+    }
+
+    public synchronized void unregister() throws JMException {
+        if (name != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            name = null;
+        }
+    }
+
+    /**
+     * Копия текущих значений, не связанная с деревом.
+     */
+    public AVLTreeMetrics snapshot() {
+        AVLTreeMetrics snapshot = new AVLTreeMetrics();
+        copy(counters, snapshot.counters);
+        copy(depths, snapshot.depths);
+        copy(addLatencies, snapshot.addLatencies);
+        copy(removeLatencies, snapshot.removeLatencies);
+        copy(containsLatencies, snapshot.containsLatencies);
+        return snapshot;
+    }
+
+    /**
+     * Обнуление счетчиков. Вызывать из потока, изменяющего дерево, иначе часть одновременных событий может
+     * потеряться.
+     */
+    @Override
+    public void reset() {
+        clear(counters);
+        clear(depths);
+        clear(addLatencies);
+        clear(removeLatencies);
+        clear(containsLatencies);
+    }
+
+    @Override
+    public long getSmallLeftTurns() {
+        return counters.get(SMALL_LEFT_TURNS);
+    }
+
+    @Override
+    public long getSmallRightTurns() {
+        return counters.get(SMALL_RIGHT_TURNS);
+    }
+
+    @Override
+    public long getBigLeftTurns() {
+        return counters.get(BIG_LEFT_TURNS);
+    }
+
+    @Override
+    public long getBigRightTurns() {
+        return counters.get(BIG_RIGHT_TURNS);
+    }
+
+    @Override
+    public long getRotations() {
+        return counters.get(SMALL_LEFT_TURNS) + counters.get(SMALL_RIGHT_TURNS) + counters.get(BIG_LEFT_TURNS)
+                + counters.get(BIG_RIGHT_TURNS);
+    }
+
+    @Override
+    public long getAdds() {
+        return counters.get(ADDS);
+    }
+
+    @Override
+    public long getRemoves() {
+        return counters.get(REMOVES);
+    }
+
+    @Override
+    public long getContains() {
+        return counters.get(CONTAINS);
+    }
+
+    @Override
+    public long getTotalDepth() {
+        return counters.get(TOTAL_DEPTH);
+    }
+
+    @Override
+    public double getMeanDepth() {
+        long depth = counters.get(TOTAL_DEPTH);
+        long operations = counters.get(ADDS) + counters.get(REMOVES) + counters.get(CONTAINS);
+        return operations == 0 ? 0 : (double) depth / operations;
+    }
+
+    @Override
+    public long[] getDepthHistogram() {
+        return toArray(depths);
+    }
+
+    @Override
+    public long[] getAddLatencyHistogram() {
+        return toArray(addLatencies);
+    }
+
+    @Override
+    public long[] getRemoveLatencyHistogram() {
+        return toArray(removeLatencies);
+    }
+
+    @Override
+    public long[] getContainsLatencyHistogram() {
+        return toArray(containsLatencies);
+    }
+
+    @Override
+    public long getAddLatencyP99Nanos() {
+        return percentile(toArray(addLatencies), 0.99);
+    }
+
+    @Override
+    public long getRemoveLatencyP99Nanos() {
+        return percentile(toArray(removeLatencies), 0.99);
+    }
+
+    @Override
+    public long getContainsLatencyP99Nanos() {
+        return percentile(toArray(containsLatencies), 0.99);
+    }
+
+    /**
+     * Верхняя граница корзины гистограммы времени, в которую попадает доля q операций (0 < q <= 1), или 0, если
+     * операций не было.
+     */
+    public static long percentile(long[] latencyHistogram, double q) {
+        long total = 0;
+        for (long count : latencyHistogram)
+            total += count;
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < latencyHistogram.length; i++) {
+            seen += latencyHistogram[i];
+            if (seen >= rank && seen > 0)
+                return i == 0 ? 0 : i == 64 ? Long.MAX_VALUE : (1L << i) - 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,55 @@
+package project;
+
+
+/**
+ * Интерфейс JMX для AVLTreeMetrics (стандартный MBean: имя интерфейса - имя класса с суффиксом MBean).
+ */
+public interface AVLTreeMetricsMBean {
+    long getSmallLeftTurns();
+
+    long getSmallRightTurns();
+
+    long getBigLeftTurns();
+
+    long getBigRightTurns();
+
+    /**
+     * Все повороты; большой поворот считается одним поворотом.
+     */
+    long getRotations();
+
+    long getAdds();
+
+    long getRemoves();
+
+    long getContains();
+
+    /**
+     * Сумма глубин всех операций - оценка числа вызовов compareTo (см. AVLTreeMetrics).
+     */
+    long getTotalDepth();
+
+    double getMeanDepth();
+
+    /**
+     * Элемент i - число операций, спуск которых прошел i узлов.
+     */
+    long[] getDepthHistogram();
+
+    /**
+     * Элемент i - число операций длительностью от 2^(i-1) до 2^i - 1 нс (элемент 0 - 0 нс).
+     */
+    long[] getAddLatencyHistogram();
+
+    long[] getRemoveLatencyHistogram();
+
+    long[] getContainsLatencyHistogram();
+
+    long getAddLatencyP99Nanos();
+
+    long getRemoveLatencyP99Nanos();
+
+    long getContainsLatencyP99Nanos();
+
+    void reset();
+}
@@ -0,0 +1,456 @@
+package project;
+
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * АВЛ-дерево с блочными листьями, как у B+-дерева: ключи хранятся в листьях - упорядоченных массивах до blockSize
+ * ключей, а внутренние узлы только направляют поиск. Балансируются (тем же подъемом с поворотами, что у AVLTree:
+ * AVLTree.retraceInsert и retraceDelete) только внутренние узлы, которых в blockSize / 4 .. blockSize раз меньше,
+ * чем ключей, поэтому спуск к листу проходит примерно log2(n / blockSize) узлов вместо log2(n), а внутри листа ключ
+ * ищется двоичным поиском по непрерывному массиву.
+ *
+ * Внутренний узел (Router, наследник AVLTree.Node) хранит в value разделитель: ключи левого поддерева меньше него,
+ * а правого - не меньше. У внутреннего узла всегда два сына, у листа их нет. Листья связаны в список в порядке
+ * ключей, так что итерация - последовательный просмотр их массивов без стека.
+ *
+ * Переполненный лист делится пополам, и его место занимает новый внутренний узел: высота поддерева выросла на 1,
+ * дальше подъем как в AVLTree.add. При добавлении в конец последнего листа новый лист получает только новый ключ,
+ * поэтому упорядоченная загрузка заполняет листья целиком. Лист, в котором осталось меньше blockSize / 4 ключей,
+ * сливается с соседним листом из поддерева брата, если вместе они занимают не больше 3/4 блока, а иначе забирает
+ * у соседа часть ключей. Слияние убирает лист вместе с родителем (подъем как в AVLTree.remove), а перераспределение
+ * меняет только разделитель родителя.
+ *
+ * С префиксами ключей (BlockedAVLTree(int, ToLongFunction), тот же контракт, что у AVLTree(Comparator,
+ * ToLongFunction)) внутренний узел хранит префикс разделителя, а лист - массив префиксов своих ключей, и поиск в
+ * листе - двоичный поиск по long[]: ключи читаются только при совпадении префиксов. Внутренних узлов мало, и они
+ * обычно помещаются в кэш процессора целиком, так что поиск в большом дереве платит промахами кэша в основном за
+ * сам лист, а не за каждый уровень спуска.
+ *
+ * Ключ занимает 4 байта в массиве листа (и 8 байт в массиве префиксов), то есть 4-16 байт при заполнении листа от
+ * целого блока до 1/4; лист и внутренний узел вместе - около 100 байт на blockSize / 4 .. blockSize ключей. Узел
+ * AVLTree занимает 32 байта на ключ. Меньше четверти блока может быть заполнен только последний лист, созданный
+ * добавлением в конец.
+ */
+public class BlockedAVLTree<T extends Comparable<T>> extends AbstractSet<T> {
+    private static final int DEFAULT_BLOCK_SIZE = 64;
+
+    /**
+     * Лист: ключи keys[0..size) по возрастанию; left и right листа всегда null. Все листья, кроме корня, непусты.
+     */
+    private static final class Leaf<T> extends AVLTree.Node<T> {
+        final Object[] keys;
+        final long[] prefixes;// префиксы keys, null - префиксы не кэшируются
+        int size = 0;
+        Leaf<T> prev;
+        Leaf<T> next;
+
+        Leaf(int capacity, boolean prefixes) {
+            super(null);
+            keys = new Object[capacity];
+            this.prefixes = prefixes ? new long[capacity] : null;
+        }
+    }
+
+    /**
+     * Внутренний узел: value - разделитель, prefix - его префикс (0, если префиксы не кэшируются).
+     */
+    private static final class Router<T> extends AVLTree.Node<T> {
+        long prefix;
+
+        Router(T value, long prefix) {
+            super(value);
+            this.prefix = prefix;
+        }
+    }
+
+    private final int blockSize;
+    private final ToLongFunction<? super T> sortPrefix;// null - префиксы ключей не кэшируются
+    private AVLTree.Node<T> root = null;
+    private Leaf<T> first = null;// начало списка листьев
+    private int size = 0;
+    private int modCount = 0;
+
+    public BlockedAVLTree() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockedAVLTree(int blockSize) {
+        this(blockSize, null);
+    }
+
+    /**
+     * Дерево с префиксами ключей: sortPrefix должен быть согласован с естественным порядком, из a.compareTo(b) < 0
+     * следует sortPrefix(a) <= sortPrefix(b). Для Integer и Long подходит само значение (Integer::longValue), и тогда
+     * поиск обращается к ключу только для проверки найденного.
+     */
+    public BlockedAVLTree(int blockSize, ToLongFunction<? super T> sortPrefix) {
+        if (blockSize < 4)
+            throw new IllegalArgumentException("Illegal block size: " + blockSize);
+        this.blockSize = blockSize;
+        this.sortPrefix = sortPrefix;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    private long prefix(T value) {
+        return sortPrefix == null ? 0 : sortPrefix.applyAsLong(value);
+    }
+
+    /**
+     * Сравнение value (с префиксом prefix) с разделителем внутреннего узла: сначала по префиксам, compareTo - только
+     * при их равенстве.
+     */
+    private int compareToRouter(T value, long prefix, AVLTree.Node<T> node) {
+        if (sortPrefix != null) {
+            long routerPrefix = ((Router<T>) node).prefix;
+            if (prefix != routerPrefix)
+                return prefix < routerPrefix ? -1 : 1;
+        }
+        return value.compareTo(node.value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Leaf<T> leaf(T value, long prefix) {
+        AVLTree.Node<T> node = root;
+        while (node.left != null)
+            node = compareToRouter(value, prefix, node) < 0 ? node.left : node.right;
+        return (Leaf<T>) node;
+    }
+
+    /**
+     * Индекс ключа в листе или -(точка вставки) - 1. С префиксами - двоичный поиск первого префикса не меньше
+     * prefix и compareTo только для ключей с равным префиксом.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> int search(Leaf<T> leaf, T value, long prefix) {
+        long[] prefixes = leaf.prefixes;
+        if (prefixes == null)
+            return Arrays.binarySearch(leaf.keys, 0, leaf.size, value);
+        int low = 0;
+        int high = leaf.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (prefixes[middle] < prefix)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        for (; low < leaf.size && prefixes[low] == prefix; low++) {
+            int comparison = value.compareTo((T) leaf.keys[low]);
+            if (comparison == 0)
+                return low;
+            if (comparison < 0)
+                break;
+        }
+        return -low - 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (root == null)
+            return false;
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        long prefix = prefix(t);
+        return search(leaf(t, prefix), t, prefix) >= 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new BlockedAVLTreeIterator();
+    }
+
+    /**
+     * Последовательный просмотр листьев по списку. Изменение дерева в обход итератора обнаруживается по modCount.
+     */
+    public class BlockedAVLTreeIterator implements Iterator<T> {
+        private Leaf<T> leaf = first;
+        private int index = 0;
+        private T last;// последний возвращенный элемент, null - удалять нечего
+        private int expectedModCount = modCount;
+
+        BlockedAVLTreeIterator() {
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (leaf == null)
+                throw new NoSuchElementException();
+            last = (T) leaf.keys[index++];
+            if (index == leaf.size) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            return last;
+        }
+
+        /**
+         * Удаление может слить или перераспределить листья, поэтому после него позиция ищется заново спуском
+         * к первому элементу, большему удаленного.
+         *
+         * Сложность: O(log n).
+         */
+        @Override
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            BlockedAVLTree.this.remove(last);
+            expectedModCount = modCount;
+            if (root == null) {
+                leaf = null;
+            } else {
+                long prefix = prefix(last);
+                leaf = leaf(last, prefix);
+                index = search(leaf, last, prefix);
+                index = index >= 0 ? index + 1 : -index - 1;
+                if (index == leaf.size) {
+                    leaf = leaf.next;
+                    index = 0;
+                }
+            }
+            last = null;
+        }
+    }
+
+    /**
+     * Высота: число внутренних узлов на самом длинном пути от корня плюс лист. Считается спуском по более высокому
+     * поддереву, которое определяется по значению баланса.
+     *
+     * Сложность: O(log n).
+     */
+    public int height() {
+        int height = 0;
+        for (AVLTree.Node<T> node = root; node != null; node = node.balance < 0 ? node.left : node.right)
+            height++;
+        return height;
+    }
+
+    /**
+     * Число листьев.
+     *
+     * Сложность: O(n / blockSize).
+     */
+    int leaves() {
+        int leaves = 0;
+        for (Leaf<T> leaf = first; leaf != null; leaf = leaf.next)
+            leaves++;
+        return leaves;
+    }
+
+    /**
+     * Замена сына old узла parent (корня, если parent == null) на node.
+     */
+    private void replace(AVLTree.Node<T> parent, AVLTree.Node<T> old, AVLTree.Node<T> node) {
+        if (parent == null)
+            root = node;
+        else if (parent.left == old)
+            parent.left = node;
+        else
+            parent.right = node;
+    }
+
+    /**
+     * Копирование length ключей (и их префиксов) из from[fromIndex..] в to[toIndex..]; листы могут совпадать.
+     */
+    private static void copy(Leaf<?> from, int fromIndex, Leaf<?> to, int toIndex, int length) {
+        System.arraycopy(from.keys, fromIndex, to.keys, toIndex, length);
+        if (from.prefixes != null)
+            System.arraycopy(from.prefixes, fromIndex, to.prefixes, toIndex, length);
+    }
+
+    private static void insert(Leaf<?> leaf, int index, Object value, long prefix) {
+        copy(leaf, index, leaf, index + 1, leaf.size - index);
+        leaf.keys[index] = value;
+        if (leaf.prefixes != null)
+            leaf.prefixes[index] = prefix;
+        leaf.size++;
+    }
+
+    /**
+     * Префикс i-го ключа листа.
+     */
+    private static long prefix(Leaf<?> leaf, int i) {
+        return leaf.prefixes == null ? 0 : leaf.prefixes[i];
+    }
+
+    /**
+     * Добавление ключа в лист, а если лист полон - деление листа и подъем с балансировкой, как в AVLTree.add.
+     *
+     * Сложность: O(log n + blockSize).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean add(T t) {
+        if (t == null) throw new NullPointerException();
+        long prefix = prefix(t);
+        if (root == null) {
+            Leaf<T> leaf = new Leaf<>(blockSize, sortPrefix != null);
+            insert(leaf, 0, t, prefix);
+            root = first = leaf;
+            size = 1;
+            modCount++;
+            return true;
+        }
+        AVLTree.Node<T>[] path = AVLTree.newPath();
+        int depth = 0;
+        AVLTree.Node<T> node = root;
+        while (node.left != null) {
+            path[depth++] = node;
+            node = compareToRouter(t, prefix, node) < 0 ? node.left : node.right;
+        }
+        Leaf<T> leaf = (Leaf<T>) node;
+        int index = search(leaf, t, prefix);
+        if (index >= 0)
+            return false;
+        index = -index - 1;
+        size++;
+        modCount++;
+        if (leaf.size < blockSize) {
+            insert(leaf, index, t, prefix);
+            return true;
+        }
+
+        Leaf<T> right = new Leaf<>(blockSize, sortPrefix != null);
+        if (index == blockSize && leaf.next == null) {
+            insert(right, 0, t, prefix);
+        } else {
+            int half = blockSize / 2;
+            copy(leaf, half, right, 0, blockSize - half);
+            Arrays.fill(leaf.keys, half, blockSize, null);
+            right.size = blockSize - half;
+            leaf.size = half;
+            if (index <= half)
+                insert(leaf, index, t, prefix);
+            else
+                insert(right, index - half, t, prefix);
+        }
+        right.next = leaf.next;
+        if (right.next != null)
+            right.next.prev = right;
+        right.prev = leaf;
+        leaf.next = right;
+
+        AVLTree.Node<T> child = new Router<>((T) right.keys[0], prefix(right, 0));
+        child.left = leaf;
+        child.right = right;
+        replace(depth > 0 ? path[depth - 1] : null, leaf, child);
+        path[depth] = child;
+        AVLTree.retraceInsert(path, depth, null);
+        root = path[0];
+        return true;
+    }
+
+    /**
+     * Удаление ключа из листа. Если в листе (не корне) осталось меньше blockSize / 4 ключей, он сливается с соседом
+     * из поддерева брата - с последующим подъемом и балансировкой, как в AVLTree.remove, - или забирает у соседа
+     * половину разницы их размеров.
+     *
+     * Сложность: O(log n + blockSize).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (root == null)
+            return false;
+        T t = (T) o;
+        long prefix = prefix(t);
+        AVLTree.Node<T>[] path = AVLTree.newPath();
+        int depth = 0;
+        AVLTree.Node<T> node = root;
+        while (node.left != null) {
+            path[depth++] = node;
+            node = compareToRouter(t, prefix, node) < 0 ? node.left : node.right;
+        }
+        Leaf<T> leaf = (Leaf<T>) node;
+        int index = search(leaf, t, prefix);
+        if (index < 0)
+            return false;
+        copy(leaf, index + 1, leaf, index, leaf.size - index - 1);
+        leaf.keys[--leaf.size] = null;
+        size--;
+        modCount++;
+        if (depth == 0) {
+            if (leaf.size == 0)
+                root = first = null;
+            return true;
+        }
+        if (leaf.size >= blockSize / 4)
+            return true;
+
+        // сосед из поддерева брата: у левого сына - следующий лист, у правого - предыдущий; их разделяет parent
+        AVLTree.Node<T> parent = path[depth - 1];
+        boolean isLeft = parent.left == leaf;
+        Leaf<T> neighbor = isLeft ? leaf.next : leaf.prev;
+        if (leaf.size + neighbor.size > blockSize * 3 / 4) {
+            int moved = (neighbor.size - leaf.size) / 2;
+            if (isLeft) {
+                copy(neighbor, 0, leaf, leaf.size, moved);
+                copy(neighbor, moved, neighbor, 0, neighbor.size - moved);
+            } else {
+                copy(leaf, 0, leaf, moved, leaf.size);
+                copy(neighbor, neighbor.size - moved, leaf, 0, moved);
+            }
+            Arrays.fill(neighbor.keys, neighbor.size - moved, neighbor.size, null);
+            leaf.size += moved;
+            neighbor.size -= moved;
+            Leaf<T> right = isLeft ? neighbor : leaf;
+            parent.value = (T) right.keys[0];
+            ((Router<T>) parent).prefix = prefix(right, 0);
+            return true;
+        }
+
+        if (isLeft) {
+            copy(neighbor, 0, neighbor, leaf.size, neighbor.size);
+            copy(leaf, 0, neighbor, 0, leaf.size);
+        } else {
+            copy(leaf, 0, neighbor, neighbor.size, leaf.size);
+        }
+        neighbor.size += leaf.size;
+        if (leaf.prev != null)
+            leaf.prev.next = leaf.next;
+        else
+            first = leaf.next;
+        if (leaf.next != null)
+            leaf.next.prev = leaf.prev;
+
+        // место parent занимает поддерево брата, высота которого на 1 меньше
+        AVLTree.Node<T> child = isLeft ? parent.right : parent.left;
+        boolean fromLeft = depth > 1 && path[depth - 2].left == parent;
+        replace(depth > 1 ? path[depth - 2] : null, parent, child);
+        AVLTree.retraceDelete(path, depth - 1, fromLeft, false, null);
+        if (depth > 1)
+            root = path[0];
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = first = null;
+        size = 0;
+        modCount++;
+    }
+}
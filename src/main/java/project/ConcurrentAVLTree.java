@@ -0,0 +1,744 @@
+package project;
+
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасное АВЛ-дерево с оптимистичным чтением по схеме N. G. Bronson, J. Casper, H. Chafi, K. Olukotun
+ * "A Practical Concurrent Binary Search Tree", PPoPP 2010.
+ *
+ * Поиск не берет блокировок. У каждого узла есть версия, которая меняется, когда поворот уменьшает диапазон
+ * ключей поддерева узла (узел "сжимается") или когда узел удаляется из дерева. Спускаясь, поток запоминает версию
+ * узла, читает ссылку на ребенка и перепроверяет версию: если она не изменилась, переход был корректным, и узел
+ * можно больше не проверять. Если изменилась, поиск повторяется с родителя. Так add, remove и contains
+ * линеаризуемы.
+ *
+ * Изменения блокируют только узлы, которые меняют: вставка - будущего родителя, удаление - узел и его родителя,
+ * поворот - узел, его родителя и ребенка (и внука при двойном повороте). Блокировки берутся сверху вниз.
+ *
+ * Балансировка ослаблена: высоты хранятся в узлах и исправляются после изменения отдельными шагами, а поворот
+ * выполняется, только если разница высот детей превысила 1 по прочитанным значениям. Узел с двумя детьми при
+ * удалении не вырезается, а только помечается отсутствующим (маршрутный узел) и вырезается позже, когда у него
+ * останется не больше одного ребенка. Когда все операции завершены, дерево снова является АВЛ-деревом.
+ *
+ * size() складывает счетчик LongAdder и при одновременных изменениях возвращает приблизительное значение.
+ * Итератор слабо согласован: каждый шаг - поиск следующего ключа за O(log n), элементы не повторяются и идут
+ * по возрастанию.
+ */
+public class ConcurrentAVLTree<T extends Comparable<T>> extends AbstractSet<T> {
+
+    private static final long SHRINKING = 1L;// идет поворот, уменьшающий диапазон ключей поддерева узла
+    private static final long UNLINKED = 2L;// узел удален из дерева; эта версия больше не меняется
+    private static final long SHRINK_COUNT_INCR = 4L;
+
+    private static final int SPIN_COUNT = 100;
+
+    // результаты попыток; RETRY - версия узла изменилась, и попытку нужно повторить с родителя
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int RETRY = 2;
+
+    // состояния узла при ребалансировке; неотрицательное значение - новая высота узла
+    private static final int UNLINK_REQUIRED = -1;
+    private static final int REBALANCE_REQUIRED = -2;
+    private static final int NOTHING_REQUIRED = -3;
+
+    private static final class Node<T> {
+        final T key;
+        volatile int height;
+        volatile long version;
+        volatile boolean present;// false - маршрутный узел, ключа во множестве нет
+        volatile Node<T> parent;
+        volatile Node<T> left;
+        volatile Node<T> right;
+
+        private Node(T key, Node<T> parent) {
+            this.key = key;
+            this.height = 1;
+            this.version = 0;
+            this.present = true;
+            this.parent = parent;
+        }
+
+        Node<T> child(boolean toLeft) {
+            return toLeft ? left : right;
+        }
+
+        void setChild(boolean toLeft, Node<T> child) {
+            if (toLeft)
+                left = child;
+            else
+                right = child;
+        }
+
+        /**
+         * Ожидание конца поворота, начатого до чтения версии ovl. Поворачивающий поток держит блокировку узла,
+         * поэтому после короткого ожидания достаточно дождаться этой блокировки.
+         */
+        void waitUntilShrinkCompleted(long ovl) {
+            if ((ovl & SHRINKING) == 0)
+                return;
+            for (int i = 0; i < SPIN_COUNT; i++) {
+                if (version != ovl)
+                    return;
+            }
+            synchronized (this) {
+                // поворот выполняется под блокировкой узла
+            }
+        }
+    }
+
+    /**
+     * Фиктивный узел, правый ребенок которого - корень. Он никогда не поворачивается и не удаляется, поэтому
+     * корень можно менять так же, как любого другого ребенка.
+     */
+    private final Node<T> rootHolder = new Node<>(null, null);
+    private final LongAdder size = new LongAdder();
+    private final Node<T> retryNode = new Node<>(null, null);// результат RETRY для attemptSuccessor
+
+    private static boolean isUnlinked(long ovl) {
+        return ovl == UNLINKED;
+    }
+
+    private static boolean isShrinkingOrUnlinked(long ovl) {
+        return (ovl & (SHRINKING | UNLINKED)) != 0;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, size.sum()));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return successor(null) == null;
+    }
+
+    /**
+     * Высота дерева по хранимым высотам. При одновременных изменениях может отличаться от фактической.
+     *
+     * Сложность: O(1).
+     */
+    public int height() {
+        return height(rootHolder.right);
+    }
+
+    /**
+     * Поиск без блокировок.
+     *
+     * Сложность: O(log n).
+     */
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        if (t == null) throw new NullPointerException();
+        return attemptGet(t, rootHolder, false, rootHolder.version) == TRUE;
+    }
+
+    /**
+     * Поиск key в поддереве ребенка node с направлением toLeft. nodeOVL - версия node, прочитанная до перехода к
+     * нему; если она изменилась, переход к node мог оказаться неверным, и возвращается RETRY.
+     */
+    private int attemptGet(T key, Node<T> node, boolean toLeft, long nodeOVL) {
+        while (true) {
+            Node<T> child = node.child(toLeft);
+            if (child == null) {
+                if (node.version != nodeOVL)
+                    return RETRY;
+                return FALSE;
+            }
+            int comparison = key.compareTo(child.key);
+            if (comparison == 0)
+                return child.present ? TRUE : FALSE;
+            long childOVL = child.version;
+            if (isShrinkingOrUnlinked(childOVL)) {
+                child.waitUntilShrinkCompleted(childOVL);
+                if (node.version != nodeOVL)
+                    return RETRY;
+            } else if (child != node.child(toLeft)) {
+                if (node.version != nodeOVL)
+                    return RETRY;
+            } else {
+                if (node.version != nodeOVL)
+                    return RETRY;
+                // переход node -> child подтвержден версией node, дальше проверяется только версия child
+                int result = attemptGet(key, child, comparison < 0, childOVL);
+                if (result != RETRY)
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * Вставка блокирует только будущего родителя нового листа.
+     *
+     * Сложность: O(log n).
+     */
+    @Override
+    public boolean add(T t) {
+        if (t == null) throw new NullPointerException();
+        while (true) {
+            int result = attemptUpdate(t, true, rootHolder, rootHolder.version);
+            if (result != RETRY) {
+                if (result == TRUE)
+                    size.increment();
+                return result == TRUE;
+            }
+        }
+    }
+
+    /**
+     * Узел с не более чем одним ребенком вырезается под блокировками родителя и самого узла, узел с двумя детьми
+     * становится маршрутным.
+     *
+     * Сложность: O(log n).
+     */
+    @Override
+    public boolean remove(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        if (t == null) throw new NullPointerException();
+        while (true) {
+            int result = attemptUpdate(t, false, rootHolder, rootHolder.version);
+            if (result != RETRY) {
+                if (result == TRUE)
+                    size.decrement();
+                return result == TRUE;
+            }
+        }
+    }
+
+    /**
+     * Спуск такой же, как в attemptGet, но найденный узел или место вставки изменяется под блокировкой.
+     * Для корня node - rootHolder, и переход всегда идет направо.
+     */
+    private int attemptUpdate(T key, boolean adding, Node<T> node, long nodeOVL) {
+        boolean toLeft = node != rootHolder && key.compareTo(node.key) < 0;
+        while (true) {
+            Node<T> child = node.child(toLeft);
+            if (node.version != nodeOVL)
+                return RETRY;
+            if (child == null) {
+                if (!adding)
+                    return FALSE;
+                Node<T> damaged;
+                synchronized (node) {
+                    if (node.version != nodeOVL)
+                        return RETRY;
+                    if (node.child(toLeft) != null)
+                        continue;// другой поток успел вставить ребенка
+                    node.setChild(toLeft, new Node<>(key, node));
+                    damaged = fixHeight(node);
+                }
+                fixHeightAndRebalance(damaged);
+                return TRUE;
+            }
+
+            int comparison = key.compareTo(child.key);
+            if (comparison == 0) {
+                int result = attemptNodeUpdate(adding, node, child);
+                if (result != RETRY)
+                    return result;
+                if (node.version != nodeOVL)
+                    return RETRY;
+                continue;
+            }
+            long childOVL = child.version;
+            if (isShrinkingOrUnlinked(childOVL)) {
+                child.waitUntilShrinkCompleted(childOVL);
+            } else if (child == node.child(toLeft)) {
+                if (node.version != nodeOVL)
+                    return RETRY;
+                int result = attemptUpdate(key, adding, child, childOVL);
+                if (result != RETRY)
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * Изменение найденного узла node. parent нужен только для вырезания узла.
+     */
+    private int attemptNodeUpdate(boolean adding, Node<T> parent, Node<T> node) {
+        if (adding) {
+            synchronized (node) {
+                if (isUnlinked(node.version))
+                    return RETRY;
+                if (node.present)
+                    return FALSE;
+                node.present = true;
+                return TRUE;
+            }
+        }
+
+        if (!node.present)
+            return FALSE;
+        if (node.left == null || node.right == null) {
+            Node<T> damaged;
+            synchronized (parent) {
+                if (isUnlinked(parent.version) || node.parent != parent)
+                    return RETRY;
+                synchronized (node) {
+                    if (!node.present)
+                        return FALSE;
+                    if (!attemptUnlink(parent, node))
+                        return RETRY;
+                }
+                damaged = fixHeight(parent);
+            }
+            fixHeightAndRebalance(damaged);
+            return TRUE;
+        }
+
+        synchronized (node) {
+            if (isUnlinked(node.version))
+                return RETRY;
+            if (!node.present)
+                return FALSE;
+            if (node.left == null || node.right == null)
+                return RETRY;// узел теперь можно вырезать
+            node.present = false;
+            return TRUE;
+        }
+    }
+
+    /**
+     * Вырезание узла с не более чем одним ребенком. parent и node должны быть заблокированы. Высоты не меняются.
+     */
+    private boolean attemptUnlink(Node<T> parent, Node<T> node) {
+        Node<T> parentLeft = parent.left;
+        if (parentLeft != node && parent.right != node)
+            return false;
+        Node<T> left = node.left;
+        Node<T> right = node.right;
+        if (left != null && right != null)
+            return false;
+        Node<T> splice = left != null ? left : right;
+
+        if (parentLeft == node)
+            parent.left = splice;
+        else
+            parent.right = splice;
+        if (splice != null)
+            splice.parent = parent;
+
+        node.version = UNLINKED;
+        node.present = false;
+        return true;
+    }
+
+    /**
+     * Какое исправление нужно узлу: вырезать его, повернуть, записать новую высоту (неотрицательное значение) или
+     * ничего. Чтение не атомарно, но поток, изменивший узел или его детей, сам отвечает за их исправление.
+     */
+    private int nodeCondition(Node<T> node) {
+        Node<T> left = node.left;
+        Node<T> right = node.right;
+        if ((left == null || right == null) && !node.present)
+            return UNLINK_REQUIRED;
+        int height = node.height;
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        int newHeight = 1 + Math.max(leftHeight, rightHeight);
+        int balance = leftHeight - rightHeight;
+        if (balance < -1 || balance > 1)
+            return REBALANCE_REQUIRED;
+        return height != newHeight ? newHeight : NOTHING_REQUIRED;
+    }
+
+    /**
+     * Подъем от поврежденного узла к корню, пока есть что исправлять. Высота исправляется под блокировкой самого
+     * узла, поворот и вырезание - под блокировками родителя и узла.
+     *
+     * Поворот может вернуть более глубокий поврежденный узел, оставив устаревшей высоту своего родителя. Если
+     * исправление глубокого узла не меняет его высоту, подъем остановился бы ниже этого родителя, поэтому после
+     * поворота подъем продолжается до корня, пропуская узлы, которым ничего не нужно.
+     */
+    private void fixHeightAndRebalance(Node<T> node) {
+        boolean rebalanced = false;
+        while (node != null && node.parent != null) {
+            int condition = nodeCondition(node);
+            if (isUnlinked(node.version))
+                return;
+            if (condition == NOTHING_REQUIRED) {
+                if (!rebalanced)
+                    return;
+                node = node.parent;
+            } else if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED) {
+                synchronized (node) {
+                    Node<T> next = fixHeight(node);
+                    node = next != null || !rebalanced ? next : node.parent;
+                }
+            } else {
+                Node<T> parent = node.parent;
+                synchronized (parent) {
+                    if (!isUnlinked(parent.version) && node.parent == parent) {
+                        synchronized (node) {
+                            rebalanced = true;
+                            Node<T> next = rebalance(parent, node);
+                            node = next != null ? next : parent;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Исправление высоты заблокированного узла. Возвращает следующий узел, за который отвечает поток, или null.
+     */
+    private Node<T> fixHeight(Node<T> node) {
+        int condition = nodeCondition(node);
+        switch (condition) {
+            case REBALANCE_REQUIRED:
+            case UNLINK_REQUIRED:
+                return node;
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.height = condition;
+                return node.parent;
+        }
+    }
+
+    /**
+     * parent и node заблокированы. Возвращает следующий поврежденный узел или null.
+     */
+    private Node<T> rebalance(Node<T> parent, Node<T> node) {
+        Node<T> left = node.left;
+        Node<T> right = node.right;
+        if ((left == null || right == null) && !node.present) {
+            if (attemptUnlink(parent, node))
+                return fixHeight(parent);
+            return node;
+        }
+
+        int height = node.height;
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        int newHeight = 1 + Math.max(leftHeight, rightHeight);
+        int balance = leftHeight - rightHeight;
+        if (balance > 1)
+            return rebalanceToRight(parent, node, left, rightHeight);
+        if (balance < -1)
+            return rebalanceToLeft(parent, node, right, leftHeight);
+        if (newHeight != height) {
+            node.height = newHeight;
+            return fixHeight(parent);
+        }
+        return null;
+    }
+
+    /**
+     * Левое поддерево node слишком высокое: малый правый поворот или, если выше внутренний внук, большой.
+     */
+    private Node<T> rebalanceToRight(Node<T> parent, Node<T> node, Node<T> left, int rightHeight) {
+        synchronized (left) {
+            int leftHeight = left.height;
+            if (leftHeight - rightHeight <= 1)
+                return node;
+            Node<T> leftRight = left.right;
+            int leftLeftHeight = height(left.left);
+            int leftRightHeight = height(leftRight);
+            if (leftLeftHeight >= leftRightHeight)
+                return rotateRight(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+
+            synchronized (leftRight) {
+                leftRightHeight = leftRight.height;
+                if (leftLeftHeight >= leftRightHeight)
+                    return rotateRight(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+                int leftRightLeftHeight = height(leftRight.left);
+                int balance = leftLeftHeight - leftRightLeftHeight;
+                if (balance >= -1 && balance <= 1
+                        && !((leftLeftHeight == 0 || leftRightLeftHeight == 0) && !left.present))
+                    return rotateRightOverLeft(parent, node, left, rightHeight, leftLeftHeight, leftRight,
+                            leftRightLeftHeight);
+                // большой поворот оставил бы left поврежденным: сначала left поворачивается налево, а малый правый
+                // поворот node выполнится на следующем шаге подъема
+                return rotateLeft(node, left, leftLeftHeight, leftRight, leftRight.left, leftRightLeftHeight,
+                        height(leftRight.right));
+            }
+        }
+    }
+
+    private Node<T> rebalanceToLeft(Node<T> parent, Node<T> node, Node<T> right, int leftHeight) {
+        synchronized (right) {
+            int rightHeight = right.height;
+            if (leftHeight - rightHeight >= -1)
+                return node;
+            Node<T> rightLeft = right.left;
+            int rightLeftHeight = height(rightLeft);
+            int rightRightHeight = height(right.right);
+            if (rightRightHeight >= rightLeftHeight)
+                return rotateLeft(parent, node, leftHeight, right, rightLeft, rightLeftHeight, rightRightHeight);
+
+            synchronized (rightLeft) {
+                rightLeftHeight = rightLeft.height;
+                if (rightRightHeight >= rightLeftHeight)
+                    return rotateLeft(parent, node, leftHeight, right, rightLeft, rightLeftHeight, rightRightHeight);
+                int rightLeftRightHeight = height(rightLeft.right);
+                int balance = rightRightHeight - rightLeftRightHeight;
+                if (balance >= -1 && balance <= 1
+                        && !((rightRightHeight == 0 || rightLeftRightHeight == 0) && !right.present))
+                    return rotateLeftOverRight(parent, node, leftHeight, right, rightLeft, rightRightHeight,
+                            rightLeftRightHeight);
+                return rotateRight(node, right, rightLeft, rightRightHeight, height(rightLeft.left),
+                        rightLeft.right, rightLeftRightHeight);
+            }
+        }
+    }
+
+    private void replaceChild(Node<T> parent, Node<T> oldChild, Node<T> newChild) {
+        if (parent.left == oldChild)
+            parent.left = newChild;
+        else
+            parent.right = newChild;
+        newChild.parent = parent;
+    }
+
+    /**
+     * Малый правый поворот. node сжимается: его поддерево теряет ключи left и левого внука, поэтому на время
+     * поворота у node выставлен флаг SHRINKING, а после поворота увеличивается версия.
+     */
+    private Node<T> rotateRight(Node<T> parent, Node<T> node, Node<T> left, int rightHeight,
+                                int leftLeftHeight, Node<T> leftRight, int leftRightHeight) {
+        long nodeOVL = node.version;
+        node.version = nodeOVL | SHRINKING;
+
+        node.left = leftRight;
+        if (leftRight != null)
+            leftRight.parent = node;
+        left.right = node;
+        node.parent = left;
+        replaceChild(parent, node, left);
+
+        int nodeHeight = 1 + Math.max(leftRightHeight, rightHeight);
+        node.height = nodeHeight;
+        left.height = 1 + Math.max(leftLeftHeight, nodeHeight);
+
+        node.version = nodeOVL + SHRINK_COUNT_INCR;
+
+        // сначала исправляется самый глубокий из поврежденных узлов
+        int nodeBalance = leftRightHeight - rightHeight;
+        if (nodeBalance < -1 || nodeBalance > 1)
+            return node;
+        if ((leftRight == null || rightHeight == 0) && !node.present)
+            return node;
+        int leftBalance = leftLeftHeight - nodeHeight;
+        if (leftBalance < -1 || leftBalance > 1)
+            return left;
+        if (leftLeftHeight == 0 && !left.present)
+            return left;
+        return fixHeight(parent);
+    }
+
+    private Node<T> rotateLeft(Node<T> parent, Node<T> node, int leftHeight, Node<T> right,
+                               Node<T> rightLeft, int rightLeftHeight, int rightRightHeight) {
+        long nodeOVL = node.version;
+        node.version = nodeOVL | SHRINKING;
+
+        node.right = rightLeft;
+        if (rightLeft != null)
+            rightLeft.parent = node;
+        right.left = node;
+        node.parent = right;
+        replaceChild(parent, node, right);
+
+        int nodeHeight = 1 + Math.max(leftHeight, rightLeftHeight);
+        node.height = nodeHeight;
+        right.height = 1 + Math.max(nodeHeight, rightRightHeight);
+
+        node.version = nodeOVL + SHRINK_COUNT_INCR;
+
+        int nodeBalance = rightLeftHeight - leftHeight;
+        if (nodeBalance < -1 || nodeBalance > 1)
+            return node;
+        if ((rightLeft == null || leftHeight == 0) && !node.present)
+            return node;
+        int rightBalance = rightRightHeight - nodeHeight;
+        if (rightBalance < -1 || rightBalance > 1)
+            return right;
+        if (rightRightHeight == 0 && !right.present)
+            return right;
+        return fixHeight(parent);
+    }
+
+    /**
+     * Большой правый поворот: сжимаются и node, и left.
+     */
+    private Node<T> rotateRightOverLeft(Node<T> parent, Node<T> node, Node<T> left, int rightHeight,
+                                        int leftLeftHeight, Node<T> leftRight, int leftRightLeftHeight) {
+        long nodeOVL = node.version;
+        long leftOVL = left.version;
+        Node<T> leftRightLeft = leftRight.left;
+        Node<T> leftRightRight = leftRight.right;
+        int leftRightRightHeight = height(leftRightRight);
+
+        node.version = nodeOVL | SHRINKING;
+        left.version = leftOVL | SHRINKING;
+
+        node.left = leftRightRight;
+        if (leftRightRight != null)
+            leftRightRight.parent = node;
+        left.right = leftRightLeft;
+        if (leftRightLeft != null)
+            leftRightLeft.parent = left;
+        leftRight.left = left;
+        left.parent = leftRight;
+        leftRight.right = node;
+        node.parent = leftRight;
+        replaceChild(parent, node, leftRight);
+
+        int nodeHeight = 1 + Math.max(leftRightRightHeight, rightHeight);
+        node.height = nodeHeight;
+        int leftHeight = 1 + Math.max(leftLeftHeight, leftRightLeftHeight);
+        left.height = leftHeight;
+        leftRight.height = 1 + Math.max(leftHeight, nodeHeight);
+
+        node.version = nodeOVL + SHRINK_COUNT_INCR;
+        left.version = leftOVL + SHRINK_COUNT_INCR;
+
+        int nodeBalance = leftRightRightHeight - rightHeight;
+        if (nodeBalance < -1 || nodeBalance > 1)
+            return node;
+        if ((leftRightRight == null || rightHeight == 0) && !node.present)
+            return node;
+        int balance = leftHeight - nodeHeight;
+        if (balance < -1 || balance > 1)
+            return leftRight;
+        return fixHeight(parent);
+    }
+
+    private Node<T> rotateLeftOverRight(Node<T> parent, Node<T> node, int leftHeight, Node<T> right,
+                                        Node<T> rightLeft, int rightRightHeight, int rightLeftRightHeight) {
+        long nodeOVL = node.version;
+        long rightOVL = right.version;
+        Node<T> rightLeftLeft = rightLeft.left;
+        Node<T> rightLeftRight = rightLeft.right;
+        int rightLeftLeftHeight = height(rightLeftLeft);
+
+        node.version = nodeOVL | SHRINKING;
+        right.version = rightOVL | SHRINKING;
+
+        node.right = rightLeftLeft;
+        if (rightLeftLeft != null)
+            rightLeftLeft.parent = node;
+        right.left = rightLeftRight;
+        if (rightLeftRight != null)
+            rightLeftRight.parent = right;
+        rightLeft.right = right;
+        right.parent = rightLeft;
+        rightLeft.left = node;
+        node.parent = rightLeft;
+        replaceChild(parent, node, rightLeft);
+
+        int nodeHeight = 1 + Math.max(leftHeight, rightLeftLeftHeight);
+        node.height = nodeHeight;
+        int rightHeight = 1 + Math.max(rightLeftRightHeight, rightRightHeight);
+        right.height = rightHeight;
+        rightLeft.height = 1 + Math.max(nodeHeight, rightHeight);
+
+        node.version = nodeOVL + SHRINK_COUNT_INCR;
+        right.version = rightOVL + SHRINK_COUNT_INCR;
+
+        int nodeBalance = rightLeftLeftHeight - leftHeight;
+        if (nodeBalance < -1 || nodeBalance > 1)
+            return node;
+        if ((rightLeftLeft == null || leftHeight == 0) && !node.present)
+            return node;
+        int balance = rightHeight - nodeHeight;
+        if (balance < -1 || balance > 1)
+            return rightLeft;
+        return fixHeight(parent);
+    }
+
+    /**
+     * Наименьший присутствующий ключ, больший key (или наименьший, если key == null). Спуск без блокировок с той
+     * же проверкой версий, что в attemptGet.
+     *
+     * Сложность: O(log n), если маршрутных узлов немного.
+     */
+    private T successor(T key) {
+        while (true) {
+            Node<T> result = attemptSuccessor(key, rootHolder, false, rootHolder.version);
+            if (result != retryNode)
+                return result == null ? null : result.key;
+        }
+    }
+
+    private Node<T> attemptSuccessor(T key, Node<T> node, boolean toLeft, long nodeOVL) {
+        while (true) {
+            Node<T> child = node.child(toLeft);
+            if (child == null)
+                return node.version != nodeOVL ? retryNode : null;
+            long childOVL = child.version;
+            if (isShrinkingOrUnlinked(childOVL)) {
+                child.waitUntilShrinkCompleted(childOVL);
+                if (node.version != nodeOVL)
+                    return retryNode;
+                continue;
+            }
+            if (child != node.child(toLeft) || node.version != nodeOVL) {
+                if (node.version != nodeOVL)
+                    return retryNode;
+                continue;
+            }
+
+            Node<T> result;
+            if (key == null || key.compareTo(child.key) < 0) {
+                result = attemptSuccessor(key, child, true, childOVL);
+                if (result == null) {
+                    if (child.present)
+                        return child;
+                    result = attemptSuccessor(key, child, false, childOVL);
+                }
+            } else {
+                result = attemptSuccessor(key, child, false, childOVL);
+            }
+            if (result != retryNode)
+                return result;
+        }
+    }
+
+    /**
+     * Слабо согласованный итератор: следующий элемент ищется заново от корня как наименьший ключ, больший
+     * предыдущего, поэтому итератор не ломается при одновременных изменениях.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private T next = successor(null);
+            private T last;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                last = next;
+                next = successor(last);
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null)
+                    throw new IllegalStateException();
+                ConcurrentAVLTree.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
@@ -0,0 +1,332 @@
+package project;
+
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * АВЛ-дерево для примитивных ключей long.
+ *
+ * Повторяет устройство AVLTree (тот же спуск с массивом пути, та же корректировка балансов и те же повороты), но
+ * хранит значение прямо в узле и сравнивает ключи без упаковки в Long и без вызова compareTo.
+ */
+public class LongAVLTree {
+
+    private static class Node {
+        long value;
+        Node left;
+        Node right;
+        int balance;
+
+        private Node(long value) {
+            this.value = value;
+            left = null;
+            right = null;
+            balance = 0;// значение баланса показывает, на сколько правое поддерево узла больше левого
+        }
+    }
+
+    private Node root = null;
+    private int size = 0;
+
+    private static Node[] newPath() {
+        return new Node[AVLTree.MAX_HEIGHT];
+    }
+
+    private Node find(long value) {
+        Node node = root;
+        while (node != null) {
+            if (value == node.value)
+                return node;
+            node = value < node.value ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public boolean contains(long value) {
+        return find(value) != null;
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongAVLTreeIterator();
+    }
+
+    public class LongAVLTreeIterator implements PrimitiveIterator.OfLong {
+        private final Node[] stack = newPath();
+        private int depth = 0;
+
+        LongAVLTreeIterator() {
+            pushToLeft(root);
+        }
+
+        private void pushToLeft(Node node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node current = stack[--depth];
+            pushToLeft(current.right);
+            return current.value;
+        }
+    }
+
+    public long[] toLongArray() {
+        long[] result = new long[size];
+        PrimitiveIterator.OfLong it = this.iterator();
+        for (int i = 0; i < size; i++) {
+            result[i] = it.nextLong();
+        }
+        return result;
+    }
+
+    /**
+     * Высота считается спуском по более высокому поддереву, которое определяется по значению баланса.
+     *
+     * Сложность: O(log n).
+     */
+    public int height() {
+        int height = 0;
+        for (Node node = root; node != null; node = node.balance < 0 ? node.left : node.right)
+            height++;
+        return height;
+    }
+
+    /**
+     * Добавление узла. Алгоритм тот же, что в AVLTree.add.
+     *
+     * Сложность: O(log n).
+     */
+    public boolean add(long t) {
+        Node[] path = newPath();
+        int depth = 0;
+        Node node = root;
+        while (node != null) {
+            if (t == node.value)
+                return false;
+            path[depth++] = node;
+            node = t < node.value ? node.left : node.right;
+        }
+
+        Node child = new Node(t);
+        if (depth == 0)
+            root = child;
+        else if (t < path[depth - 1].value)
+            path[depth - 1].left = child;
+        else
+            path[depth - 1].right = child;
+        size++;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            Node begin = path[i];
+            if (begin.left == child)
+                begin.balance--;
+            else
+                begin.balance++;
+            if (begin.balance == 0)
+                break;
+            if (Math.abs(begin.balance) == 2) {
+                replace(path, i, balance(begin));
+                break;
+            }
+            child = begin;
+        }
+        return true;
+    }
+
+    private void replace(Node[] path, int i, Node node) {
+        if (i == 0)
+            root = node;
+        else if (path[i - 1].left == path[i])
+            path[i - 1].left = node;
+        else
+            path[i - 1].right = node;
+    }
+
+    /**
+     * Удаление узла. Алгоритм тот же, что в AVLTree.remove.
+     *
+     * Сложность: O(log n).
+     */
+    public boolean remove(long t) {
+        Node[] path = newPath();
+        int depth = 0;
+        Node node = root;
+        while (node != null) {
+            if (t == node.value)
+                break;
+            path[depth++] = node;
+            node = t < node.value ? node.left : node.right;
+        }
+        if (node == null)
+            return false;
+
+        if (node.left != null && node.right != null) {
+            Node target = node;
+            path[depth++] = node;
+            node = node.right;
+            while (node.left != null) {
+                path[depth++] = node;
+                node = node.left;
+            }
+            target.value = node.value;
+        }
+
+        Node child = node.left != null ? node.left : node.right;
+        boolean fromLeft = depth > 0 && path[depth - 1].left == node;
+        if (depth == 0)
+            root = child;
+        else if (fromLeft)
+            path[depth - 1].left = child;
+        else
+            path[depth - 1].right = child;
+        size--;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            Node begin = path[i];
+            if (i < depth - 1)
+                fromLeft = begin.left == child;
+            begin.balance += fromLeft ? 1 : -1;
+            child = begin;
+            if (Math.abs(begin.balance) == 2) {
+                child = balance(begin);
+                replace(path, i, child);
+            }
+            if (child.balance != 0)
+                break;
+        }
+        return true;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    private Node balance(Node node) {
+        if (node.balance == -2) {
+            if (node.left.balance <= 0)
+                node = smallRightTurn(node);
+            else
+                node = bigRightTurn(node);
+        } else if (node.balance == 2) {
+            if (node.right.balance >= 0) {
+                node = smallLeftTurn(node);
+            } else {
+                node = bigLeftTurn(node);
+            }
+        }
+
+        return node;
+    }
+
+    private Node smallLeftTurn(Node begin) {
+        Node node = begin;
+        begin = begin.right;
+        node.right = begin.left;
+        begin.left = node;
+
+        if (begin.balance == 1) {
+            begin.balance = 0;
+            begin.left.balance = 0;
+        } else {
+            begin.balance = -1;
+            begin.left.balance = 1;
+        }
+        return begin;
+    }
+
+    private Node smallRightTurn(Node begin) {
+        Node node = begin;
+        begin = begin.left;
+        node.left = begin.right;
+        begin.right = node;
+
+        if (begin.balance == -1) {
+            begin.balance = 0;
+            begin.right.balance = 0;
+        } else {
+            begin.balance = 1;
+            begin.right.balance = -1;
+        }
+        return begin;
+    }
+
+    private Node bigLeftTurn(Node begin) {
+        Node left = begin;
+        Node right = begin.right;
+        begin = begin.right.left;
+        left.right = begin.left;
+        right.left = begin.right;
+        begin.left = left;
+        begin.right = right;
+
+        if (begin.balance == 0) {
+            begin.right.balance = 0;
+            begin.left.balance = 0;
+        } else if (begin.balance == -1) {
+            begin.balance = 0;
+            begin.right.balance = 1;
+            begin.left.balance = 0;
+        } else {
+            begin.balance = 0;
+            begin.right.balance = 0;
+            begin.left.balance = -1;
+        }
+        return begin;
+    }
+
+    private Node bigRightTurn(Node begin) {
+        Node right = begin;
+        Node left = begin.left;
+        begin = begin.left.right;
+        right.left = begin.right;
+        left.right = begin.left;
+        begin.left = left;
+        begin.right = right;
+
+        if (begin.balance == 0) {
+            begin.right.balance = 0;
+            begin.left.balance = 0;
+        } else if (begin.balance == 1) {
+            begin.balance = 0;
+            begin.right.balance = 0;
+            begin.left.balance = -1;
+        } else {
+            begin.balance = 0;
+            begin.right.balance = 1;
+            begin.left.balance = 0;
+        }
+        return begin;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        PrimitiveIterator.OfLong it = this.iterator();
+        while (it.hasNext()) {
+            result.append(it.nextLong());
+            if (it.hasNext()) result.append(", ");
+        }
+        result.append("]");
+        return result.toString();
+    }
+}
@@ -0,0 +1,231 @@
+package project;
+
+
+import java.util.Arrays;
+
+/**
+ * Кэш результатов contains перед AVLTree (AVLTree.enableLookupCache): для недавно запрошенных ключей хранится,
+ * есть ли ключ в дереве, так что повторный запрос горячего ключа - это поиск в небольшой хеш-таблице вместо спуска
+ * на 20-30 уровней. Запоминаются и попадания, и промахи дерева.
+ *
+ * Таблица множественно-ассоциативная: ключ по хешу попадает в один набор из WAYS ячеек и может лежать только в нем.
+ * Если набор заполнен, вытесняется ячейка по выбранной политике: CLOCK (второй шанс: ячейка с битом обращения
+ * пропускается, а бит сбрасывается) или LRU (ячейка с самым давним обращением).
+ *
+ * Кэш всегда согласован с деревом. Ключи в кэше сравниваются через equals и hashCode, а в дереве - через порядок
+ * дерева, поэтому точечно кэш обновляется только у дерева с естественным порядком (он должен быть согласован
+ * с equals, как того требует и контракт Set): add и remove записывают новое значение для своего ключа, если он есть
+ * в кэше. У дерева с компаратором (например, String.CASE_INSENSITIVE_ORDER) в кэше может лежать другой, равный по
+ * компаратору ключ, и его add и remove, как и любое другое изменение дерева (clear, addAll, removeIf, split,
+ * applyBatch и т.п.), обнаруживаются по modCount дерева и очищают кэш целиком при следующем обращении.
+ *
+ * Ячейка хранит сам ключ, если он есть в дереве, или неизменяемую обертку Absent, если его нет: ответ и ключ
+ * записываются одной ссылкой, поэтому несколько потоков могут одновременно вызывать contains у дерева, которое
+ * никто не изменяет, как и без кэша; счетчики статистики при этом приблизительны. Рядом с ячейками хранятся хеши
+ * ключей, и equals (с переходом по ссылке к ключу) вызывается только для ячеек с совпавшим хешем.
+ */
+public class LookupCache {
+    public enum Eviction {
+        CLOCK,
+        LRU
+    }
+
+    static final int WAYS = 4;
+    static final int ABSENT = 0;
+    static final int PRESENT = 1;
+    static final int UNKNOWN = -1;
+
+    /**
+     * Ключ, которого нет в дереве.
+     */
+    private static final class Absent {
+        final Object key;
+
+        Absent(Object key) {
+            this.key = key;
+        }
+    }
+
+    private final Object[] entries;// ключ, Absent или null
+    private final int[] hashes;
+    private final int mask;// число наборов - 1
+    private final Eviction eviction;
+    private final boolean[] referenced;// CLOCK: бит обращения ячейки
+    private final byte[] hands;// CLOCK: стрелка каждого набора
+    private final long[] lastUse;// LRU: время последнего обращения к ячейке
+    private long clock = 0;
+    int modCount;// modCount дерева, с которым согласован кэш
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    LookupCache(int capacity, Eviction eviction, int modCount) {
+        if (capacity < WAYS)
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        if (eviction == null) throw new NullPointerException();
+        int sets = Integer.highestOneBit(capacity / WAYS);
+        this.entries = new Object[sets * WAYS];
+        this.hashes = new int[sets * WAYS];
+        this.mask = sets - 1;
+        this.eviction = eviction;
+        this.referenced = eviction == Eviction.CLOCK ? new boolean[entries.length] : null;
+        this.hands = eviction == Eviction.CLOCK ? new byte[sets] : null;
+        this.lastUse = eviction == Eviction.LRU ? new long[entries.length] : null;
+        this.modCount = modCount;
+    }
+
+    /**
+     * Хеш перемешивается, чтобы соседние Integer не попадали в соседние наборы.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Первая ячейка набора для хеша.
+     */
+    private int set(int hash) {
+        return (hash & mask) * WAYS;
+    }
+
+    private static Object key(Object entry) {
+        return entry instanceof Absent ? ((Absent) entry).key : entry;
+    }
+
+    private int find(Object key, int hash, int base) {
+        for (int i = base; i < base + WAYS; i++) {
+            if (hashes[i] == hash) {
+                Object entry = entries[i];
+                if (entry != null) {
+                    Object cached = key(entry);
+                    if (cached == key || cached.equals(key))
+                        return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void touch(int i) {
+        if (referenced != null)
+            referenced[i] = true;
+        else
+            lastUse[i] = ++clock;
+    }
+
+    /**
+     * PRESENT или ABSENT, если результат для ключа известен, иначе UNKNOWN.
+     */
+    int lookup(Object key) {
+        int hash = hash(key);
+        int i = find(key, hash, set(hash));
+        if (i < 0) {
+            misses++;
+            return UNKNOWN;
+        }
+        hits++;
+        touch(i);
+        return entries[i] instanceof Absent ? ABSENT : PRESENT;
+    }
+
+    /**
+     * Запоминание результата поиска в дереве для ключа, которого нет в кэше (lookup вернул UNKNOWN), с вытеснением,
+     * если набор заполнен.
+     */
+    void put(Object key, boolean present) {
+        int hash = hash(key);
+        int base = set(hash);
+        int i = -1;
+        for (int j = base; j < base + WAYS && i < 0; j++) {
+            if (entries[j] == null)
+                i = j;
+        }
+        if (i < 0) {
+            i = victim(base);
+            evictions++;
+        }
+        hashes[i] = hash;
+        entries[i] = present ? key : new Absent(key);
+        touch(i);
+    }
+
+    private int victim(int base) {
+        if (referenced != null) {
+            int set = base / WAYS;
+            while (true) {
+                int i = base + hands[set];
+                hands[set] = (byte) ((hands[set] + 1) % WAYS);
+                if (!referenced[i])
+                    return i;
+                referenced[i] = false;
+            }
+        }
+        int victim = base;
+        for (int i = base + 1; i < base + WAYS; i++) {
+            if (lastUse[i] < lastUse[victim])
+                victim = i;
+        }
+        return victim;
+    }
+
+    /**
+     * Новое значение для ключа после add или remove; если ключа в кэше нет, кэш не меняется.
+     */
+    void update(Object key, boolean present) {
+        int hash = hash(key);
+        int i = find(key, hash, set(hash));
+        if (i >= 0 && entries[i] instanceof Absent == present) {
+            Object cached = key(entries[i]);
+            entries[i] = present ? cached : new Absent(cached);
+            invalidations++;
+        }
+    }
+
+    void clear(int modCount) {
+        Arrays.fill(entries, null);
+        this.modCount = modCount;
+        invalidations++;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    public Eviction eviction() {
+        return eviction;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Доля запросов, на которые ответил кэш, или 0, если запросов не было.
+     */
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Число исправленных ячеек (add или remove изменили ответ для ключа из кэша) и полных очисток.
+     */
+    public long invalidations() {
+        return invalidations;
+    }
+
+    public void resetStatistics() {
+        hits = misses = evictions = invalidations = 0;
+    }
+}
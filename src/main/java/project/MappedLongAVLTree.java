@@ -0,0 +1,491 @@
+package project;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * АВЛ-дерево с ключами long, узлы которого лежат вне кучи в файле, отображенном в память.
+ *
+ * Файл состоит из слотов по SLOT байт. Слот 0 - заголовок (сигнатура, версия, корень, размер, число выданных слотов
+ * и голова списка свободных слотов), остальные - узлы: ключ, индексы левого и правого детей и баланс. Индекс 0
+ * означает отсутствие узла. Открытие существующего файла ничего не перестраивает и не читает целиком: дерево сразу
+ * готово к работе. Алгоритмы добавления, удаления и повороты те же, что в AVLTree, только ссылки - индексы слотов.
+ *
+ * Изменения попадают в отображение сразу, но на диск гарантированно записываются только после force() или close().
+ * Одно отображение ограничено 2 ГБ, то есть примерно 89 млн узлов.
+ */
+public class MappedLongAVLTree implements Closeable {
+    private static final int MAGIC = 0x41564C54;// "AVLT"
+    private static final int VERSION = 1;
+    private static final int NIL = 0;
+
+    static final int SLOT = 24;
+    private static final int KEY = 0;
+    private static final int LEFT = 8;
+    private static final int RIGHT = 12;
+    private static final int BALANCE = 16;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_ROOT = 8;
+    private static final int HEADER_SIZE = 12;
+    private static final int HEADER_ALLOCATED = 16;
+    private static final int HEADER_FREE = 20;
+
+    private static final int INITIAL_SLOTS = 1024;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;// число слотов в текущем отображении
+
+    private int root;
+    private int size;
+    private int allocated;
+    private int free;
+
+    private MappedLongAVLTree(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long length = channel.size();
+        if (length == 0) {
+            map(INITIAL_SLOTS);
+            buffer.putInt(HEADER_MAGIC, MAGIC);
+            buffer.putInt(HEADER_VERSION, VERSION);
+            root = NIL;
+            size = 0;
+            allocated = 1;
+            free = NIL;
+            writeHeader();
+        } else {
+            if (length % SLOT != 0 || length / SLOT > Integer.MAX_VALUE / SLOT)
+                throw new IOException("Not an AVL tree file: unexpected length " + length);
+            map((int) (length / SLOT));
+            if (buffer.getInt(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_VERSION) != VERSION)
+                throw new IOException("Not an AVL tree file or unsupported version");
+            root = buffer.getInt(HEADER_ROOT);
+            size = buffer.getInt(HEADER_SIZE);
+            allocated = buffer.getInt(HEADER_ALLOCATED);
+            free = buffer.getInt(HEADER_FREE);
+        }
+    }
+
+    /**
+     * Открытие дерева из файла; если файла нет или он пуст, создается пустое дерево.
+     */
+    public static MappedLongAVLTree open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new MappedLongAVLTree(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(int slots) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slots * SLOT);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = slots;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(HEADER_ROOT, root);
+        buffer.putInt(HEADER_SIZE, size);
+        buffer.putInt(HEADER_ALLOCATED, allocated);
+        buffer.putInt(HEADER_FREE, free);
+    }
+
+    /**
+     * Точка сохранности: после возврата все изменения записаны на диск.
+     */
+    public void force() {
+        writeHeader();
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private long key(int node) {
+        return buffer.getLong(node * SLOT + KEY);
+    }
+
+    private int left(int node) {
+        return buffer.getInt(node * SLOT + LEFT);
+    }
+
+    private int right(int node) {
+        return buffer.getInt(node * SLOT + RIGHT);
+    }
+
+    private int balance(int node) {
+        return buffer.getInt(node * SLOT + BALANCE);
+    }
+
+    private void setKey(int node, long key) {
+        buffer.putLong(node * SLOT + KEY, key);
+    }
+
+    private void setLeft(int node, int child) {
+        buffer.putInt(node * SLOT + LEFT, child);
+    }
+
+    private void setRight(int node, int child) {
+        buffer.putInt(node * SLOT + RIGHT, child);
+    }
+
+    private void setBalance(int node, int balance) {
+        buffer.putInt(node * SLOT + BALANCE, balance);
+    }
+
+    private int newNode(long value) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left(node);
+        } else {
+            if (allocated == capacity)
+                grow();
+            node = allocated++;
+        }
+        setKey(node, value);
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        setBalance(node, 0);
+        return node;
+    }
+
+    private void freeNode(int node) {
+        setLeft(node, free);
+        free = node;
+    }
+
+    private void grow() {
+        int maxSlots = Integer.MAX_VALUE / SLOT;
+        if (capacity == maxSlots)
+            throw new IllegalStateException("Mapped AVL tree is full");
+        try {
+            map((int) Math.min(maxSlots, 2L * capacity));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not extend " + channel, e);
+        }
+    }
+
+    private int find(long value) {
+        int node = root;
+        while (node != NIL) {
+            long key = key(node);
+            if (value == key)
+                return node;
+            node = value < key ? left(node) : right(node);
+        }
+        return NIL;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    public boolean contains(long value) {
+        return find(value) != NIL;
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return new MappedLongAVLTreeIterator();
+    }
+
+    public class MappedLongAVLTreeIterator implements PrimitiveIterator.OfLong {
+        private final int[] stack = new int[AVLTree.MAX_HEIGHT];
+        private int depth = 0;
+
+        MappedLongAVLTreeIterator() {
+            pushToLeft(root);
+        }
+
+        private void pushToLeft(int node) {
+            while (node != NIL) {
+                stack[depth++] = node;
+                node = left(node);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int node = stack[--depth];
+            pushToLeft(right(node));
+            return key(node);
+        }
+    }
+
+    public long[] toLongArray() {
+        long[] result = new long[size];
+        PrimitiveIterator.OfLong it = this.iterator();
+        for (int i = 0; i < size; i++) {
+            result[i] = it.nextLong();
+        }
+        return result;
+    }
+
+    /**
+     * Высота считается спуском по более высокому поддереву, которое определяется по значению баланса.
+     *
+     * Сложность: O(log n).
+     */
+    public int height() {
+        int height = 0;
+        for (int node = root; node != NIL; node = balance(node) < 0 ? left(node) : right(node))
+            height++;
+        return height;
+    }
+
+    /**
+     * Добавление узла. Алгоритм тот же, что в AVLTree.add.
+     *
+     * Сложность: O(log n).
+     */
+    public boolean add(long t) {
+        int[] path = new int[AVLTree.MAX_HEIGHT];
+        int depth = 0;
+        int node = root;
+        while (node != NIL) {
+            long key = key(node);
+            if (t == key)
+                return false;
+            path[depth++] = node;
+            node = t < key ? left(node) : right(node);
+        }
+
+        int child = newNode(t);
+        if (depth == 0)
+            root = child;
+        else if (t < key(path[depth - 1]))
+            setLeft(path[depth - 1], child);
+        else
+            setRight(path[depth - 1], child);
+        size++;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            int begin = path[i];
+            int balance = balance(begin) + (left(begin) == child ? -1 : 1);
+            setBalance(begin, balance);
+            if (balance == 0)
+                break;
+            if (Math.abs(balance) == 2) {
+                replace(path, i, rebalance(begin));
+                break;
+            }
+            child = begin;
+        }
+        writeHeader();
+        return true;
+    }
+
+    private void replace(int[] path, int i, int node) {
+        if (i == 0)
+            root = node;
+        else if (left(path[i - 1]) == path[i])
+            setLeft(path[i - 1], node);
+        else
+            setRight(path[i - 1], node);
+    }
+
+    /**
+     * Удаление узла. Алгоритм тот же, что в AVLTree.remove; слот удаленного узла попадает в список свободных.
+     *
+     * Сложность: O(log n).
+     */
+    public boolean remove(long t) {
+        int[] path = new int[AVLTree.MAX_HEIGHT];
+        int depth = 0;
+        int node = root;
+        while (node != NIL) {
+            long key = key(node);
+            if (t == key)
+                break;
+            path[depth++] = node;
+            node = t < key ? left(node) : right(node);
+        }
+        if (node == NIL)
+            return false;
+
+        if (left(node) != NIL && right(node) != NIL) {
+            int target = node;
+            path[depth++] = node;
+            node = right(node);
+            while (left(node) != NIL) {
+                path[depth++] = node;
+                node = left(node);
+            }
+            setKey(target, key(node));
+        }
+
+        int child = left(node) != NIL ? left(node) : right(node);
+        boolean fromLeft = depth > 0 && left(path[depth - 1]) == node;
+        if (depth == 0)
+            root = child;
+        else if (fromLeft)
+            setLeft(path[depth - 1], child);
+        else
+            setRight(path[depth - 1], child);
+        freeNode(node);
+        size--;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            int begin = path[i];
+            if (i < depth - 1)
+                fromLeft = left(begin) == child;
+            setBalance(begin, balance(begin) + (fromLeft ? 1 : -1));
+            child = begin;
+            if (Math.abs(balance(begin)) == 2) {
+                child = rebalance(begin);
+                replace(path, i, child);
+            }
+            if (balance(child) != 0)
+                break;
+        }
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * Очистка не уменьшает файл: слоты просто считаются невыданными.
+     */
+    public void clear() {
+        root = NIL;
+        size = 0;
+        allocated = 1;
+        free = NIL;
+        writeHeader();
+    }
+
+    private int rebalance(int node) {
+        if (balance(node) == -2) {
+            if (balance(left(node)) <= 0)
+                node = smallRightTurn(node);
+            else
+                node = bigRightTurn(node);
+        } else if (balance(node) == 2) {
+            if (balance(right(node)) >= 0) {
+                node = smallLeftTurn(node);
+            } else {
+                node = bigLeftTurn(node);
+            }
+        }
+
+        return node;
+    }
+
+    private int smallLeftTurn(int begin) {
+        int node = begin;
+        begin = right(begin);
+        setRight(node, left(begin));
+        setLeft(begin, node);
+
+        if (balance(begin) == 1) {
+            setBalance(begin, 0);
+            setBalance(node, 0);
+        } else {
+            setBalance(begin, -1);
+            setBalance(node, 1);
+        }
+        return begin;
+    }
+
+    private int smallRightTurn(int begin) {
+        int node = begin;
+        begin = left(begin);
+        setLeft(node, right(begin));
+        setRight(begin, node);
+
+        if (balance(begin) == -1) {
+            setBalance(begin, 0);
+            setBalance(node, 0);
+        } else {
+            setBalance(begin, 1);
+            setBalance(node, -1);
+        }
+        return begin;
+    }
+
+    private int bigLeftTurn(int begin) {
+        int l = begin;
+        int r = right(begin);
+        begin = left(r);
+        setRight(l, left(begin));
+        setLeft(r, right(begin));
+        setLeft(begin, l);
+        setRight(begin, r);
+
+        if (balance(begin) == 0) {
+            setBalance(r, 0);
+            setBalance(l, 0);
+        } else if (balance(begin) == -1) {
+            setBalance(begin, 0);
+            setBalance(r, 1);
+            setBalance(l, 0);
+        } else {
+            setBalance(begin, 0);
+            setBalance(r, 0);
+            setBalance(l, -1);
+        }
+        return begin;
+    }
+
+    private int bigRightTurn(int begin) {
+        int r = begin;
+        int l = left(begin);
+        begin = right(l);
+        setLeft(r, right(begin));
+        setRight(l, left(begin));
+        setLeft(begin, l);
+        setRight(begin, r);
+
+        if (balance(begin) == 0) {
+            setBalance(r, 0);
+            setBalance(l, 0);
+        } else if (balance(begin) == 1) {
+            setBalance(begin, 0);
+            setBalance(r, 0);
+            setBalance(l, -1);
+        } else {
+            setBalance(begin, 0);
+            setBalance(r, 1);
+            setBalance(l, 0);
+        }
+        return begin;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        PrimitiveIterator.OfLong it = this.iterator();
+        while (it.hasNext()) {
+            result.append(it.nextLong());
+            if (it.hasNext()) result.append(", ");
+        }
+        result.append("]");
+        return result.toString();
+    }
+}
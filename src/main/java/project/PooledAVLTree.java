@@ -0,0 +1,419 @@
+package project;
+
+
+import java.util.*;
+
+/**
+ * АВЛ-дерево, узлы которого хранятся не отдельными объектами, а в параллельных массивах (struct-of-arrays):
+ * keys[i], left[i], right[i] и balance[i] описывают узел с индексом i. Ссылки на детей - индексы в этих массивах,
+ * индекс 0 зарезервирован и означает отсутствие узла. Повороты переписывают только индексы.
+ *
+ * На узел уходит 4 байта на ссылку на ключ, 8 байт на индексы детей и 1 байт на баланс вместо ~32 байт на объект
+ * Node, а число объектов в куче для сборщика мусора не зависит от числа узлов (кроме самих ключей).
+ *
+ * Освободившиеся при удалении слоты связываются в список через массив left и переиспользуются при добавлении.
+ */
+public class PooledAVLTree<T extends Comparable<T>> extends AbstractSet<T> {
+    private static final int NIL = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] keys;
+    private int[] left;
+    private int[] right;
+    private byte[] balance;// значение баланса показывает, на сколько правое поддерево узла больше левого
+
+    private int root = NIL;
+    private int size = 0;
+    private int allocated = 1;// слоты [1, allocated) уже выдавались
+    private int free = NIL;// голова списка свободных слотов
+    private int modCount = 0;// число структурных изменений, по которому итераторы обнаруживают изменение дерева
+
+    public PooledAVLTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PooledAVLTree(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        allocate(capacity + 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        balance = new byte[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T key(int node) {
+        return (T) keys[node];
+    }
+
+    private int newNode(T value) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+            left[node] = NIL;
+        } else {
+            if (allocated == keys.length)
+                grow();
+            node = allocated++;
+        }
+        keys[node] = value;
+        balance[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        keys[node] = null;
+        right[node] = NIL;
+        balance[node] = 0;
+        left[node] = free;
+        free = node;
+    }
+
+    private void grow() {
+        int capacity = Math.max(DEFAULT_CAPACITY, keys.length + (keys.length >> 1));
+        keys = Arrays.copyOf(keys, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        balance = Arrays.copyOf(balance, capacity);
+    }
+
+    private int find(T value) {
+        int node = root;
+        while (node != NIL) {
+            int comparison = value.compareTo(key(node));
+            if (comparison == 0)
+                return node;
+            node = comparison < 0 ? left[node] : right[node];
+        }
+        return NIL;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        return find(t) != NIL;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PooledAVLTreeIterator();
+    }
+
+    /**
+     * Итератор по слотам узлов. Слоты удаленных узлов переиспользуются, поэтому изменение дерева в обход итератора
+     * обнаруживается по modCount, как в AVLTree: следующий вызов next или remove бросает
+     * ConcurrentModificationException, а не возвращает ключи из чужих слотов.
+     */
+    public class PooledAVLTreeIterator implements Iterator<T> {
+        private final int[] stack = new int[AVLTree.MAX_HEIGHT];
+        private int depth = 0;
+        private T current;
+        private boolean removable = false;
+        private int expectedModCount = modCount;
+
+        PooledAVLTreeIterator() {
+            pushToLeft(root);
+        }
+
+        private void pushToLeft(int node) {
+            while (node != NIL) {
+                stack[depth++] = node;
+                node = left[node];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int node = stack[--depth];
+            pushToLeft(right[node]);
+            current = key(node);
+            removable = true;
+            return current;
+        }
+
+        /**
+         * После удаления повороты могут перестроить путь, поэтому стек строится заново спуском от корня
+         * к первому элементу, большему удаленного.
+         */
+        @Override
+        public void remove() {
+            if (!removable)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            PooledAVLTree.this.remove(current);
+            expectedModCount = modCount;
+            removable = false;
+            depth = 0;
+            int node = root;
+            while (node != NIL) {
+                if (current.compareTo(key(node)) < 0) {
+                    stack[depth++] = node;
+                    node = left[node];
+                } else {
+                    node = right[node];
+                }
+            }
+        }
+    }
+
+    /**
+     * Высота считается спуском по более высокому поддереву, которое определяется по значению баланса.
+     *
+     * Сложность: O(log n).
+     */
+    public int height() {
+        int height = 0;
+        for (int node = root; node != NIL; node = balance[node] < 0 ? left[node] : right[node])
+            height++;
+        return height;
+    }
+
+    /**
+     * Добавление узла. Алгоритм тот же, что в AVLTree.add.
+     *
+     * Сложность: O(log n).
+     */
+    @Override
+    public boolean add(T t) {
+        int[] path = new int[AVLTree.MAX_HEIGHT];
+        int depth = 0;
+        int comparison = 0;
+        int node = root;
+        while (node != NIL) {
+            comparison = t.compareTo(key(node));
+            if (comparison == 0)
+                return false;
+            path[depth++] = node;
+            node = comparison < 0 ? left[node] : right[node];
+        }
+
+        int child = newNode(t);
+        if (depth == 0)
+            root = child;
+        else if (comparison < 0)
+            left[path[depth - 1]] = child;
+        else
+            right[path[depth - 1]] = child;
+        size++;
+        modCount++;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            int begin = path[i];
+            if (left[begin] == child)
+                balance[begin]--;
+            else
+                balance[begin]++;
+            if (balance[begin] == 0)
+                break;
+            if (Math.abs(balance[begin]) == 2) {
+                replace(path, i, balance(begin));
+                break;
+            }
+            child = begin;
+        }
+        return true;
+    }
+
+    private void replace(int[] path, int i, int node) {
+        if (i == 0)
+            root = node;
+        else if (left[path[i - 1]] == path[i])
+            left[path[i - 1]] = node;
+        else
+            right[path[i - 1]] = node;
+    }
+
+    /**
+     * Удаление узла. Алгоритм тот же, что в AVLTree.remove; слот удаленного узла попадает в список свободных.
+     *
+     * Сложность: O(log n).
+     */
+    @Override
+    public boolean remove(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        int[] path = new int[AVLTree.MAX_HEIGHT];
+        int depth = 0;
+        int node = root;
+        while (node != NIL) {
+            int comparison = t.compareTo(key(node));
+            if (comparison == 0)
+                break;
+            path[depth++] = node;
+            node = comparison < 0 ? left[node] : right[node];
+        }
+        if (node == NIL)
+            return false;
+
+        if (left[node] != NIL && right[node] != NIL) {
+            int target = node;
+            path[depth++] = node;
+            node = right[node];
+            while (left[node] != NIL) {
+                path[depth++] = node;
+                node = left[node];
+            }
+            keys[target] = keys[node];
+        }
+
+        int child = left[node] != NIL ? left[node] : right[node];
+        boolean fromLeft = depth > 0 && left[path[depth - 1]] == node;
+        if (depth == 0)
+            root = child;
+        else if (fromLeft)
+            left[path[depth - 1]] = child;
+        else
+            right[path[depth - 1]] = child;
+        freeNode(node);
+        size--;
+        modCount++;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            int begin = path[i];
+            if (i < depth - 1)
+                fromLeft = left[begin] == child;
+            balance[begin] += fromLeft ? 1 : -1;
+            child = begin;
+            if (Math.abs(balance[begin]) == 2) {
+                child = balance(begin);
+                replace(path, i, child);
+            }
+            if (balance[child] != 0)
+                break;
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        allocate(DEFAULT_CAPACITY + 1);
+        root = NIL;
+        size = 0;
+        allocated = 1;
+        free = NIL;
+        modCount++;
+    }
+
+    private int balance(int node) {
+        if (balance[node] == -2) {
+            if (balance[left[node]] <= 0)
+                node = smallRightTurn(node);
+            else
+                node = bigRightTurn(node);
+        } else if (balance[node] == 2) {
+            if (balance[right[node]] >= 0) {
+                node = smallLeftTurn(node);
+            } else {
+                node = bigLeftTurn(node);
+            }
+        }
+
+        return node;
+    }
+
+    private int smallLeftTurn(int begin) {
+        int node = begin;
+        begin = right[begin];
+        right[node] = left[begin];
+        left[begin] = node;
+
+        if (balance[begin] == 1) {
+            balance[begin] = 0;
+            balance[node] = 0;
+        } else {
+            balance[begin] = -1;
+            balance[node] = 1;
+        }
+        return begin;
+    }
+
+    private int smallRightTurn(int begin) {
+        int node = begin;
+        begin = left[begin];
+        left[node] = right[begin];
+        right[begin] = node;
+
+        if (balance[begin] == -1) {
+            balance[begin] = 0;
+            balance[node] = 0;
+        } else {
+            balance[begin] = 1;
+            balance[node] = -1;
+        }
+        return begin;
+    }
+
+    private int bigLeftTurn(int begin) {
+        int l = begin;
+        int r = right[begin];
+        begin = left[r];
+        right[l] = left[begin];
+        left[r] = right[begin];
+        left[begin] = l;
+        right[begin] = r;
+
+        if (balance[begin] == 0) {
+            balance[r] = 0;
+            balance[l] = 0;
+        } else if (balance[begin] == -1) {
+            balance[begin] = 0;
+            balance[r] = 1;
+            balance[l] = 0;
+        } else {
+            balance[begin] = 0;
+            balance[r] = 0;
+            balance[l] = -1;
+        }
+        return begin;
+    }
+
+    private int bigRightTurn(int begin) {
+        int r = begin;
+        int l = left[begin];
+        begin = right[l];
+        left[r] = right[begin];
+        right[l] = left[begin];
+        left[begin] = l;
+        right[begin] = r;
+
+        if (balance[begin] == 0) {
+            balance[r] = 0;
+            balance[l] = 0;
+        } else if (balance[begin] == 1) {
+            balance[begin] = 0;
+            balance[r] = 0;
+            balance[l] = -1;
+        } else {
+            balance[begin] = 0;
+            balance[r] = 1;
+            balance[l] = 0;
+        }
+        return begin;
+    }
+}
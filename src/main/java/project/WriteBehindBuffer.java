@@ -0,0 +1,90 @@
+package project;
+
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенная запись в AVLTree: add и remove только записываются в буфер (AVLTree.Batch), а в дерево попадают
+ * пачкой через applyBatch, когда в буфере накопилось maxPending операций или с первой неприменённой операции прошло
+ * maxDelay.
+ *
+ * Время проверяется при каждой записи; чтобы буфер сбрасывался и при отсутствии записей, flushIfExpired можно
+ * вызывать по расписанию, например из ScheduledExecutorService. Все методы синхронизированы, поэтому буфер можно
+ * разделять между потоками-производителями, но само дерево при этом нужно читать только через contains буфера,
+ * который сначала применяет накопленные операции.
+ */
+public class WriteBehindBuffer<T extends Comparable<T>> {
+    private final AVLTree<T> tree;
+    private final int maxPending;
+    private final long maxDelayNanos;
+    private final AVLTree.Batch<T> batch = new AVLTree.Batch<>();
+    private long firstPendingNanos;
+    private long flushes = 0;
+
+    public WriteBehindBuffer(AVLTree<T> tree, int maxPending, long maxDelay, TimeUnit unit) {
+        if (maxPending <= 0)
+            throw new IllegalArgumentException("Illegal maxPending: " + maxPending);
+        if (maxDelay < 0)
+            throw new IllegalArgumentException("Illegal maxDelay: " + maxDelay);
+        this.tree = tree;
+        this.maxPending = maxPending;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    public synchronized void add(T key) {
+        batch.add(key);
+        written();
+    }
+
+    public synchronized void remove(T key) {
+        batch.remove(key);
+        written();
+    }
+
+    private void written() {
+        if (batch.size() == 1)
+            firstPendingNanos = System.nanoTime();
+        if (batch.size() >= maxPending || System.nanoTime() - firstPendingNanos >= maxDelayNanos)
+            flush();
+    }
+
+    /**
+     * Применение накопленных операций. Возвращает их результаты в порядке записи (см. AVLTree.applyBatch).
+     */
+    public synchronized boolean[] flush() {
+        boolean[] results = tree.applyBatch(batch);
+        if (!batch.isEmpty())
+            flushes++;
+        batch.clear();
+        return results;
+    }
+
+    /**
+     * Сброс буфера, если самая старая операция ждет дольше maxDelay. Возвращает true, если буфер был сброшен.
+     */
+    public synchronized boolean flushIfExpired() {
+        if (batch.isEmpty() || System.nanoTime() - firstPendingNanos < maxDelayNanos)
+            return false;
+        flush();
+        return true;
+    }
+
+    /**
+     * Проверка с учетом всех записанных операций: буфер сначала сбрасывается.
+     */
+    public synchronized boolean contains(T key) {
+        flush();
+        return tree.contains(key);
+    }
+
+    public synchronized int pending() {
+        return batch.size();
+    }
+
+    /**
+     * Число сбросов непустого буфера.
+     */
+    public synchronized long flushes() {
+        return flushes;
+    }
+}
@@ -0,0 +1,126 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AVLTreeFileTest {
+
+    @Test
+    void saveAndLoad() throws IOException {
+        Random random = new Random(21);
+        AVLTree<Integer> integers = new AVLTree<>();
+        AVLTree<Long> longs = new AVLTree<>();
+        AVLTree<String> strings = new AVLTree<>();
+        for (int i = 0; i < 200_000; i++) {
+            integers.add(random.nextInt());
+            longs.add(random.nextLong());
+        }
+        integers.add(Integer.MIN_VALUE);
+        integers.add(Integer.MAX_VALUE);
+        longs.add(Long.MIN_VALUE);
+        longs.add(Long.MAX_VALUE);
+        for (int i = 0; i < 10_000; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int j = random.nextInt(300); j > 0; j--)
+                key.append((char) random.nextInt(0x3000));
+            strings.add(key.toString());
+        }
+        strings.add(new String(new char[100_000]).replace('\0', 'x'));// длиннее буфера
+
+        Path file = Files.createTempFile("avl", ".tree");
+        try {
+            for (AVLTreeFile.Codec<Integer> codec : Arrays.asList(AVLTreeFile.INTEGER, AVLTreeFile.INTEGER_DELTA))
+                assertEquals(integers, roundTrip(integers, file, codec));
+            assertTrue(Files.size(file) < 3 * integers.size());
+
+            for (AVLTreeFile.Codec<Long> codec : Arrays.asList(AVLTreeFile.LONG, AVLTreeFile.LONG_DELTA))
+                assertEquals(longs, roundTrip(longs, file, codec));
+            assertEquals(strings, roundTrip(strings, file, AVLTreeFile.STRING));
+            assertEquals(new AVLTree<Integer>(), roundTrip(new AVLTree<>(), file, AVLTreeFile.INTEGER_DELTA));
+
+            AVLTree<Integer> loaded = roundTrip(integers, file, AVLTreeFile.INTEGER_DELTA);
+            assertEquals(new ArrayList<>(integers), new ArrayList<>(loaded));
+            assertTrue(loaded.height() <= 1.45 * (Math.log(loaded.size() + 2) / Math.log(2)));
+            assertTrue(loaded.add(1) != integers.contains(1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static <T extends Comparable<T>> AVLTree<T> roundTrip(AVLTree<T> tree, Path file,
+                                                                  AVLTreeFile.Codec<T> codec) throws IOException {
+        AVLTreeFile.save(tree, file, codec);
+        return AVLTreeFile.load(file, codec, tree.comparator());
+    }
+
+    @Test
+    void comparatorOrder() throws IOException {
+        AVLTree<Integer> descending = new AVLTree<>(Comparator.<Integer>reverseOrder());
+        for (int i = 0; i < 1000; i += 3)
+            descending.add(i);
+        Path file = Files.createTempFile("avl", ".tree");
+        try {
+            AVLTreeFile.save(descending, file, AVLTreeFile.INTEGER_DELTA);
+            AVLTree<Integer> loaded = AVLTreeFile.load(file, AVLTreeFile.INTEGER_DELTA, Comparator.reverseOrder());
+            assertEquals(new ArrayList<>(descending), new ArrayList<>(loaded));
+            assertEquals(Integer.valueOf(999), loaded.first());
+
+            // файл с обратным порядком не читается как файл с естественным порядком
+            assertThrows(IOException.class, () -> AVLTreeFile.load(file, AVLTreeFile.INTEGER_DELTA));
+            assertThrows(IOException.class, () -> AVLTreeFile.load(file, AVLTreeFile.INTEGER));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void corruptedFiles() throws IOException {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 100; i++)
+            tree.add(i);
+        Path file = Files.createTempFile("avl", ".tree");
+        try {
+            AVLTreeFile.save(tree, file, AVLTreeFile.INTEGER);
+            long length = Files.size(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(length - 1);
+            }
+            assertThrows(IOException.class, () -> AVLTreeFile.load(file, AVLTreeFile.INTEGER));
+
+            AVLTreeFile.save(tree, file, AVLTreeFile.INTEGER);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[]{0}));
+            }
+            assertThrows(IOException.class, () -> AVLTreeFile.load(file, AVLTreeFile.INTEGER));
+
+            Files.write(file, new byte[]{1, 2, 3, 4, 5, 6});
+            assertThrows(IOException.class, () -> AVLTreeFile.load(file, AVLTreeFile.INTEGER));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void fromSortedIterator() {
+        List<Integer> values = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            AVLTree<Integer> tree = AVLTree.fromSorted(values.iterator(), n, null);
+            assertEquals(AVLTree.fromSorted(values), tree);
+            assertEquals(AVLTree.fromSorted(values).height(), tree.height());
+            values.add(n);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> AVLTree.fromSorted(Arrays.asList(1, 1).iterator(), 2, null));
+        assertThrows(NoSuchElementException.class,
+                () -> AVLTree.fromSorted(Arrays.asList(1, 2).iterator(), 3, null));
+    }
+}
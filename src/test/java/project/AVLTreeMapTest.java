@@ -0,0 +1,191 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AVLTreeMapTest {
+
+    @Test
+    void randomUpdatesMatchTreeMap() {
+        Random random = new Random(19);
+        AVLTreeMap<Integer, Integer> map = new AVLTreeMap<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            Integer key = random.nextInt(2_000);
+            int value = random.nextInt(10);
+            switch (random.nextInt(7)) {
+                case 0:
+                    assertEquals(expected.put(key, value), map.put(key, value));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                case 2:
+                    assertEquals(expected.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                    break;
+                case 3:
+                    assertEquals(expected.merge(key, value, Integer::sum), map.merge(key, value, Integer::sum));
+                    break;
+                case 4:
+                    // null удаляет ключ
+                    assertEquals(expected.compute(key, (k, v) -> v == null || v < 5 ? value : null),
+                            map.compute(key, (k, v) -> v == null || v < 5 ? value : null));
+                    break;
+                case 5:
+                    assertEquals(expected.computeIfAbsent(key, k -> value), map.computeIfAbsent(key, k -> value));
+                    break;
+                default:
+                    assertEquals(expected.computeIfPresent(key, (k, v) -> v > 3 ? null : v + 1),
+                            map.computeIfPresent(key, (k, v) -> v > 3 ? null : v + 1));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.toString(), map.toString());
+        assertTrue(map.height() <= 1.45 * (Math.log(map.size() + 2) / Math.log(2)));
+    }
+
+    @Test
+    void counters() {
+        AVLTreeMap<String, Integer> map = new AVLTreeMap<>();
+        for (String word : "a b a c b a".split(" "))
+            map.merge(word, 1, Integer::sum);
+        assertEquals("{a=3, b=2, c=1}", map.toString());
+
+        AVLTreeMap<String, long[]> counters = new AVLTreeMap<>();
+        for (String word : "a b a".split(" "))
+            counters.computeIfAbsent(word, k -> new long[1])[0]++;
+        assertEquals(2, counters.get("a")[0]);
+        assertEquals(1, counters.get("b")[0]);
+
+        assertEquals(Integer.valueOf(1), map.merge("b", -1, (a, b) -> a + b == 0 ? null : a + b));
+        assertNull(map.merge("b", -1, (a, b) -> a + b == 0 ? null : a + b));
+        assertFalse(map.containsKey("b"));
+        assertEquals(Integer.valueOf(7), map.getOrDefault("z", 7));
+        assertNull(map.computeIfAbsent("z", k -> null));
+        assertFalse(map.containsKey("z"));
+    }
+
+    @Test
+    void navigationMatchesTreeMap() {
+        Random random = new Random(7);
+        AVLTreeMap<Integer, String> map = new AVLTreeMap<>();
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int i = 0; i < 500; i++) {
+            int key = random.nextInt(2_000) * 2;
+            map.put(key, "v" + key);
+            expected.put(key, "v" + key);
+        }
+        for (int probe = -3; probe < 4_003; probe++) {
+            assertEquals(expected.lowerEntry(probe), map.lowerEntry(probe));
+            assertEquals(expected.floorKey(probe), map.floorKey(probe));
+            assertEquals(expected.ceilingEntry(probe), map.ceilingEntry(probe));
+            assertEquals(expected.higherKey(probe), map.higherKey(probe));
+        }
+        assertEquals(expected.firstEntry(), map.firstEntry());
+        assertEquals(expected.lastKey(), map.lastKey());
+        assertEquals(expected.pollFirstEntry(), map.pollFirstEntry());
+        assertEquals(expected.pollLastEntry(), map.pollLastEntry());
+        assertEquals(expected, map);
+
+        assertThrows(UnsupportedOperationException.class, () -> map.firstEntry().setValue("x"));
+        assertThrows(NoSuchElementException.class, () -> new AVLTreeMap<Integer, String>().firstKey());
+        assertNull(new AVLTreeMap<Integer, String>().pollFirstEntry());
+    }
+
+    @Test
+    void views() {
+        AVLTreeMap<Integer, String> map = new AVLTreeMap<>();
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int i = 0; i < 100; i += 2) {
+            map.put(i, "v" + i);
+            expected.put(i, "v" + i);
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+        assertEquals(new ArrayList<>(expected.descendingKeySet()), new ArrayList<>(map.descendingKeySet()));
+        assertEquals(expected.subMap(10, true, 40, false), map.subMap(10, true, 40, false));
+        assertEquals(new ArrayList<>(expected.subMap(11, false, 41, true).keySet()),
+                new ArrayList<>(map.subMap(11, false, 41, true).keySet()));
+        assertEquals(new ArrayList<>(expected.headMap(30, true).descendingMap().keySet()),
+                new ArrayList<>(map.headMap(30, true).descendingMap().keySet()));
+
+        NavigableMap<Integer, String> expectedView = expected.descendingMap().subMap(80, true, 20, false);
+        NavigableMap<Integer, String> view = map.descendingMap().subMap(80, true, 20, false);
+        assertEquals(new ArrayList<>(expectedView.keySet()), new ArrayList<>(view.keySet()));
+        assertEquals(expectedView.size(), view.size());
+        assertEquals(expectedView.firstKey(), view.firstKey());
+        assertEquals(expectedView.lastKey(), view.lastKey());
+        assertEquals(expectedView.ceilingKey(51), view.ceilingKey(51));
+        assertEquals(expectedView.lowerKey(51), view.lowerKey(51));
+        assertEquals(expectedView.ceilingKey(100), view.ceilingKey(100));
+        assertEquals(expectedView.headMap(50, false).keySet(), view.headMap(50, false).keySet());
+        assertEquals(expectedView.tailMap(50, true).keySet(), view.tailMap(50, true).keySet());
+        assertThrows(IllegalArgumentException.class, () -> view.subMap(90, true, 30, true));
+        assertThrows(IllegalArgumentException.class, () -> view.put(10, "x"));
+        assertThrows(IllegalArgumentException.class, () -> map.subMap(5, 1));
+
+        view.put(51, "v51");
+        expectedView.put(51, "v51");
+        assertEquals(expected, map);
+        view.keySet().remove(52);
+        expectedView.keySet().remove(52);
+        assertEquals(expected, map);
+        view.entrySet().removeIf(e -> e.getKey() % 3 == 0);
+        expectedView.entrySet().removeIf(e -> e.getKey() % 3 == 0);
+        assertEquals(expected, map);
+        view.clear();
+        expectedView.clear();
+        assertEquals(expected, map);
+
+        for (Map.Entry<Integer, String> e : map.entrySet())
+            e.setValue(e.getValue() + "!");
+        expected.replaceAll((k, v) -> v + "!");
+        assertEquals(expected, map);
+    }
+
+    @Test
+    void iteratorRemoveAndFailFast() {
+        AVLTreeMap<Integer, Integer> map = new AVLTreeMap<>();
+        for (int i = 0; i < 1_000; i++)
+            map.put(i, i);
+        for (Iterator<Integer> it = map.keySet().iterator(); it.hasNext(); )
+            if (it.next() % 2 == 0)
+                it.remove();
+        assertEquals(500, map.size());
+        for (Integer key : map.keySet())
+            assertEquals(1, key % 2);
+        assertTrue(map.height() <= 1.45 * (Math.log(map.size() + 2) / Math.log(2)));
+
+        Iterator<Integer> it = map.keySet().iterator();
+        it.next();
+        map.put(-1, -1);
+        assertThrows(ConcurrentModificationException.class, it::next);
+
+        Iterator<Integer> unchanged = map.keySet().iterator();
+        unchanged.next();
+        map.put(-1, 0);// замена значения не меняет структуру
+        unchanged.next();
+
+        assertThrows(ConcurrentModificationException.class, () -> map.computeIfAbsent(5_000, k -> {
+            map.put(5_001, 0);
+            return 0;
+        }));
+    }
+
+    @Test
+    void comparator() {
+        AVLTreeMap<String, Integer> map = new AVLTreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        map.merge("b", 1, Integer::sum);
+        map.merge("B", 1, Integer::sum);
+        map.merge("a", 1, Integer::sum);
+        assertEquals("{a=1, b=2}", map.toString());
+        assertEquals(String.CASE_INSENSITIVE_ORDER, map.comparator());
+        assertEquals("a", map.descendingMap().lastKey());
+    }
+}
@@ -0,0 +1,101 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AVLTreeMetricsTest {
+
+    @Test
+    void rotationsAndDepths() {
+        AVLTree<Integer> newTree = new AVLTree<>();
+        assertNull(newTree.metrics());
+        AVLTreeMetrics metrics = newTree.enableMetrics();
+        assertSame(metrics, newTree.enableMetrics());
+
+        // возрастающие ключи вызывают только малые левые повороты, при n = 2^k - 1 их n - k
+        int n = (1 << 10) - 1;
+        for (int i = 0; i < n; i++)
+            newTree.add(i);
+        assertEquals(n - 10, metrics.getSmallLeftTurns());
+        assertEquals(0, metrics.getSmallRightTurns() + metrics.getBigLeftTurns() + metrics.getBigRightTurns());
+        assertEquals(n, metrics.getAdds());
+
+        // в совершенном дереве из 2^10 - 1 узлов поиск каждого ключа проходит от 1 до 10 узлов, 2^(d-1) ключей - d
+        metrics.reset();
+        for (int i = 0; i < n; i++)
+            assertTrue(newTree.contains(i));
+        long[] depths = metrics.getDepthHistogram();
+        for (int d = 1; d <= 10; d++)
+            assertEquals(1L << (d - 1), depths[d]);
+        assertEquals(n, metrics.getContains());
+        assertEquals(Arrays.stream(depths).sum(), Arrays.stream(metrics.getContainsLatencyHistogram()).sum());
+        long totalDepth = 0;
+        for (int d = 1; d <= 10; d++)
+            totalDepth += (long) d << (d - 1);
+        assertEquals(totalDepth, metrics.getTotalDepth());
+        assertEquals((double) totalDepth / n, metrics.getMeanDepth(), 1e-9);
+        assertTrue(metrics.getContainsLatencyP99Nanos() > 0);
+
+        AVLTreeMetrics snapshot = metrics.snapshot();
+        assertFalse(newTree.contains(-1));// промах: сравнения со всеми 10 узлами пути
+        assertEquals(1, metrics.getDepthHistogram()[10] - snapshot.getDepthHistogram()[10]);
+        assertEquals(n, snapshot.getContains());
+        assertEquals(n + 1, metrics.getContains());
+
+        Random random = new Random(22);
+        for (int i = 0; i < 10_000; i++) {
+            int value = random.nextInt(5_000);
+            if (random.nextBoolean())
+                newTree.add(value);
+            else
+                newTree.remove(value);
+        }
+        assertTrue(metrics.getRemoves() > 0);
+        assertTrue(metrics.getBigLeftTurns() + metrics.getBigRightTurns() > 0);
+        assertEquals(metrics.getRemoves(), Arrays.stream(metrics.getRemoveLatencyHistogram()).sum());
+
+        long adds = metrics.getAdds();
+        newTree.disableMetrics();
+        newTree.add(-5);
+        assertNull(newTree.metrics());
+        assertEquals(adds, metrics.getAdds());
+    }
+
+    @Test
+    void jmx() throws JMException {
+        AVLTree<Integer> newTree = new AVLTree<>();
+        AVLTreeMetrics metrics = newTree.enableMetrics();
+        ObjectName name = metrics.register("test tree");
+        try {
+            for (int i = 0; i < 100; i++)
+                newTree.add(i);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(100L, server.getAttribute(name, "Adds"));
+            assertEquals(metrics.getRotations(), server.getAttribute(name, "Rotations"));
+            assertArrayEquals(metrics.getDepthHistogram(), (long[]) server.getAttribute(name, "DepthHistogram"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Adds"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    void percentile() {
+        long[] histogram = new long[65];
+        assertEquals(0, AVLTreeMetrics.percentile(histogram, 0.99));
+        histogram[3] = 98;// 4..7 нс
+        histogram[10] = 2;// 512..1023 нс
+        assertEquals(7, AVLTreeMetrics.percentile(histogram, 0.5));
+        assertEquals(7, AVLTreeMetrics.percentile(histogram, 0.98));
+        assertEquals(1023, AVLTreeMetrics.percentile(histogram, 0.99));
+    }
+}
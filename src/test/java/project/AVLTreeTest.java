@@ -3,6 +3,8 @@ package project;
 import org.junit.jupiter.api.Test;
 
 import java.util.*;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -93,6 +95,94 @@ class AVLTreeTest {
         }
     }
 
+    /**
+     * Ключ, подсчитывающий количество вызовов compareTo.
+     */
+    private static class CountingKey implements Comparable<CountingKey> {
+        static long comparisons = 0;
+        final int value;
+
+        CountingKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(CountingKey o) {
+            comparisons++;
+            return Integer.compare(value, o.value);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * add и remove делают один спуск: на каждую операцию приходится не больше вызовов compareTo, чем у contains
+     * с тем же ключом, и не больше высоты дерева (удаление узла с двумя детьми ищет преемника без сравнений).
+     */
+    @Test
+    void singlePassComparisons() {
+        Random random = new Random();
+        AVLTree<CountingKey> newTree = new AVLTree<>();
+        List<CountingKey> keys = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            keys.add(new CountingKey(random.nextInt(20_000)));
+        }
+
+        for (CountingKey key: keys) {
+            CountingKey.comparisons = 0;
+            boolean present = newTree.contains(key);
+            long lookup = CountingKey.comparisons;
+            CountingKey.comparisons = 0;
+            assertEquals(!present, newTree.add(key));
+            assertTrue(CountingKey.comparisons <= lookup);
+            assertTrue(CountingKey.comparisons <= newTree.height());
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            CountingKey key = i % 2 == 0 ? keys.get(i) : new CountingKey(random.nextInt(20_000));
+            int height = newTree.height();
+            CountingKey.comparisons = 0;
+            boolean present = newTree.contains(key);
+            long lookup = CountingKey.comparisons;
+            CountingKey.comparisons = 0;
+            assertEquals(present, newTree.remove(key));
+            assertTrue(CountingKey.comparisons <= lookup);
+            assertTrue(CountingKey.comparisons <= height);
+        }
+        assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+    }
+
+    @Test
+    void largeSortedInput() {
+        AVLTree<Integer> newTree = new AVLTree<>();
+        AVLTree<Integer> controlTree = new AVLTree<>();
+        int n = 1_000_000;
+        for (int i = 0; i < n; i++) {
+            assertTrue(newTree.add(i));
+            assertTrue(controlTree.add(i));
+        }
+        assertEquals(n, newTree.size());
+        assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+        assertEquals(controlTree, newTree);
+        assertEquals(controlTree.hashCode(), newTree.hashCode());
+
+        int expected = 0;
+        for (int el: newTree) {
+            assertEquals(expected++, el);
+        }
+        for (int i = n - 1; i >= 0; i -= 2) {
+            assertTrue(newTree.remove(i));
+        }
+        assertEquals(n / 2, newTree.size());
+        assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+        for (int i = 0; i < n; i++) {
+            assertEquals(i % 2 == 0, newTree.contains(i));
+        }
+    }
+
     @Test
     void iterator() {
         Random random = new Random();
@@ -117,6 +207,131 @@ class AVLTreeTest {
         }
     }
 
+    @Test
+    void iteratorRemoveAndFailFast() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            TreeSet<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = iteration % 2 == 0 ? new AVLTree<>() : AVLTree.withOrderStatistics();
+            for (int i = 0; i < 300; i++) {
+                int newValue = random.nextInt(1000);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+            boolean descending = iteration % 4 >= 2;
+            Iterator<Integer> controlIt = descending ? controlSet.descendingIterator() : controlSet.iterator();
+            Iterator<Integer> actualIt = descending ? newTree.descendingIterator() : newTree.iterator();
+            assertThrows(IllegalStateException.class, actualIt::remove);
+            while (controlIt.hasNext()) {
+                assertEquals(controlIt.next(), actualIt.next());
+                if (random.nextInt(3) == 0) {
+                    controlIt.remove();
+                    actualIt.remove();
+                    assertThrows(IllegalStateException.class, actualIt::remove);
+                }
+            }
+            assertFalse(actualIt.hasNext());
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            assertEquals(controlSet.size(), newTree.size());
+        }
+
+        AVLTree<Integer> newTree = new AVLTree<>();
+        for (int i = 0; i < 10; i++)
+            newTree.add(i);
+        Iterator<Integer> it = newTree.iterator();
+        it.next();
+        newTree.add(100);
+        assertThrows(ConcurrentModificationException.class, it::next);
+
+        it = newTree.iterator();
+        it.next();
+        newTree.add(5);// элемент уже есть, дерево не изменилось
+        it.next();
+        newTree.remove(7);
+        assertThrows(ConcurrentModificationException.class, it::remove);
+
+        Iterator<Integer> first = newTree.iterator();
+        Iterator<Integer> second = newTree.iterator();
+        first.next();
+        second.next();
+        first.remove();
+        assertThrows(ConcurrentModificationException.class, second::next);
+
+        it = newTree.iterator();
+        newTree.clear();
+        assertThrows(ConcurrentModificationException.class, it::next);
+    }
+
+    @Test
+    void spliterator() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            TreeSet<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = iteration % 2 == 0 ? new AVLTree<>() : AVLTree.withOrderStatistics();
+            for (int i = 0; i < random.nextInt(2000); i++) {
+                int newValue = random.nextInt(10000);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+            Spliterator<Integer> spliterator = newTree.spliterator();
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.ORDERED
+                    | Spliterator.DISTINCT | Spliterator.SIZED));
+            assertEquals(iteration % 2 == 1, spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+            assertNull(spliterator.getComparator());
+            assertEquals(controlSet.size(), spliterator.estimateSize());
+
+            List<Integer> collected = new ArrayList<>();
+            split(spliterator, collected, random, iteration % 2 == 1);
+            assertEquals(new ArrayList<>(controlSet), collected);
+
+            long sum = 0;
+            for (int value: controlSet)
+                sum += value;
+            assertEquals(sum, newTree.parallelStream().mapToLong(Integer::longValue).sum());
+            assertEquals(new ArrayList<>(controlSet), newTree.parallelStream().collect(Collectors.toList()));
+        }
+
+        AVLTree<Integer> newTree = AVLTree.withOrderStatistics();
+        for (int i = 0; i < 1023; i++)
+            newTree.add(i);
+        Spliterator<Integer> spliterator = newTree.spliterator();
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        assertEquals(512, prefix.estimateSize());// корень и левое поддерево
+        assertEquals(511, spliterator.estimateSize());
+        assertEquals(511, spliterator.trySplit().estimateSize() + spliterator.estimateSize());
+
+        Spliterator<Integer> late = newTree.spliterator();
+        newTree.add(5000);// сплитератор привязывается к дереву только при первом использовании
+        assertEquals(1024, late.estimateSize());
+        newTree.add(5001);
+        assertThrows(ConcurrentModificationException.class, () -> late.forEachRemaining(value -> { }));
+    }
+
+    /**
+     * Случайное деление сплитератора с проверкой размеров и сбор элементов частей по порядку.
+     */
+    private static void split(Spliterator<Integer> spliterator, List<Integer> collected, Random random,
+                              boolean exact) {
+        long size = spliterator.estimateSize();
+        int before = collected.size();
+        Spliterator<Integer> prefix = random.nextInt(4) > 0 ? spliterator.trySplit() : null;
+        if (prefix != null) {
+            if (exact) {
+                assertTrue(prefix.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+                assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+            }
+            split(prefix, collected, random, exact);
+            split(spliterator, collected, random, exact);
+        } else if (random.nextBoolean()) {
+            spliterator.forEachRemaining(collected::add);
+        } else {
+            while (spliterator.tryAdvance(collected::add)) {
+            }
+        }
+        if (exact)
+            assertEquals(size, collected.size() - before);
+    }
+
     @Test
     void toArray() {
         Random random = new Random();
@@ -133,6 +348,49 @@ class AVLTreeTest {
         }
     }
 
+    @Test
+    void traversalKernels() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            TreeSet<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = iteration % 2 == 0 ? new AVLTree<>() : AVLTree.withOrderStatistics();
+            for (int i = 0; i < random.nextInt(1000); i++) {
+                int newValue = random.nextInt(2000);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+            assertEquals(controlSet.toString(), newTree.toString());
+            assertArrayEquals(controlSet.toArray(new Integer[0]), newTree.toArray(Integer[]::new));
+            List<Integer> visited = new ArrayList<>();
+            newTree.forEach(visited::add);
+            assertEquals(new ArrayList<>(controlSet), visited);
+
+            AVLTree<Integer> snapshot = newTree.snapshot();
+            List<Integer> before = new ArrayList<>(controlSet);
+            int modulus = 1 + random.nextInt(iteration % 3 == 0 ? 200 : 3);// мало или много удаляемых
+            assertEquals(controlSet.removeIf(value -> value % modulus == 0),
+                    newTree.removeIf(value -> value % modulus == 0));
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            assertEquals(controlSet.size(), newTree.size());
+            assertEquals(before, new ArrayList<>(snapshot));
+            if (!controlSet.isEmpty())
+                assertEquals(controlSet.last(), newTree.get(controlSet.size() - 1));
+        }
+
+        AVLTree<Integer> newTree = new AVLTree<>();
+        assertEquals("[]", newTree.toString());
+        for (int i = 0; i < 100; i++)
+            newTree.add(i);
+        assertThrows(IllegalStateException.class, () -> newTree.removeIf(value -> {
+            if (value == 50)
+                throw new IllegalStateException();
+            return true;
+        }));
+        assertEquals(100, newTree.size());
+        assertThrows(ConcurrentModificationException.class, () -> newTree.forEach(value -> newTree.add(-1)));
+        assertThrows(UnsupportedOperationException.class, () -> newTree.snapshot().removeIf(value -> true));
+    }
+
     @Test
     void testToArray() {
         Random random = new Random();
@@ -183,6 +441,50 @@ class AVLTreeTest {
         }
     }
 
+    @Test
+    void fromSorted() {
+        for (int n = 0; n < 300; n++) {
+            List<Integer> controlList = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                controlList.add(2 * i);
+            }
+
+            AVLTree<Integer> newTree = AVLTree.fromSorted(controlList);
+            assertEquals(n, newTree.size());
+            assertEquals(32 - Integer.numberOfLeadingZeros(n), newTree.height());
+            assertEquals(controlList, new ArrayList<>(newTree));
+            for (int i = 0; i < n; i++) {
+                assertTrue(newTree.contains(2 * i));
+                assertFalse(newTree.contains(2 * i + 1));
+            }
+
+            assertTrue(newTree.add(-1));
+            assertTrue(newTree.remove(0) || n == 0);
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+        }
+
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(AVLTree.fromSorted(Arrays.asList(1, 1, 2, 3, 3))));
+        assertThrows(IllegalArgumentException.class, () -> AVLTree.fromSorted(Arrays.asList(1, 3, 2)));
+    }
+
+    @Test
+    void addAllUnsorted() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            List<Integer> controlCollection = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                controlCollection.add(random.nextInt(100));
+            }
+
+            AVLTree<Integer> newTree = new AVLTree<>();
+            assertTrue(newTree.addAll(controlCollection));
+            assertEquals(new ArrayList<>(new TreeSet<>(controlCollection)), new ArrayList<>(newTree));
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+            assertFalse(newTree.addAll(controlCollection));
+            assertFalse(newTree.addAll(Collections.emptyList()));
+        }
+    }
+
     @Test
     void retainAll() {
         Random random = new Random();
@@ -243,6 +545,577 @@ class AVLTreeTest {
         }
     }
 
+    @Test
+    void bulkOperationsWithForeignElements() {
+        // элементы, которые нельзя сравнить с Integer, не мешают retainAll и removeAll, как в AbstractSet
+        for (int n: new int[] {3, 1000}) {
+            List<Object> foreign = Arrays.asList(new Object(), 3, null, "5", 7L);
+            AVLTree<Integer> newTree = new AVLTree<>();
+            AVLTree<Integer> prefixTree = new AVLTree<Integer>(null, Integer::longValue);
+            for (int i = 0; i < n; i++) {
+                newTree.add(i);
+                prefixTree.add(i);
+            }
+            for (AVLTree<Integer> tree: Arrays.asList(newTree, prefixTree)) {
+                AVLTree<Integer> copy = AVLTree.fromSorted(new ArrayList<>(tree));
+                assertEquals(n > 3, tree.removeAll(foreign));
+                assertFalse(tree.contains(3));
+                assertEquals(n > 3 ? n - 1 : n, tree.size());
+                assertTrue(copy.retainAll(foreign));
+                assertEquals(n > 3 ? Collections.singletonList(3) : Collections.emptyList(), new ArrayList<>(copy));
+            }
+        }
+    }
+
+    @Test
+    void setAlgebra() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 300; iteration++) {
+            Set<Integer> first = new TreeSet<>();
+            Set<Integer> second = new TreeSet<>();
+            int firstSize = random.nextInt(100);
+            int secondSize = random.nextInt(100);
+            for (int i = 0; i < firstSize; i++) {
+                first.add(random.nextInt(150));
+            }
+            for (int i = 0; i < secondSize; i++) {
+                second.add(random.nextInt(150));
+            }
+            List<Collection<Integer>> operands = Arrays.asList(
+                    AVLTree.fromSorted(second), new HashSet<>(second), new ArrayList<>(second), second);
+
+            for (Collection<Integer> operand: operands) {
+                Set<Integer> union = new TreeSet<>(first);
+                AVLTree<Integer> newTree = AVLTree.fromSorted(first);
+                assertEquals(union.addAll(operand), newTree.addAll(operand));
+                assertEquals(new ArrayList<>(union), new ArrayList<>(newTree));
+                assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+
+                Set<Integer> intersection = new TreeSet<>(first);
+                newTree = AVLTree.fromSorted(first);
+                assertEquals(intersection.retainAll(operand), newTree.retainAll(operand));
+                assertEquals(new ArrayList<>(intersection), new ArrayList<>(newTree));
+
+                Set<Integer> difference = new TreeSet<>(first);
+                newTree = AVLTree.fromSorted(first);
+                assertEquals(difference.removeAll(operand), newTree.removeAll(operand));
+                assertEquals(new ArrayList<>(difference), new ArrayList<>(newTree));
+                assertEquals(difference.size(), newTree.size());
+            }
+        }
+    }
+
+    @Test
+    void joinAndSplit() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 300; iteration++) {
+            Set<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = new AVLTree<>();
+            int n = random.nextInt(300);
+            for (int i = 0; i < n; i++) {
+                int newValue = random.nextInt(1000);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+
+            int key = random.nextInt(1000);
+            AVLTree<Integer> right = newTree.split(key);
+            List<Integer> expectedLeft = new ArrayList<>();
+            List<Integer> expectedRight = new ArrayList<>();
+            for (int el: controlSet) {
+                (el < key ? expectedLeft : expectedRight).add(el);
+            }
+            assertEquals(expectedLeft, new ArrayList<>(newTree));
+            assertEquals(expectedRight, new ArrayList<>(right));
+            assertEquals(expectedLeft.size(), newTree.size());
+            assertEquals(expectedRight.size(), right.size());
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+            assertTrue(right.height() <= 1.45 * (Math.log(right.size() + 2) / Math.log(2)));
+
+            if (right.remove(key))
+                controlSet.remove(key);
+            controlSet.add(key);
+            AVLTree<Integer> joined = AVLTree.join(newTree, key, right);
+            assertTrue(newTree.isEmpty());
+            assertTrue(right.isEmpty());
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(joined));
+            assertEquals(controlSet.size(), joined.size());
+            assertTrue(joined.height() <= 1.45 * (Math.log(joined.size() + 2) / Math.log(2)));
+            assertTrue(joined.add(-1));
+            assertTrue(joined.remove(key));
+        }
+
+        AVLTree<Integer> left = AVLTree.fromSorted(Arrays.asList(1, 2, 3));
+        AVLTree<Integer> right = AVLTree.fromSorted(Arrays.asList(5, 6));
+        assertThrows(IllegalArgumentException.class, () -> AVLTree.join(left, 3, right));
+        assertThrows(IllegalArgumentException.class, () -> AVLTree.join(left, 5, right));
+    }
+
+    @Test
+    void invalidOperandsLeaveTreesIntact() {
+        AVLTree<Integer> left = AVLTree.fromSorted(Arrays.asList(1, 2, 3));
+        AVLTree<Integer> right = AVLTree.fromSorted(Arrays.asList(20, 30));
+        AVLTree<Integer> snapshot = right.snapshot();
+        assertThrows(UnsupportedOperationException.class, () -> AVLTree.join(left, 15, snapshot));
+        assertThrows(UnsupportedOperationException.class, () -> AVLTree.join(snapshot, 40, left));
+        assertThrows(UnsupportedOperationException.class, () -> AVLTree.union(left, snapshot));
+        assertThrows(UnsupportedOperationException.class, () -> AVLTree.intersection(left, snapshot));
+        assertThrows(UnsupportedOperationException.class, () -> AVLTree.difference(left, snapshot));
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(left));
+        assertEquals(3, left.size());
+        assertEquals(Arrays.asList(20, 30), new ArrayList<>(snapshot));
+
+        assertThrows(IllegalArgumentException.class, () -> AVLTree.union(left, left));
+        assertThrows(IllegalArgumentException.class, () -> AVLTree.intersection(left, left));
+        assertThrows(IllegalArgumentException.class, () -> AVLTree.difference(left, left));
+        AVLTree<Integer> empty = new AVLTree<>();
+        assertThrows(IllegalArgumentException.class, () -> AVLTree.join(empty, 1, empty));
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(left));
+        assertEquals(3, left.size());
+
+        AVLTree<Integer> joined = AVLTree.join(left, 15, right);
+        assertEquals(Arrays.asList(1, 2, 3, 15, 20, 30), new ArrayList<>(joined));
+        assertEquals(Arrays.asList(20, 30), new ArrayList<>(snapshot));
+    }
+
+    @Test
+    void parallelSetOperations() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 20; iteration++) {
+            Set<Integer> first = new TreeSet<>();
+            Set<Integer> second = new TreeSet<>();
+            int firstSize = random.nextInt(100_000);
+            int secondSize = random.nextInt(100_000);
+            for (int i = 0; i < firstSize; i++) {
+                first.add(random.nextInt(200_000));
+            }
+            for (int i = 0; i < secondSize; i++) {
+                second.add(random.nextInt(200_000));
+            }
+
+            Set<Integer> union = new TreeSet<>(first);
+            union.addAll(second);
+            AVLTree<Integer> newTree = AVLTree.union(AVLTree.fromSorted(first), AVLTree.fromSorted(second));
+            assertEquals(new ArrayList<>(union), new ArrayList<>(newTree));
+            assertEquals(union.size(), newTree.size());
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+
+            Set<Integer> intersection = new TreeSet<>(first);
+            intersection.retainAll(second);
+            newTree = AVLTree.intersection(AVLTree.fromSorted(first), AVLTree.fromSorted(second));
+            assertEquals(new ArrayList<>(intersection), new ArrayList<>(newTree));
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+
+            Set<Integer> difference = new TreeSet<>(first);
+            difference.removeAll(second);
+            newTree = AVLTree.difference(AVLTree.fromSorted(first), AVLTree.fromSorted(second));
+            assertEquals(new ArrayList<>(difference), new ArrayList<>(newTree));
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+
+            newTree = AVLTree.fromSorted(first);
+            newTree.parallelAddAll(new ArrayList<>(second));
+            assertEquals(new ArrayList<>(union), new ArrayList<>(newTree));
+            assertEquals(union.size(), newTree.size());
+        }
+    }
+
+    @Test
+    void orderStatistics() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = AVLTree.withOrderStatistics();
+            AVLTree<Integer> plainTree = new AVLTree<>();
+            for (int i = 0; i < 300; i++) {
+                int newValue = random.nextInt(200);
+                if (random.nextInt(3) > 0) {
+                    controlSet.add(newValue);
+                    newTree.add(newValue);
+                    plainTree.add(newValue);
+                } else {
+                    controlSet.remove(newValue);
+                    newTree.remove(newValue);
+                    plainTree.remove(newValue);
+                }
+            }
+
+            List<Integer> controlList = new ArrayList<>(controlSet);
+            for (int i = 0; i < controlList.size(); i++) {
+                assertEquals(controlList.get(i), newTree.get(i));
+                assertEquals(controlList.get(i), plainTree.get(i));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> newTree.get(controlList.size()));
+            assertThrows(IndexOutOfBoundsException.class, () -> newTree.get(-1));
+            for (int value = -1; value <= 200; value++) {
+                int expected = ((TreeSet<Integer>) controlSet).headSet(value).size();
+                assertEquals(expected, newTree.rank(value));
+                assertEquals(expected, plainTree.rank(value));
+            }
+            int from = random.nextInt(100);
+            int to = from + random.nextInt(100);
+            assertEquals(((TreeSet<Integer>) controlSet).subSet(from, to).size(), newTree.countInRange(from, to));
+
+            AVLTree<Integer> right = newTree.split(100);
+            assertEquals(((TreeSet<Integer>) controlSet).headSet(100).size(), newTree.size());
+            assertEquals(((TreeSet<Integer>) controlSet).tailSet(100).size(), right.rank(1000));
+            AVLTree<Integer> union = AVLTree.union(newTree, right);
+            for (int i = 0; i < controlList.size(); i++) {
+                assertEquals(controlList.get(i), union.get(i));
+            }
+        }
+    }
+
+    @Test
+    void navigation() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            TreeSet<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = iteration % 2 == 0 ? new AVLTree<>() : AVLTree.withOrderStatistics();
+            for (int i = 0; i < 100; i++) {
+                int newValue = 2 * random.nextInt(100);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+
+            assertEquals(controlSet.first(), newTree.first());
+            assertEquals(controlSet.last(), newTree.last());
+            for (int value = -1; value <= 200; value++) {
+                assertEquals(controlSet.lower(value), newTree.lower(value));
+                assertEquals(controlSet.floor(value), newTree.floor(value));
+                assertEquals(controlSet.ceiling(value), newTree.ceiling(value));
+                assertEquals(controlSet.higher(value), newTree.higher(value));
+            }
+            assertEquals(new ArrayList<>(controlSet.descendingSet()), new ArrayList<>(newTree.descendingSet()));
+
+            int from = random.nextInt(200) - 1;
+            int to = from + random.nextInt(200 - from);
+            boolean fromInclusive = random.nextBoolean();
+            boolean toInclusive = random.nextBoolean();
+            List<NavigableSet<Integer>> controlViews = Arrays.asList(
+                    controlSet.subSet(from, fromInclusive, to, toInclusive),
+                    controlSet.headSet(to, toInclusive),
+                    controlSet.tailSet(from, fromInclusive),
+                    controlSet.subSet(from, fromInclusive, to, toInclusive).descendingSet(),
+                    controlSet.descendingSet().headSet(from, fromInclusive),
+                    controlSet.descendingSet().subSet(to, toInclusive, from, fromInclusive));
+            List<NavigableSet<Integer>> views = Arrays.asList(
+                    newTree.subSet(from, fromInclusive, to, toInclusive),
+                    newTree.headSet(to, toInclusive),
+                    newTree.tailSet(from, fromInclusive),
+                    newTree.subSet(from, fromInclusive, to, toInclusive).descendingSet(),
+                    newTree.descendingSet().headSet(from, fromInclusive),
+                    newTree.descendingSet().subSet(to, toInclusive, from, fromInclusive));
+            for (int v = 0; v < views.size(); v++) {
+                NavigableSet<Integer> controlView = controlViews.get(v);
+                NavigableSet<Integer> view = views.get(v);
+                assertEquals(new ArrayList<>(controlView), new ArrayList<>(view));
+                assertEquals(new ArrayList<>(controlView.descendingSet()), new ArrayList<>(view.descendingSet()));
+                assertEquals(controlView.size(), view.size());
+                assertEquals(controlView.isEmpty(), view.isEmpty());
+                for (int value = -1; value <= 200; value++) {
+                    assertEquals(controlView.contains(value), view.contains(value));
+                    assertEquals(controlView.lower(value), view.lower(value));
+                    assertEquals(controlView.floor(value), view.floor(value));
+                    assertEquals(controlView.ceiling(value), view.ceiling(value));
+                    assertEquals(controlView.higher(value), view.higher(value));
+                }
+                if (!controlView.isEmpty()) {
+                    assertEquals(controlView.first(), view.first());
+                    assertEquals(controlView.last(), view.last());
+                } else {
+                    assertThrows(NoSuchElementException.class, view::first);
+                }
+            }
+
+            // представления живые: изменения дерева видны в них, а изменения через них - в дереве
+            NavigableSet<Integer> view = newTree.subSet(from, true, to, true);
+            NavigableSet<Integer> controlView = controlSet.subSet(from, true, to, true);
+            int odd = from | 1;
+            if (odd <= to) {
+                newTree.add(odd);
+                controlSet.add(odd);
+                assertTrue(view.contains(odd));
+                assertTrue(view.remove(odd));
+                controlView.remove(odd);
+                assertFalse(newTree.contains(odd));
+            }
+            assertThrows(IllegalArgumentException.class, () -> view.add(to + 1));
+            assertThrows(IllegalArgumentException.class, () -> view.subSet(from - 1, to));
+            assertEquals(controlView.pollFirst(), view.pollFirst());
+            assertEquals(controlView.pollLast(), view.pollLast());
+            for (Iterator<Integer> it = view.iterator(), controlIt = controlView.iterator(); it.hasNext(); ) {
+                assertEquals(controlIt.next(), it.next());
+                if (random.nextBoolean()) {
+                    it.remove();
+                    controlIt.remove();
+                }
+            }
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            view.clear();
+            controlView.clear();
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            assertEquals(controlSet.size(), newTree.size());
+        }
+
+        AVLTree<Integer> empty = new AVLTree<>();
+        assertThrows(NoSuchElementException.class, empty::first);
+        assertNull(empty.pollFirst());
+        assertNull(empty.pollLast());
+        assertNull(empty.floor(1));
+    }
+
+    @Test
+    void snapshots() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 50; iteration++) {
+            TreeSet<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = iteration % 2 == 0 ? new AVLTree<>() : AVLTree.withOrderStatistics();
+            List<AVLTree<Integer>> snapshots = new ArrayList<>();
+            List<List<Integer>> expected = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                int newValue = random.nextInt(300);
+                if (random.nextInt(3) > 0)
+                    assertEquals(controlSet.add(newValue), newTree.add(newValue));
+                else
+                    assertEquals(controlSet.remove(newValue), newTree.remove(newValue));
+                if (i % 100 == 0) {
+                    snapshots.add(newTree.snapshot());
+                    expected.add(new ArrayList<>(controlSet));
+                }
+            }
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            for (int i = 0; i < snapshots.size(); i++) {
+                AVLTree<Integer> snapshot = snapshots.get(i);
+                assertEquals(expected.get(i), new ArrayList<>(snapshot));
+                assertEquals(expected.get(i).size(), snapshot.size());
+                if (!expected.get(i).isEmpty()) {
+                    assertEquals(expected.get(i).get(0), snapshot.get(0));
+                    assertEquals(0, snapshot.rank(expected.get(i).get(0)));
+                }
+            }
+
+            // операции на основе join не должны портить снимки
+            AVLTree<Integer> snapshot = newTree.snapshot();
+            AVLTree<Integer> right = newTree.split(150);
+            AVLTree<Integer> union = AVLTree.union(newTree, right);
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(snapshot));
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(union));
+        }
+
+        AVLTree<Integer> newTree = new AVLTree<>();
+        newTree.add(1);
+        AVLTree<Integer> snapshot = newTree.snapshot();
+        assertSame(snapshot, snapshot.snapshot());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(2));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(1));
+        assertThrows(UnsupportedOperationException.class, snapshot::clear);
+        assertThrows(UnsupportedOperationException.class, snapshot::pollFirst);
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.split(1));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.addAll(Arrays.asList(2, 3)));
+        newTree.clear();
+        assertEquals(Collections.singletonList(1), new ArrayList<>(snapshot));
+    }
+
+    @Test
+    void finger() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 50; iteration++) {
+            TreeSet<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = iteration % 2 == 0 ? new AVLTree<>() : AVLTree.withOrderStatistics();
+            AVLTree<Integer>.Finger finger = newTree.finger();
+            AVLTree<Integer>.Finger other = newTree.finger();
+            int value = 0;
+            for (int i = 0; i < 5000; i++) {
+                // в основном близкие ключи, иногда скачок; изменения в обход пальца тоже допустимы
+                value = random.nextInt(50) == 0 ? random.nextInt(1000) : value + random.nextInt(7) - 2;
+                switch (random.nextInt(10)) {
+                    case 0:
+                    case 1:
+                    case 2:
+                        assertEquals(controlSet.add(value), finger.add(value));
+                        break;
+                    case 3:
+                        assertEquals(controlSet.remove(value), finger.remove(value));
+                        break;
+                    case 4:
+                        assertEquals(controlSet.add(value + 1), other.add(value + 1));
+                        break;
+                    case 5:
+                        assertEquals(controlSet.remove(value - 1), newTree.remove(value - 1));
+                        break;
+                    default:
+                        assertEquals(controlSet.contains(value), finger.contains(value));
+                }
+            }
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            assertEquals(controlSet.size(), newTree.size());
+            assertEquals(controlSet.hashCode(), newTree.hashCode());
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+            if (!controlSet.isEmpty())
+                assertEquals(controlSet.size() - 1, newTree.rank(controlSet.last()));
+        }
+
+        AVLTree<Integer> newTree = new AVLTree<>();
+        AVLTree<Integer>.Finger finger = newTree.finger();
+        assertFalse(finger.contains(1));
+        assertFalse(finger.remove(1));
+        assertThrows(NullPointerException.class, () -> finger.add(null));
+        assertTrue(finger.add(1));
+        AVLTree<Integer> snapshot = newTree.snapshot();
+        assertTrue(finger.add(2));
+        assertEquals(Collections.singletonList(1), new ArrayList<>(snapshot));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.finger().add(3));
+        assertTrue(snapshot.finger().contains(1));
+    }
+
+    @Test
+    void fingerComparisons() {
+        int n = 1 << 16;
+        AVLTree<CountingKey> newTree = new AVLTree<>();
+        AVLTree<CountingKey>.Finger finger = newTree.finger();
+
+        // добавление в конец: одно сравнение с максимумом вместо спуска от корня
+        CountingKey.comparisons = 0;
+        for (int i = 0; i < n; i++)
+            assertTrue(finger.add(new CountingKey(2 * i)));
+        assertEquals(n - 1, CountingKey.comparisons);
+        assertEquals(17, newTree.height());
+
+        // последовательный поиск: в среднем несколько сравнений вместо log n
+        CountingKey.comparisons = 0;
+        for (int i = 0; i < n; i++)
+            assertTrue(finger.contains(new CountingKey(2 * i)));
+        assertTrue(CountingKey.comparisons < 4L * n, "comparisons: " + CountingKey.comparisons);
+
+        // почти упорядоченные удаления и промахи
+        CountingKey.comparisons = 0;
+        for (int i = 0; i < n; i += 2) {
+            assertTrue(finger.remove(new CountingKey(2 * i)));
+            assertFalse(finger.contains(new CountingKey(2 * i + 3)));
+        }
+        assertTrue(CountingKey.comparisons < 8L * n, "comparisons: " + CountingKey.comparisons);
+        assertEquals(n / 2, newTree.size());
+    }
+
+    @Test
+    void applyBatch() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 200; iteration++) {
+            TreeSet<Integer> controlSet = new TreeSet<>();
+            AVLTree<Integer> newTree = iteration % 2 == 0 ? new AVLTree<>() : AVLTree.withOrderStatistics();
+            for (int i = 0; i < random.nextInt(500); i++) {
+                int newValue = random.nextInt(300);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+            if (iteration % 5 == 0)
+                newTree.snapshot();
+
+            AVLTree.Batch<Integer> batch = new AVLTree.Batch<>();
+            List<Boolean> expected = new ArrayList<>();
+            int operations = random.nextInt(iteration % 3 == 0 ? 10 : 1000);
+            for (int i = 0; i < operations; i++) {
+                int newValue = random.nextInt(300);
+                if (random.nextBoolean()) {
+                    batch.add(newValue);
+                    expected.add(controlSet.add(newValue));
+                } else {
+                    batch.remove(newValue);
+                    expected.add(controlSet.remove(newValue));
+                }
+            }
+            assertEquals(operations, batch.size());
+            boolean[] results = newTree.applyBatch(batch);
+            assertEquals(operations, results.length);
+            for (int i = 0; i < operations; i++)
+                assertEquals(expected.get(i), results[i]);
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            assertEquals(controlSet.size(), newTree.size());
+            assertTrue(newTree.height() <= 1.4405 * Math.log(controlSet.size() + 2) / Math.log(2));
+            if (!controlSet.isEmpty())
+                assertEquals(controlSet.last(), newTree.get(controlSet.size() - 1));
+        }
+    }
+
+    @Test
+    void comparatorAndSortPrefix() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Comparator<String> order = iteration % 2 == 0 ? null : Comparator.reverseOrder();
+            TreeSet<String> controlSet = new TreeSet<>(order);
+            ToLongFunction<String> prefix = order == null ? AVLTree::stringPrefix : value -> ~AVLTree.stringPrefix(value);
+            AVLTree<String> newTree = iteration % 4 < 2 ? new AVLTree<String>(order) : new AVLTree<String>(order, prefix);
+            assertEquals(order, newTree.comparator());
+            for (int i = 0; i < 500; i++) {
+                String value = randomKey(random);
+                if (random.nextInt(3) > 0)
+                    assertEquals(controlSet.add(value), newTree.add(value));
+                else
+                    assertEquals(controlSet.remove(value), newTree.remove(value));
+            }
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            for (int i = 0; i < 100; i++) {
+                String value = randomKey(random);
+                assertEquals(controlSet.contains(value), newTree.contains(value));
+                assertEquals(controlSet.ceiling(value), newTree.ceiling(value));
+                assertEquals(controlSet.lower(value), newTree.lower(value));
+            }
+
+            AVLTree<String> snapshot = newTree.snapshot();
+            List<String> before = new ArrayList<>(controlSet);
+            List<String> other = new ArrayList<>();
+            for (int i = 0; i < 300; i++)
+                other.add(randomKey(random));
+            assertEquals(controlSet.addAll(other), newTree.addAll(other));
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            TreeSet<String> sorted = new TreeSet<>(order);
+            sorted.addAll(other.subList(0, 100));
+            assertEquals(controlSet.retainAll(sorted), newTree.retainAll(sorted));
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            assertEquals(before, new ArrayList<>(snapshot));
+
+            String pivot = randomKey(random);
+            AVLTree<String> right = newTree.split(pivot);
+            assertEquals(new ArrayList<>(controlSet.headSet(pivot)), new ArrayList<>(newTree));
+            assertEquals(new ArrayList<>(controlSet.tailSet(pivot)), new ArrayList<>(right));
+            AVLTree<String> union = AVLTree.union(newTree, right);
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(union));
+            assertEquals(new ArrayList<>(controlSet.descendingSet()), new ArrayList<>(union.descendingSet()));
+        }
+
+        AVLTree<String> reversed = new AVLTree<>(Comparator.<String>reverseOrder());
+        reversed.add("a");
+        AVLTree<String> natural = new AVLTree<>();
+        natural.add("b");
+        assertThrows(IllegalArgumentException.class, () -> AVLTree.union(reversed, natural));
+        assertThrows(NullPointerException.class, () -> reversed.add(null));
+    }
+
+    @Test
+    void stringPrefixIsConsistentWithCompareTo() {
+        Random random = new Random();
+        for (int i = 0; i < 100000; i++) {
+            String a = randomKey(random);
+            String b = random.nextBoolean() ? randomKey(random) : a.substring(0, random.nextInt(a.length() + 1));
+            if (a.compareTo(b) < 0)
+                assertTrue(AVLTree.stringPrefix(a) <= AVLTree.stringPrefix(b), a + " " + b);
+            else if (a.compareTo(b) > 0)
+                assertTrue(AVLTree.stringPrefix(a) >= AVLTree.stringPrefix(b), a + " " + b);
+        }
+    }
+
+    /**
+     * Короткие строки с общими началами, пустые строки и символы за пределами ASCII, включая символы со старшим
+     * битом (char >= 0x8000).
+     */
+    private static String randomKey(Random random) {
+        char[] alphabet = {'a', 'b', '/', '\0', 'é', '耀', '￿'};
+        StringBuilder key = new StringBuilder(random.nextBoolean() ? "htt" : "");
+        for (int i = random.nextInt(7); i > 0; i--)
+            key.append(alphabet[random.nextInt(alphabet.length)]);
+        return key.toString();
+    }
+
     @Test
     void clear() {
         Random random = new Random();
@@ -274,4 +1147,57 @@ class AVLTreeTest {
             assertEquals(controlTree.hashCode(), newTree.hashCode());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void setContractEqualsAndCachedHash() {
+        Random random = new Random(20);
+        AVLTree<Integer> newTree = new AVLTree<>();
+        AVLTree<Integer> lazyTree = new AVLTree<>();// height и hashCode не вызываются до конца
+        Set<Integer> controlSet = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(3_000);
+            if (random.nextInt(3) > 0) {
+                newTree.add(value);
+                lazyTree.add(value);
+                controlSet.add(value);
+            } else {
+                newTree.remove(value);
+                lazyTree.remove(value);
+                controlSet.remove(value);
+            }
+            assertEquals(controlSet.hashCode(), newTree.hashCode());
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+        }
+        assertEquals(lazyTree.height(), newTree.height());
+        assertEquals(lazyTree.hashCode(), newTree.hashCode());
+
+        // равенство не зависит от формы дерева
+        AVLTree<Integer> sortedTree = AVLTree.fromSorted(new TreeSet<>(controlSet));
+        assertEquals(newTree, sortedTree);
+        assertEquals(sortedTree, newTree);
+        assertEquals(controlSet, newTree);
+        assertEquals(newTree, controlSet);
+        assertEquals(new TreeSet<>(controlSet), newTree);
+        assertEquals(newTree, new TreeSet<>(controlSet));
+
+        AVLTree<Integer> snapshot = newTree.snapshot();
+        int removed = newTree.first();
+        newTree.remove(removed);
+        assertNotEquals(snapshot, newTree);
+        assertEquals(controlSet.hashCode() - removed, newTree.hashCode());
+        assertEquals(controlSet.hashCode(), snapshot.hashCode());
+        newTree.add(removed);
+        assertEquals(snapshot, newTree);
+        newTree.add(-1);
+        newTree.remove(removed);
+        assertNotEquals(snapshot, newTree);
+        assertNotEquals(newTree, Arrays.asList(newTree.toArray()));
+
+        AVLTree<String> caseInsensitive = new AVLTree<>(String.CASE_INSENSITIVE_ORDER);
+        caseInsensitive.addAll(Arrays.asList("a", "B"));
+        TreeSet<String> sameOrder = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        sameOrder.addAll(Arrays.asList("A", "b"));
+        assertEquals(sameOrder, caseInsensitive);
+        assertEquals(caseInsensitive, sameOrder);
+    }
+}
@@ -0,0 +1,115 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockedAVLTreeTest {
+
+    private static List<BlockedAVLTree<Integer>> trees(int blockSize) {
+        return Arrays.asList(new BlockedAVLTree<>(blockSize),
+                new BlockedAVLTree<Integer>(blockSize, Integer::longValue),
+                new BlockedAVLTree<Integer>(blockSize, x -> x >> 3));// неточный префикс: равные префиксы у соседей
+    }
+
+    @Test
+    void addAndRemove() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            int blockSize = 4 + random.nextInt(13);
+            for (BlockedAVLTree<Integer> newTree: trees(blockSize)) {
+                Set<Integer> controlSet = new TreeSet<>();
+                int range = 1 + random.nextInt(1000);
+                for (int i = 0; i < 2000; i++) {
+                    int newValue = random.nextInt(range);
+                    if (random.nextBoolean()) {
+                        assertEquals(controlSet.add(newValue), newTree.add(newValue));
+                    } else {
+                        assertEquals(controlSet.remove(newValue), newTree.remove(newValue));
+                    }
+                    assertEquals(controlSet.contains(newValue), newTree.contains(newValue));
+                    assertEquals(controlSet.size(), newTree.size());
+                    // листьев не больше, чем при заполнении на четверть (кроме последнего)
+                    assertTrue(newTree.leaves() <= controlSet.size() / (blockSize / 4) + 1);
+                    assertTrue(newTree.height() - 1 <= 1.45 * (Math.log(newTree.leaves() + 2) / Math.log(2)));
+                }
+                assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            }
+        }
+    }
+
+    @Test
+    void sortedLoadFillsLeaves() {
+        for (BlockedAVLTree<Integer> newTree: trees(64)) {
+            for (int i = 0; i < 64 * 1000; i++)
+                assertTrue(newTree.add(i));
+            assertEquals(1000, newTree.leaves());
+            assertEquals(64 * 1000, newTree.size());
+            for (int i = 0; i < 64 * 1000; i++)
+                assertTrue(newTree.contains(i));
+            assertFalse(newTree.contains(-1));
+            assertFalse(newTree.contains(64 * 1000));
+
+            // удаление по убыванию сливает опустевшие листья
+            for (int i = 64 * 1000 - 1; i >= 100; i--)
+                assertTrue(newTree.remove(i));
+            assertTrue(newTree.leaves() <= 100 / 16 + 1);
+            int expected = 0;
+            for (int value: newTree)
+                assertEquals(expected++, value);
+            assertEquals(100, expected);
+        }
+    }
+
+    @Test
+    void iteratorRemove() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            for (BlockedAVLTree<Integer> newTree: trees(8)) {
+                Set<Integer> controlSet = new TreeSet<>();
+                for (int i = 0; i < 500; i++) {
+                    int newValue = random.nextInt(1000);
+                    controlSet.add(newValue);
+                    newTree.add(newValue);
+                }
+
+                Iterator<Integer> it = newTree.iterator();
+                assertThrows(IllegalStateException.class, it::remove);
+                while (it.hasNext()) {
+                    if (it.next() % 3 != 0)
+                        it.remove();
+                }
+                assertThrows(NoSuchElementException.class, it::next);
+                controlSet.removeIf(el -> el % 3 != 0);
+                assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+
+                Iterator<Integer> failFast = newTree.iterator();
+                newTree.add(1001);
+                assertThrows(ConcurrentModificationException.class, failFast::next);
+            }
+        }
+    }
+
+    @Test
+    void clearAndEquals() {
+        BlockedAVLTree<Integer> newTree = new BlockedAVLTree<>();
+        Set<Integer> controlSet = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            newTree.add(i);
+            controlSet.add(i);
+        }
+        assertEquals(controlSet, newTree);
+        assertEquals(controlSet.hashCode(), newTree.hashCode());
+        newTree.clear();
+        assertTrue(newTree.isEmpty());
+        assertFalse(newTree.contains(5));
+        assertFalse(newTree.iterator().hasNext());
+        assertTrue(newTree.add(5));
+        assertEquals(1, newTree.size());
+        assertEquals(1, newTree.height());
+        assertThrows(IllegalArgumentException.class, () -> new BlockedAVLTree<Integer>(3));
+        assertThrows(NullPointerException.class, () -> newTree.add(null));
+    }
+}
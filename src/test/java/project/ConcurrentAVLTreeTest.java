@@ -0,0 +1,165 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentAVLTreeTest {
+
+    private static double maxHeight(int nodes) {
+        return 1.4405 * Math.log(nodes + 2) / Math.log(2) - 0.3277;
+    }
+
+    @Test
+    void singleThread() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            TreeSet<Integer> controlSet = new TreeSet<>();
+            ConcurrentAVLTree<Integer> newTree = new ConcurrentAVLTree<>();
+            for (int i = 0; i < 1000; i++) {
+                int newValue = random.nextInt(300);
+                if (random.nextInt(3) > 0)
+                    assertEquals(controlSet.add(newValue), newTree.add(newValue));
+                else
+                    assertEquals(controlSet.remove(newValue), newTree.remove(newValue));
+            }
+            assertEquals(controlSet.size(), newTree.size());
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+            for (int value = -1; value <= 300; value++)
+                assertEquals(controlSet.contains(value), newTree.contains(value));
+            assertTrue(newTree.height() <= maxHeight(300));
+        }
+
+        ConcurrentAVLTree<Integer> newTree = new ConcurrentAVLTree<>();
+        assertTrue(newTree.isEmpty());
+        for (int i = 0; i < 100000; i++)
+            newTree.add(i);
+        assertTrue(newTree.height() <= maxHeight(100000));
+        for (Iterator<Integer> it = newTree.iterator(); it.hasNext(); ) {
+            if (it.next() % 2 == 0)
+                it.remove();
+        }
+        assertEquals(50000, newTree.size());
+        newTree.clear();
+        assertTrue(newTree.isEmpty());
+        assertThrows(NullPointerException.class, () -> newTree.add(null));
+    }
+
+    /**
+     * Потоки-писатели меняют каждый свою часть ключей и общие ключи, потоки-читатели одновременно ищут ключи,
+     * которые все время присутствуют или все время отсутствуют. После завершения содержимое дерева должно совпасть
+     * с моделями писателей, а дерево - снова стать сбалансированным.
+     */
+    @Test
+    void concurrentStress() throws InterruptedException {
+        int writers = 8;
+        int readers = 4;
+        int keysPerWriter = 2048;
+        int sharedKeys = 256;
+        int operations = 200000;
+        int stableKeys = 1024;
+
+        ConcurrentAVLTree<Integer> newTree = new ConcurrentAVLTree<>();
+        for (int i = 1; i <= stableKeys; i++)
+            newTree.add(-2 * i);// четные отрицательные ключи есть всегда, нечетные - никогда
+
+        List<BitSet> models = new ArrayList<>();
+        AtomicIntegerArray balance = new AtomicIntegerArray(sharedKeys);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writersDone = new CountDownLatch(writers);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < writers; w++) {
+            int id = w;
+            BitSet model = new BitSet();
+            models.add(model);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < operations; i++) {
+                        if (random.nextInt(4) == 0) {
+                            int shared = random.nextInt(sharedKeys);
+                            if (random.nextBoolean()) {
+                                if (newTree.add(shared))
+                                    balance.incrementAndGet(shared);
+                            } else if (newTree.remove(shared)) {
+                                balance.decrementAndGet(shared);
+                            }
+                            continue;
+                        }
+                        int k = random.nextInt(keysPerWriter);
+                        int key = sharedKeys + k * writers + id;
+                        if (random.nextBoolean()) {
+                            assertEquals(!model.get(k), newTree.add(key));
+                            model.set(k);
+                        } else {
+                            assertEquals(model.get(k), newTree.remove(key));
+                            model.clear(k);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    writersDone.countDown();
+                }
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (writersDone.getCount() > 0) {
+                        int i = 1 + random.nextInt(stableKeys);
+                        assertTrue(newTree.contains(-2 * i));
+                        assertFalse(newTree.contains(-2 * i + 1));
+                        Integer previous = null;
+                        int count = 0;
+                        for (Integer value: newTree) {
+                            assertTrue(previous == null || previous < value);
+                            previous = value;
+                            if (++count == 64)
+                                break;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+
+        for (Thread thread: threads)
+            thread.start();
+        start.countDown();
+        for (Thread thread: threads)
+            thread.join();
+        if (failure.get() != null)
+            fail(failure.get());
+
+        TreeSet<Integer> controlSet = new TreeSet<>();
+        for (int i = 1; i <= stableKeys; i++)
+            controlSet.add(-2 * i);
+        for (int shared = 0; shared < sharedKeys; shared++) {
+            int presence = balance.get(shared);
+            assertTrue(presence == 0 || presence == 1);
+            if (presence == 1)
+                controlSet.add(shared);
+        }
+        for (int w = 0; w < writers; w++) {
+            BitSet model = models.get(w);
+            for (int k = model.nextSetBit(0); k >= 0; k = model.nextSetBit(k + 1))
+                controlSet.add(sharedKeys + k * writers + w);
+        }
+        assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+        assertEquals(controlSet.size(), newTree.size());
+        assertTrue(newTree.height() <= maxHeight(stableKeys + sharedKeys + writers * keysPerWriter));
+    }
+}
@@ -0,0 +1,102 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntAVLTreeTest {
+
+    @Test
+    void size() {
+        IntAVLTree tree = new IntAVLTree();
+        tree.add(3);
+        tree.add(12);
+        tree.add(5);
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void height() {
+        IntAVLTree tree = new IntAVLTree();
+        tree.add(5);
+        tree.add(2);
+        assertEquals(2, tree.height());
+        tree.add(3);
+        assertEquals(2, tree.height());
+    }
+
+    @Test
+    void addAndRemove() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Integer> controlSet = new TreeSet<>();
+            IntAVLTree newTree = new IntAVLTree();
+            for (int i = 0; i < 200; i++) {
+                int newValue = random.nextInt(100);
+                if (random.nextBoolean()) {
+                    assertEquals(controlSet.add(newValue), newTree.add(newValue));
+                } else {
+                    assertEquals(controlSet.remove(newValue), newTree.remove(newValue));
+                }
+                assertEquals(controlSet.size(), newTree.size());
+                assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertEquals(controlSet.contains(i), newTree.contains(i));
+            }
+        }
+    }
+
+    @Test
+    void iterator() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Integer> controlSet = new TreeSet<>();
+            IntAVLTree newTree = new IntAVLTree();
+            assertFalse(newTree.iterator().hasNext());
+            for (int i = 0; i < 20; i++) {
+                int newValue = random.nextInt();
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+
+            Iterator<Integer> controlIt = controlSet.iterator();
+            PrimitiveIterator.OfInt actualIt = newTree.iterator();
+            while (controlIt.hasNext()) {
+                assertEquals((int) controlIt.next(), actualIt.nextInt());
+            }
+            assertThrows(NoSuchElementException.class, actualIt::nextInt);
+        }
+    }
+
+    @Test
+    void toIntArray() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Integer> controlSet = new TreeSet<>();
+            IntAVLTree newTree = new IntAVLTree();
+            for (int i = 0; i < 20; i++) {
+                int newValue = random.nextInt(100);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+
+            int[] expected = controlSet.stream().mapToInt(Integer::intValue).toArray();
+            assertArrayEquals(expected, newTree.toIntArray());
+        }
+    }
+
+    @Test
+    void clear() {
+        IntAVLTree newTree = new IntAVLTree();
+        for (int i = 0; i < 20; i++) {
+            newTree.add(i);
+        }
+        newTree.clear();
+        assertTrue(newTree.isEmpty());
+        assertEquals(0, newTree.size());
+        assertFalse(newTree.contains(1));
+    }
+}
@@ -0,0 +1,102 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongAVLTreeTest {
+
+    @Test
+    void size() {
+        LongAVLTree tree = new LongAVLTree();
+        tree.add(3);
+        tree.add(12);
+        tree.add(5);
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void height() {
+        LongAVLTree tree = new LongAVLTree();
+        tree.add(5);
+        tree.add(2);
+        assertEquals(2, tree.height());
+        tree.add(3);
+        assertEquals(2, tree.height());
+    }
+
+    @Test
+    void addAndRemove() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Long> controlSet = new TreeSet<>();
+            LongAVLTree newTree = new LongAVLTree();
+            for (int i = 0; i < 200; i++) {
+                long newValue = random.nextInt(100);
+                if (random.nextBoolean()) {
+                    assertEquals(controlSet.add(newValue), newTree.add(newValue));
+                } else {
+                    assertEquals(controlSet.remove(newValue), newTree.remove(newValue));
+                }
+                assertEquals(controlSet.size(), newTree.size());
+                assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+            }
+            for (long i = 0; i < 100; i++) {
+                assertEquals(controlSet.contains(i), newTree.contains(i));
+            }
+        }
+    }
+
+    @Test
+    void iterator() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Long> controlSet = new TreeSet<>();
+            LongAVLTree newTree = new LongAVLTree();
+            assertFalse(newTree.iterator().hasNext());
+            for (int i = 0; i < 20; i++) {
+                long newValue = random.nextLong();
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+
+            Iterator<Long> controlIt = controlSet.iterator();
+            PrimitiveIterator.OfLong actualIt = newTree.iterator();
+            while (controlIt.hasNext()) {
+                assertEquals((long) controlIt.next(), actualIt.nextLong());
+            }
+            assertThrows(NoSuchElementException.class, actualIt::nextLong);
+        }
+    }
+
+    @Test
+    void toLongArray() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Long> controlSet = new TreeSet<>();
+            LongAVLTree newTree = new LongAVLTree();
+            for (int i = 0; i < 20; i++) {
+                long newValue = random.nextInt(100);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+
+            long[] expected = controlSet.stream().mapToLong(Long::longValue).toArray();
+            assertArrayEquals(expected, newTree.toLongArray());
+        }
+    }
+
+    @Test
+    void clear() {
+        LongAVLTree newTree = new LongAVLTree();
+        for (int i = 0; i < 20; i++) {
+            newTree.add(i);
+        }
+        newTree.clear();
+        assertTrue(newTree.isEmpty());
+        assertEquals(0, newTree.size());
+        assertFalse(newTree.contains(1));
+    }
+}
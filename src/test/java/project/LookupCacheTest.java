@@ -0,0 +1,120 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LookupCacheTest {
+
+    @Test
+    void consistentWithTree() {
+        for (LookupCache.Eviction eviction : LookupCache.Eviction.values()) {
+            Random random = new Random(23);
+            AVLTree<Integer> newTree = new AVLTree<>();
+            LookupCache cache = newTree.enableLookupCache(64, eviction);
+            Set<Integer> controlSet = new TreeSet<>();
+            for (int i = 0; i < 100_000; i++) {
+                int value = random.nextInt(200);
+                switch (random.nextInt(10)) {
+                    case 0:
+                        assertEquals(controlSet.add(value), newTree.add(value));
+                        break;
+                    case 1:
+                        assertEquals(controlSet.remove(value), newTree.remove(value));
+                        break;
+                    case 2:
+                        if (i % 100 == 0) {
+                            // изменения мимо add и remove очищают кэш целиком
+                            List<Integer> values = Arrays.asList(value, value + 1, value + 2);
+                            assertEquals(controlSet.addAll(values), newTree.addAll(values));
+                            assertEquals(controlSet.removeIf(x -> x % 7 == value % 7),
+                                    newTree.removeIf(x -> x % 7 == value % 7));
+                        }
+                        break;
+                    default:
+                        assertEquals(controlSet.contains(value), newTree.contains(value));
+                }
+            }
+            newTree.clear();
+            assertFalse(newTree.contains(5));
+            assertTrue(cache.hits() > 0);
+            assertTrue(cache.evictions() > 0);
+            assertTrue(cache.invalidations() > 0);
+            assertEquals(64, cache.capacity());
+        }
+    }
+
+    @Test
+    void comparatorTree() {
+        for (LookupCache.Eviction eviction : LookupCache.Eviction.values()) {
+            AVLTree<String> newTree = new AVLTree<>(String.CASE_INSENSITIVE_ORDER);
+            newTree.enableLookupCache(64, eviction);
+            assertTrue(newTree.add("Foo"));
+            assertTrue(newTree.contains("foo"));
+            assertTrue(newTree.remove("FOO"));
+            assertEquals(0, newTree.size());
+            assertFalse(newTree.contains("foo"));
+            assertFalse(newTree.contains("Foo"));
+            assertTrue(newTree.add("bar"));
+            assertFalse(newTree.add("BAR"));
+            assertTrue(newTree.contains("Bar"));
+
+            Random random = new Random(7);
+            Set<String> controlSet = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            String[] cases = {"key", "KEY", "Key", "kEy"};
+            for (int i = 0; i < 100_000; i++) {
+                String value = cases[random.nextInt(cases.length)] + random.nextInt(50);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        assertEquals(controlSet.add(value), newTree.add(value));
+                        break;
+                    case 1:
+                        assertEquals(controlSet.remove(value), newTree.remove(value));
+                        break;
+                    default:
+                        assertEquals(controlSet.contains(value), newTree.contains(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    void hotKeysStayCached() {
+        AVLTree<Integer> newTree = new AVLTree<>();
+        for (int i = 0; i < 100_000; i++)
+            newTree.add(i);
+        for (LookupCache.Eviction eviction : LookupCache.Eviction.values()) {
+            LookupCache cache = newTree.enableLookupCache(1024, eviction);
+            assertSame(cache, newTree.lookupCache());
+            Random random = new Random(5);
+            for (int i = 0; i < 100_000; i++) {
+                int value = i % 2 == 0 ? random.nextInt(100) : random.nextInt(200_000);// промахи тоже кэшируются
+                assertEquals(value < 100_000, newTree.contains(value));
+            }
+            // горячие ключи почти всегда в кэше, холодные почти никогда
+            assertTrue(cache.hitRate() > 0.45, eviction + ": " + cache.hitRate());
+            assertTrue(cache.hitRate() < 0.55, eviction + ": " + cache.hitRate());
+            cache.resetStatistics();
+            assertEquals(0, cache.hits() + cache.misses());
+        }
+        newTree.disableLookupCache();
+        assertNull(newTree.lookupCache());
+        assertTrue(newTree.contains(5));
+    }
+
+    @Test
+    void metricsSeeCacheHits() {
+        AVLTree<Integer> newTree = new AVLTree<>();
+        for (int i = 0; i < 1000; i++)
+            newTree.add(i);
+        AVLTreeMetrics metrics = newTree.enableMetrics();
+        newTree.enableLookupCache(16, LookupCache.Eviction.LRU);
+        for (int i = 0; i < 10; i++)
+            assertTrue(newTree.contains(500));
+        assertEquals(10, metrics.getContains());
+        assertEquals(9, metrics.getDepthHistogram()[0]);
+        assertThrows(IllegalArgumentException.class, () -> newTree.enableLookupCache(3, LookupCache.Eviction.LRU));
+    }
+}
@@ -0,0 +1,99 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLongAVLTreeTest {
+
+    @Test
+    void addAndRemove() throws IOException {
+        Path file = Files.createTempFile("avl", ".tree");
+        try (MappedLongAVLTree newTree = MappedLongAVLTree.open(file)) {
+            Random random = new Random();
+            Set<Long> controlSet = new TreeSet<>();
+            for (int i = 0; i < 20000; i++) {
+                long newValue = random.nextInt(5000);
+                if (random.nextBoolean()) {
+                    assertEquals(controlSet.add(newValue), newTree.add(newValue));
+                } else {
+                    assertEquals(controlSet.remove(newValue), newTree.remove(newValue));
+                }
+            }
+            assertEquals(controlSet.size(), newTree.size());
+            assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+            long[] expected = controlSet.stream().mapToLong(Long::longValue).toArray();
+            assertArrayEquals(expected, newTree.toLongArray());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void reopen() throws IOException {
+        Path file = Files.createTempFile("avl", ".tree");
+        try {
+            Set<Long> controlSet = new TreeSet<>();
+            Random random = new Random();
+            try (MappedLongAVLTree newTree = MappedLongAVLTree.open(file)) {
+                for (int i = 0; i < 10000; i++) {
+                    long newValue = random.nextLong();
+                    controlSet.add(newValue);
+                    newTree.add(newValue);
+                }
+            }
+
+            try (MappedLongAVLTree reopened = MappedLongAVLTree.open(file)) {
+                assertEquals(controlSet.size(), reopened.size());
+                for (long el: controlSet) {
+                    assertTrue(reopened.contains(el));
+                }
+                Iterator<Long> controlIt = controlSet.iterator();
+                PrimitiveIterator.OfLong actualIt = reopened.iterator();
+                while (controlIt.hasNext()) {
+                    assertEquals((long) controlIt.next(), actualIt.nextLong());
+                }
+                assertFalse(actualIt.hasNext());
+
+                long first = controlSet.iterator().next();
+                assertTrue(reopened.remove(first));
+                assertTrue(reopened.add(first));
+                assertFalse(reopened.add(first));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void clear() throws IOException {
+        Path file = Files.createTempFile("avl", ".tree");
+        try (MappedLongAVLTree newTree = MappedLongAVLTree.open(file)) {
+            for (long i = 0; i < 100; i++) {
+                newTree.add(i);
+            }
+            newTree.clear();
+            assertTrue(newTree.isEmpty());
+            assertFalse(newTree.contains(5));
+            assertTrue(newTree.add(5));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void rejectsForeignFile() throws IOException {
+        Path file = Files.createTempFile("avl", ".tree");
+        try {
+            Files.write(file, new byte[MappedLongAVLTree.SLOT * 2]);
+            assertThrows(IOException.class, () -> MappedLongAVLTree.open(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledAVLTreeTest {
+
+    @Test
+    void height() {
+        PooledAVLTree<Integer> tree = new PooledAVLTree<>();
+        tree.add(5);
+        tree.add(2);
+        assertEquals(2, tree.height());
+        tree.add(3);
+        assertEquals(2, tree.height());
+    }
+
+    @Test
+    void addAndRemove() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Integer> controlSet = new TreeSet<>();
+            PooledAVLTree<Integer> newTree = new PooledAVLTree<>(0);
+            for (int i = 0; i < 500; i++) {
+                int newValue = random.nextInt(100);
+                if (random.nextBoolean()) {
+                    assertEquals(controlSet.add(newValue), newTree.add(newValue));
+                } else {
+                    assertEquals(controlSet.remove(newValue), newTree.remove(newValue));
+                }
+                assertEquals(controlSet.size(), newTree.size());
+                assertTrue(newTree.height() <= 1.45 * (Math.log(newTree.size() + 2) / Math.log(2)));
+            }
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+        }
+    }
+
+    @Test
+    void iteratorRemove() {
+        Random random = new Random();
+        for (int iteration = 0; iteration < 100; iteration++) {
+            Set<Integer> controlSet = new TreeSet<>();
+            PooledAVLTree<Integer> newTree = new PooledAVLTree<>();
+            for (int i = 0; i < 50; i++) {
+                int newValue = random.nextInt(100);
+                controlSet.add(newValue);
+                newTree.add(newValue);
+            }
+
+            Iterator<Integer> it = newTree.iterator();
+            assertThrows(IllegalStateException.class, it::remove);
+            while (it.hasNext()) {
+                if (it.next() % 3 == 0)
+                    it.remove();
+            }
+            controlSet.removeIf(el -> el % 3 == 0);
+            assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+        }
+    }
+
+    @Test
+    void iteratorFailFast() {
+        PooledAVLTree<Integer> newTree = new PooledAVLTree<>();
+        for (int i = 0; i < 100; i++)
+            newTree.add(i);
+
+        // освобожденный слот сразу переиспользуется, и без проверки итератор вернул бы ключ из чужого слота
+        Iterator<Integer> it = newTree.iterator();
+        assertEquals(0, (int) it.next());
+        assertTrue(newTree.remove(50));
+        assertTrue(newTree.add(1000));
+        assertThrows(ConcurrentModificationException.class, it::next);
+        assertThrows(ConcurrentModificationException.class, it::remove);
+
+        it = newTree.iterator();
+        assertFalse(newTree.add(1000));// неудачное добавление дерево не меняет
+        assertFalse(newTree.remove(50));
+        assertEquals(0, (int) it.next());
+        it.remove();
+        assertEquals(1, (int) it.next());
+        newTree.clear();
+        assertThrows(ConcurrentModificationException.class, it::next);
+    }
+
+    @Test
+    void retainAllAndRemoveAll() {
+        PooledAVLTree<Integer> newTree = new PooledAVLTree<>();
+        for (int i = 0; i < 100; i++) {
+            newTree.add(i);
+        }
+        List<Integer> even = new ArrayList<>();
+        for (int i = 0; i < 100; i += 2) {
+            even.add(i);
+        }
+
+        assertTrue(newTree.retainAll(even));
+        assertEquals(new ArrayList<>(even), new ArrayList<>(newTree));
+        assertTrue(newTree.removeAll(even));
+        assertTrue(newTree.isEmpty());
+    }
+
+    @Test
+    void clear() {
+        PooledAVLTree<Integer> newTree = new PooledAVLTree<>();
+        for (int i = 0; i < 100; i++) {
+            newTree.add(i);
+        }
+        newTree.clear();
+        assertTrue(newTree.isEmpty());
+        assertFalse(newTree.contains(5));
+        assertTrue(newTree.add(5));
+        assertEquals(1, newTree.size());
+    }
+
+    @Test
+    void testEquals() {
+        PooledAVLTree<Integer> newTree = new PooledAVLTree<>();
+        Set<Integer> controlSet = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            newTree.add(i);
+            controlSet.add(i);
+        }
+        assertEquals(controlSet, newTree);
+        assertEquals(controlSet.hashCode(), newTree.hashCode());
+    }
+}
@@ -0,0 +1,85 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindBufferTest {
+
+    @Test
+    void flushBySize() {
+        AVLTree<Integer> newTree = new AVLTree<>();
+        WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>(newTree, 100, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 99; i++)
+            buffer.add(i);
+        assertEquals(99, buffer.pending());
+        assertTrue(newTree.isEmpty());
+        buffer.add(99);
+        assertEquals(0, buffer.pending());
+        assertEquals(1, buffer.flushes());
+        assertEquals(100, newTree.size());
+
+        buffer.remove(5);
+        buffer.remove(5);
+        buffer.add(1000);
+        assertEquals(Arrays.asList(true, false, true), toList(buffer.flush()));
+        assertFalse(newTree.contains(5));
+        assertTrue(newTree.contains(1000));
+        assertEquals(0, buffer.flush().length);
+        assertEquals(2, buffer.flushes());
+    }
+
+    @Test
+    void flushByTime() throws InterruptedException {
+        AVLTree<Integer> newTree = new AVLTree<>();
+        WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>(newTree, 1000, 20, TimeUnit.MILLISECONDS);
+        buffer.add(1);
+        assertFalse(buffer.flushIfExpired());
+        assertTrue(newTree.isEmpty());
+        Thread.sleep(30);
+        assertTrue(buffer.flushIfExpired());
+        assertTrue(newTree.contains(1));
+
+        buffer.add(2);
+        Thread.sleep(30);
+        buffer.add(3);// запись после истечения срока сбрасывает буфер
+        assertEquals(0, buffer.pending());
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(newTree));
+    }
+
+    @Test
+    void containsSeesPendingWrites() {
+        Random random = new Random();
+        TreeSet<Integer> controlSet = new TreeSet<>();
+        AVLTree<Integer> newTree = new AVLTree<>();
+        WriteBehindBuffer<Integer> buffer = new WriteBehindBuffer<>(newTree, 64, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 10000; i++) {
+            int newValue = random.nextInt(1000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    buffer.add(newValue);
+                    controlSet.add(newValue);
+                    break;
+                case 1:
+                    buffer.remove(newValue);
+                    controlSet.remove(newValue);
+                    break;
+                default:
+                    if (random.nextInt(50) == 0)
+                        assertEquals(controlSet.contains(newValue), buffer.contains(newValue));
+            }
+        }
+        buffer.flush();
+        assertEquals(new ArrayList<>(controlSet), new ArrayList<>(newTree));
+    }
+
+    private static List<Boolean> toList(boolean[] results) {
+        List<Boolean> list = new ArrayList<>();
+        for (boolean result: results)
+            list.add(result);
+        return list;
+    }
+}